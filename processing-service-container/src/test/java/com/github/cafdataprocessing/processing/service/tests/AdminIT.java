@@ -15,14 +15,14 @@
  */
 package com.github.cafdataprocessing.processing.service.tests;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.cafdataprocessing.processing.service.client.ApiException;
 import com.github.cafdataprocessing.processing.service.client.api.AdminApi;
 import com.github.cafdataprocessing.processing.service.client.model.HealthStatus;
 import com.github.cafdataprocessing.processing.service.client.model.HealthStatusDependencies;
 import com.github.cafdataprocessing.processing.service.tests.utils.ApiClientProvider;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
@@ -70,10 +70,18 @@ public class AdminIT {
             fail("There was no content returned from the HealthCheck HTTP Get Request");
         }
         
-        final String expectedHealthCheckResponseContent
-            = "{\"status\":\"HEALTHY\",\"dependencies\":[{\"name\":\"PROCESSING_DATABASE\",\"status\":\"HEALTHY\"},"
-            + "{\"name\":\"POLICY_API\",\"status\":\"HEALTHY\"}]}";
-        assertEquals(expectedHealthCheckResponseContent, IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8));
+        final JsonNode healthCheckResponse = new ObjectMapper().readTree(response.getEntity().getContent());
+        assertEquals(healthCheckResponse.get("status").asText(), "HEALTHY", "Status should be HEALTHY.");
+        final JsonNode dependencies = healthCheckResponse.get("dependencies");
+        assertEquals(dependencies.size(), 2, "Expecting two dependencies to be reported.");
+        final String[] expectedDependencyNames = {"PROCESSING_DATABASE", "POLICY_API"};
+        for (int dependencyIndex = 0; dependencyIndex < expectedDependencyNames.length; dependencyIndex++) {
+            final JsonNode dependency = dependencies.get(dependencyIndex);
+            assertEquals(dependency.get("name").asText(), expectedDependencyNames[dependencyIndex], "Dependency name not as expected.");
+            assertEquals(dependency.get("status").asText(), "HEALTHY", "Dependency " + expectedDependencyNames[dependencyIndex] + " should be HEALTHY");
+            assertTrue(dependency.hasNonNull("lastChecked"), "Dependency should report when it was last checked.");
+            assertTrue(dependency.hasNonNull("latencyMs"), "Dependency should report the latency of its last check.");
+        }
 
         assertTrue(response.getStatusLine().getStatusCode() == 200);
     }
@@ -22,6 +22,7 @@ var projectIdProvider = require('../libs/projectIdProvider.js');
 
 module.exports = {
   createAction: createAction,
+  createActions: createActions,
   deleteAction: deleteAction,
   getAction: getAction,
   getActions: getActions,
@@ -46,6 +47,20 @@ function createAction(req, response, next){
   httpHelper.writeCreatePromiseJSONResultToResponse(createPromise, response);
 }
 
+function createActions(req, response, next){
+  var project_id = projectIdProvider.getProjectId(null, req);
+  
+  var createActionsParams = {
+    actions: req.swagger.params.newActions.value.actions,
+    project_id: project_id,
+    ruleId: req.swagger.params.ruleId.value,
+    workflowId: req.swagger.params.workflowId.value
+  };
+  logger.info('Creating batch of '+createActionsParams.actions.length+' actions on rule: '+createActionsParams.ruleId);
+  var createPromise = actionModel.createActions(createActionsParams);
+  httpHelper.writePromiseJSONResultToResponse(createPromise, response);
+}
+
 function deleteAction(req, response, next){
   var project_id = projectIdProvider.getProjectId(null, req);
   var deleteActionParams = {
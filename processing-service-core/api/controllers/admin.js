@@ -17,11 +17,13 @@ var logger = require('../helpers/loggingHelper.js');
 var adminLib = require('../libs/admin.js');
 var errorResponseHelper = require('../models/errorResponse.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
+var metrics = require('../libs/metrics.js');
 var Q = require('q');
 
 module.exports = {
   getVersion: getVersion,
-  healthCheck: healthCheck
+  healthCheck: healthCheck,
+  metrics: getMetrics
 };
 
 //TODO expose on contract
@@ -44,6 +46,13 @@ function healthCheck(req, res, next){
   adminLib.healthCheck(onCompleteDeferred);
 }
 
+//outputs the metrics recorded by the service in the Prometheus text format
+function getMetrics(req, res, next){
+  res.status(200);
+  res.set('Content-Type', 'text/plain; version=0.0.4');
+  res.send(metrics.getMetricsText());
+}
+
 //TODO expose on contract
 function getLogLevel(req, res, next){
   var logLevelPromise = adminLib.getLogLevel();
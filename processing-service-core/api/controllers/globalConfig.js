@@ -16,6 +16,7 @@
 var globalConfigModel = require('../models/globalConfig.js');
 var logger = require('../helpers/loggingHelper.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
+var pagingHelper = require('../helpers/pagingHelper.js');
 
 module.exports = {
   setGlobalConfig: setGlobalConfig,
@@ -45,7 +46,8 @@ function getGlobalConfig(req, res, next) {
 
 function getGlobalConfigs(req, res, next) {
   logger.info('Retrieving global configurations');
-  var getPromise = globalConfigModel.getGlobalConfigs();
+  var getPromise = pagingHelper.retrieveKeysetPage(req.swagger.params.cursor.value, req.swagger.params.limit.value,
+    globalConfigModel.getGlobalConfigs, res);
   httpHelper.writePromiseJSONResultToResponse(getPromise, res);
 };
 
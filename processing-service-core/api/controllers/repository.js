@@ -15,8 +15,11 @@
  */
 'use strict';
 
+var Q = require('q');
 var logger = require('../helpers/loggingHelper.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
+var errorResponseHelper = require('../models/errorResponse.js');
+var pagingHelper = require('../helpers/pagingHelper.js');
 var repositoryModel = require('../models/repository.js');
 
 module.exports = {
@@ -24,6 +27,7 @@ module.exports = {
     setRepositoryConfigs: setRepositoryConfigs,
     deleteRepositoryConfig: deleteRepositoryConfig,
     deleteRepositoryConfigs: deleteRepositoryConfigs,
+    exportEffectiveRepositoryConfigs: exportEffectiveRepositoryConfigs,
     getEffectiveRepositoryConfig: getEffectiveRepositoryConfig,
     getEffectiveRepositoryConfigs: getEffectiveRepositoryConfigs,
     getRepositoryConfig: getRepositoryConfig,
@@ -52,7 +56,7 @@ function setRepositoryConfigs(req, response, next) {
             + " and repositoryConfigs: " + repositoryConfigs);
 
     var createPromise = repositoryModel.setRepositoryConfigs(tenantId, repositoryId, repositoryConfigs);
-    httpHelper.writeUpdatePromiseJSONResultToResponse(createPromise, response);
+    httpHelper.writeSetOutcomesPromiseJSONResultToResponse(createPromise, response);
 }
 
 function deleteRepositoryConfig(req, response, next) {
@@ -96,6 +100,66 @@ function getEffectiveRepositoryConfigs(req, response, next) {
     httpHelper.writePromiseJSONResultToResponse(effectiveConfigPromise, response);
 }
 
+// streams the effective configs of the repositories of a tenant as newline delimited JSON, one line per repository. Each page of
+// repositories is written before the next is read, waiting for the response to drain if the client is reading slowly.
+function exportEffectiveRepositoryConfigs(req, response, next) {
+    var tenantId = req.swagger.params.tenantId.value;
+    var repositoryIds = req.swagger.params.repositoryIds.value;
+    logger.info("Export effective configs called with tenantId: " + tenantId + " and "
+        + (repositoryIds === undefined ? "all repositories" : repositoryIds.length + " repositoryIds"));
+
+    var responseClosed = false;
+    response.on('close', function () {
+        responseClosed = true;
+    });
+    var startResponse = function () {
+        if (!response.headersSent) {
+            response.status(200);
+            response.set('Content-Type', 'application/x-ndjson');
+        }
+    };
+    var writeRepositories = function (repositories) {
+        if (responseClosed) {
+            throw new Error("Connection closed by client.");
+        }
+        startResponse();
+        var lines = '';
+        for (var repositoryIndex = 0; repositoryIndex < repositories.length; repositoryIndex++) {
+            lines += JSON.stringify(repositories[repositoryIndex]) + '\n';
+        }
+        if (response.write(lines)) {
+            return;
+        }
+        var drainedDeferred = Q.defer();
+        var onDrainedOrClosed = function () {
+            response.removeListener('drain', onDrainedOrClosed);
+            response.removeListener('close', onDrainedOrClosed);
+            drainedDeferred.resolve();
+        };
+        response.on('drain', onDrainedOrClosed);
+        response.on('close', onDrainedOrClosed);
+        return drainedDeferred.promise;
+    };
+
+    repositoryModel.exportEffectiveRepositoryConfigs(tenantId, repositoryIds, writeRepositories)
+        .then(function () {
+            startResponse();
+            response.end();
+        })
+        .fail(function (errorResponse) {
+            if (!response.headersSent) {
+                errorResponseHelper.writeErrorToResponseJSON(errorResponse, response);
+                return;
+            }
+            logger.error("Export of effective configs for tenantId " + tenantId + " stopped after it started: " + errorResponse.message);
+            // the status has already been sent so the failure is reported on a final line
+            if (!responseClosed) {
+                response.end(JSON.stringify({ error: { message: errorResponse.message } }) + '\n');
+            }
+        })
+        .done();
+}
+
 function getRepositoryConfig(req, response, next) {
     var tenantId = req.swagger.params.tenantId.value;
     var repositoryId = req.swagger.params.repositoryId.value;
@@ -113,6 +177,9 @@ function getRepositoryConfigs(req, response, next) {
     var repositoryId = req.swagger.params.repositoryId.value;
     logger.info("Get repository specific configs called with tenantId: " + tenantId + " and repositoryId: " + repositoryId);
 
-    var repositoryConfigPromise = repositoryModel.getRepositoryConfigs(tenantId, repositoryId);
+    var repositoryConfigPromise = pagingHelper.retrieveKeysetPage(req.swagger.params.cursor.value, req.swagger.params.limit.value,
+        function(afterKey, limit) {
+            return repositoryModel.getRepositoryConfigs(tenantId, repositoryId, afterKey, limit);
+        }, response);
     httpHelper.writePromiseJSONResultToResponse(repositoryConfigPromise, response);
 }
@@ -17,6 +17,7 @@
 
 var logger = require('../helpers/loggingHelper.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
+var pagingHelper = require('../helpers/pagingHelper.js');
 var tenantModel = require('../models/tenant.js');
 
 module.exports = {
@@ -48,7 +49,7 @@ function setTenantConfigs(req, response, next) {
     logger.info("Set tenant specific config called with tenantId " + tenantId + " and tenantConfigs: " + tenantConfigs);
 
     var createPromise = tenantModel.setTenantConfigs(tenantId, tenantConfigs);
-    httpHelper.writeUpdatePromiseJSONResultToResponse(createPromise, response);
+    httpHelper.writeSetOutcomesPromiseJSONResultToResponse(createPromise, response);
 }
 
 function deleteTenantConfig(req, response, next) {
@@ -64,9 +65,11 @@ function deleteTenantConfig(req, response, next) {
 function deleteTenantConfigs(req, response, next) {
     var tenantId = req.swagger.params.tenantId.value;
 
-    logger.info("Delete tenant specific config called with tenantId: " + tenantId);
+    var cascade = req.swagger.params.cascade.value === true;
+
+    logger.info("Delete tenant specific config called with tenantId: " + tenantId + " and cascade: " + cascade);
 
-    var deletePromise = tenantModel.deleteTenantConfigs(req.swagger.params.tenantId.value);
+    var deletePromise = tenantModel.deleteTenantConfigs(tenantId, cascade);
     httpHelper.writeDeletePromiseJSONResultToResponse(deletePromise, response);
 }
 
@@ -104,6 +107,9 @@ function getTenantConfigs(req, response, next) {
 
     logger.info("Get tenant specific configs called with tenantId: " + tenantId);
 
-    var tenantConfigPromise = tenantModel.getTenantConfigs(tenantId);
+    var tenantConfigPromise = pagingHelper.retrieveKeysetPage(req.swagger.params.cursor.value, req.swagger.params.limit.value,
+        function(afterKey, limit) {
+            return tenantModel.getTenantConfigs(tenantId, afterKey, limit);
+        }, response);
     httpHelper.writePromiseJSONResultToResponse(tenantConfigPromise, response);
 }
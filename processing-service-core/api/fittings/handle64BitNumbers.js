@@ -13,13 +13,10 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-//this fitting will wrap any numbers sent in request in BigNumber object wrappers so that no precision is lost in issuing request
-var JSONbig = require('json-bigint');
+//this fitting will wrap any numbers sent in request in BigNumber object wrappers so that no precision is lost in issuing request.
+//Request and response bodies are parsed and written with BigNumber support by the JSON middleware (see api/libs/jsonMiddleware.js).
 var BigNumber = require('bignumber.js');
 
-//override global JSON object with version that understands BigNumber and will convert it to correct string representation when issuing request.
-GLOBAL.JSON = JSONbig;
-
 
 module.exports = function create(fittingDef, pipes) {
   //the swagger validation logic uses z-schema to validate parameters. We need this validation to recognise BigNumber as type 'integer' so that the request is treated as valid after the JSON is parsed and the large numbers become BigNumber objects.
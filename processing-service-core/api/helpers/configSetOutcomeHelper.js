@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+'use strict';
+//helper for the per key outcomes returned when tenant or repository configs are set in bulk.
+
+module.exports = {
+  buildSetOutcomes: buildSetOutcomes,
+  getNotFoundKeys: getNotFoundKeys,
+  getStatusCode: getStatusCode,
+  outcomes: {
+    created: 'CREATED',
+    notFound: 'NOT_FOUND',
+    updated: 'UPDATED'
+  }
+};
+
+//returns the outcome for each of the configs passed to a bulk set, in the same order, from the rows written by the set. Each row holds
+//the key written and whether it was created, configs without a row were not written as no global config exists for their key.
+function buildSetOutcomes(configs, writtenRows){
+  var createdByKey = new Map();
+  for(var i = 0; i < writtenRows.length; i++){
+    createdByKey.set(writtenRows[i].key, writtenRows[i].created);
+  }
+  return configs.map(function(config){
+    var created = createdByKey.get(config.key);
+    return {
+      key: config.key,
+      outcome: created === undefined ? module.exports.outcomes.notFound :
+        (created ? module.exports.outcomes.created : module.exports.outcomes.updated)
+    };
+  });
+}
+
+//returns the distinct keys of the outcomes passed that were not written because no global config exists for them.
+function getNotFoundKeys(setOutcomes){
+  var notFoundKeys = [];
+  for(var i = 0; i < setOutcomes.length; i++){
+    if(setOutcomes[i].outcome === module.exports.outcomes.notFound && notFoundKeys.indexOf(setOutcomes[i].key) === -1){
+      notFoundKeys.push(setOutcomes[i].key);
+    }
+  }
+  return notFoundKeys;
+}
+
+//returns the HTTP status to report the outcomes passed with, 200 when every config was written and 207 (Multi-Status) when
+//any key was not written so that the caller checks the outcome of each key.
+function getStatusCode(setOutcomes){
+  return getNotFoundKeys(setOutcomes).length > 0 ? 207 : 200;
+}
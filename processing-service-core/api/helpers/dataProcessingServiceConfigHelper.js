@@ -15,16 +15,40 @@
  */
 //config for the data-processing-service itself
 var logger = require('./loggingHelper.js');
+var getIntegerFromEnvironment = require('./environmentConfigHelper.js').getIntegerFromEnvironment;
 
 //environment variables that config will be pulled from
 var dataProcessingServicePort = "CAF_PROCESSING_SERVICE_PORT";
 var dataProcessingServiceAdminPort = "CAF_PROCESSING_SERVICE_ADMIN_PORT";
 var dataProcessingServiceCacheDuration = "CAF_PROCESSING_SERVICE_CACHE_DURATION";
+var dataProcessingServiceActionsFromFullSequence = "CAF_PROCESSING_SERVICE_ACTIONS_FROM_FULL_SEQUENCE";
+var dataProcessingServiceBatchActionParallelism = "CAF_PROCESSING_SERVICE_BATCH_ACTION_PARALLELISM";
+var dataProcessingServiceCacheMaxBytes = "CAF_PROCESSING_SERVICE_CACHE_MAX_BYTES";
+var dataProcessingServiceHealthProbeInterval = "CAF_PROCESSING_SERVICE_HEALTH_PROBE_INTERVAL";
+var dataProcessingServiceHealthProbeTimeout = "CAF_PROCESSING_SERVICE_HEALTH_PROBE_TIMEOUT";
+var dataProcessingServiceWorkers = "CAF_PROCESSING_SERVICE_WORKERS";
+var dataProcessingServiceWorkerShutdownTimeout = "CAF_PROCESSING_SERVICE_WORKER_SHUTDOWN_TIMEOUT";
 
 var dataProcessingServiceConfig = {
+  actionsFromFullSequence: false,
+  //number of Actions of a batch create request that are created at the same time
+  batchActionParallelism: 8,
   cacheDuration: 600,
+  //estimated size in bytes that all in-process caches together may hold before least recently used entries are evicted, 0 for no limit
+  cacheMaxBytes: 104857600,
   port: 8080,
-  adminPort: 8081
+  adminPort: 8081,
+  healthProbe: {
+    //time in milliseconds between background checks of the service dependencies
+    interval: 10000,
+    //time in milliseconds a check of a dependency may take before it is reported as unhealthy
+    timeout: 5000
+  },
+  //number of worker processes handling requests, when more than one the process started manages the workers and serves the admin port.
+  //Limits on connections to the database and Policy API are shared between the workers.
+  workers: 1,
+  //time in milliseconds a worker stopping may take to finish the requests it is handling before it is killed
+  workerShutdownTimeout: 30000
 };
 
 //Get API Port
@@ -43,5 +67,21 @@ if(cacheDurationEnv!==null && cacheDurationEnv!==undefined){
   dataProcessingServiceConfig.cacheDuration = cacheDurationEnv;
 }
 
+var actionsFromFullSequenceEnv = process.env[dataProcessingServiceActionsFromFullSequence];
+if(actionsFromFullSequenceEnv!==null && actionsFromFullSequenceEnv!==undefined){
+  dataProcessingServiceConfig.actionsFromFullSequence = actionsFromFullSequenceEnv.toLowerCase() === "true";
+}
+
+dataProcessingServiceConfig.cacheMaxBytes = getIntegerFromEnvironment(dataProcessingServiceCacheMaxBytes, dataProcessingServiceConfig.cacheMaxBytes, 0);
+dataProcessingServiceConfig.batchActionParallelism = getIntegerFromEnvironment(dataProcessingServiceBatchActionParallelism,
+  dataProcessingServiceConfig.batchActionParallelism, 1);
+dataProcessingServiceConfig.healthProbe.interval = getIntegerFromEnvironment(dataProcessingServiceHealthProbeInterval,
+  dataProcessingServiceConfig.healthProbe.interval, 1000);
+dataProcessingServiceConfig.healthProbe.timeout = getIntegerFromEnvironment(dataProcessingServiceHealthProbeTimeout,
+  dataProcessingServiceConfig.healthProbe.timeout, 1);
+dataProcessingServiceConfig.workers = getIntegerFromEnvironment(dataProcessingServiceWorkers, dataProcessingServiceConfig.workers, 1);
+dataProcessingServiceConfig.workerShutdownTimeout = getIntegerFromEnvironment(dataProcessingServiceWorkerShutdownTimeout,
+  dataProcessingServiceConfig.workerShutdownTimeout, 0);
+
 module.exports = dataProcessingServiceConfig;
 logger.debug(function(){return "Service config is: "+JSON.stringify(dataProcessingServiceConfig);});
\ No newline at end of file
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//reads the values of configuration settings from environment variables, shared by the helpers that build the configuration of the service.
+var logger = require('./loggingHelper.js');
+
+module.exports = {
+  getIntegerFromEnvironment: getIntegerFromEnvironment,
+  getWorkerShare: getWorkerShare
+};
+
+//reads an integer value from the named environment variable, returning the default value passed if it is not set or is not a valid integer
+//greater than or equal to the minimum value.
+function getIntegerFromEnvironment(environmentVariableName, defaultValue, minimumValue){
+  var environmentValue = process.env[environmentVariableName];
+  if(environmentValue===null || environmentValue===undefined){
+    return defaultValue;
+  }
+  var parsedValue = parseInt(environmentValue, 10);
+  if(isNaN(parsedValue) || parsedValue < minimumValue){
+    logger.warn("Invalid value '"+environmentValue+"' set for "+environmentVariableName+". Using default value: "+defaultValue);
+    return defaultValue;
+  }
+  return parsedValue;
+}
+
+//divides a limit configured for the whole service between the worker processes so that together they stay within it, each worker
+//getting no less than the minimum value.
+function getWorkerShare(totalValue, workers, minimumValue){
+  return Math.max(Math.floor(totalValue / workers), minimumValue);
+}
@@ -15,6 +15,9 @@
  */
 //helper providing simple callbacks to handle promise resolution from calls to external APIs, such as Policy API.
 var errorResponseHelper = require('../models/errorResponse.js');
+var ApiError = require('../models/errors/apiError.js');
+var jsonBodyHelper = require('./jsonBodyHelper.js');
+var configSetOutcomeHelper = require('./configSetOutcomeHelper.js');
 
 module.exports = {
   handleDeleteResponse: handleDeleteResponse,
@@ -24,6 +27,7 @@ module.exports = {
   writeCreatePromiseJSONResultToResponse: writeCreatePromiseJSONResultToResponse,
   writeDeletePromiseJSONResultToResponse: writeDeletePromiseJSONResultToResponse,
   writePromiseJSONResultToResponse: writePromiseJSONResultToResponse,
+  writeSetOutcomesPromiseJSONResultToResponse: writeSetOutcomesPromiseJSONResultToResponse,
   writeStringPromiseJSONResultToResponse: writeStringPromiseJSONResultToResponse,
   writeUpdatePromiseJSONResultToResponse: writeUpdatePromiseJSONResultToResponse
 };
@@ -32,7 +36,7 @@ module.exports = {
 //extractFunction - Optional. A function to pass the JSON parsed from the result body to for further extraction before resolve is called
 function handlePotentialSuccess(deferred, extractFunction){
   return function(response, responseBody){
-    var resultObject = JSON.parse(responseBody);
+    var resultObject = jsonBodyHelper.parse(responseBody, response.mayContainLargeNumbers);
     if(response.statusCode >= 200 && response.statusCode <=299){
       if(typeof(extractFunction)==='function'){
         deferred.resolve(extractFunction(resultObject));
@@ -49,6 +53,11 @@ function handlePotentialSuccess(deferred, extractFunction){
 //generic failure callback that handles deferred TODO move to common place for all scripts to use
 function handleFailure(deferred){
   return function(errorResponse){
+    //errors raised by this service, such as the Policy API circuit being open, are passed on as they are so they keep their status
+    if(errorResponse instanceof ApiError){
+      deferred.reject(errorResponse);
+      return;
+    }
     deferred.reject(errorResponseHelper.create(errorResponse, errorResponse.statusCode));
   };
 }
@@ -97,6 +106,17 @@ function writeUpdatePromiseJSONResultToResponse(promise, response){
   writePromiseJSONResultToResponse(promise, response, 204);
 }
 
+//writes the per key outcomes of a bulk config set, with a status of 207 if any of the keys could not be set.
+function writeSetOutcomesPromiseJSONResultToResponse(promise, response){
+  promise.then(function(setOutcomes){
+    response.status(configSetOutcomeHelper.getStatusCode(setOutcomes));
+    response.json(setOutcomes);
+  })
+  .fail(function(errorResponse){
+    errorResponseHelper.writeErrorToResponseJSON(errorResponse, response);
+  }).done();
+}
+
 function writeStringPromiseJSONResultToResponse(promise, response) {
     var statusCode = 200;
     promise.then(function (result) {
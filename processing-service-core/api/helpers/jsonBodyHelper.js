@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//collects, parses and serializes the JSON bodies exchanged with callers of the service and with Policy API without losing the precision
+//of 64-bit integers. Numbers too long to hold exactly as a double are parsed as BigNumber objects and BigNumber objects are written as
+//numbers, as json-bigint does, while the native JSON parser and serializer do the work:
+// - while a body is received its bytes are scanned for long numbers. Bodies without any (the usual case) are parsed natively as they are.
+// - otherwise the long numbers are marked as strings before the native parse and the marked strings then replaced with BigNumber objects.
+// - BigNumber objects are written as marked strings by the native serializer and the marks then removed.
+//The marker includes a value random to the process. Should a body contain it json-bigint is used instead, so a marker cannot be forged.
+//Everywhere else the global JSON object is native, BigNumber objects being written as strings.
+var crypto = require('crypto');
+var BigNumber = require('bignumber.js');
+var JSONbig = require('json-bigint');
+
+module.exports = {
+  createBodyCollector: createBodyCollector,
+  parse: parse,
+  stringify: stringify
+};
+
+//json-bigint converts any number literal longer than this many characters (including sign, decimal point and exponent) to a BigNumber
+var maxNativeNumberLength = 15;
+
+//marks the bytes that can be part of a number literal
+var numberCharacters = new Uint8Array(256);
+for(var numberCharacter of '0123456789+-.eE'){
+  numberCharacters[numberCharacter.charCodeAt(0)] = 1;
+}
+//matches a run of number characters long enough to be a number that should be a BigNumber
+var longNumberCharactersPattern = new RegExp('[-+.eE0-9]{' + (maxNativeNumberLength + 1) + '}');
+
+var bigNumberMarker = 'bignumber-' + crypto.randomBytes(8).toString('hex') + ':';
+//a valid JSON number literal, runs of number characters that are not are left for the native parser to reject
+var numberLiteralPattern = /^-?(?:0|[1-9][0-9]*)(?:\.[0-9]+)?(?:[eE][+-]?[0-9]+)?$/;
+//matches a BigNumber written as a marked string
+var markedBigNumberPattern = new RegExp('"' + bigNumberMarker + '([^"]*)"', 'g');
+
+//returns an object to add the chunks of a body to as they are received, as Buffers. The chunks are joined and decoded once when the body
+//is requested. Each chunk is scanned for runs of number characters longer than the native parser can hold exactly (runs inside strings
+//are also counted, these only cause the slower parse to be used).
+function createBodyCollector(){
+  var chunks = [];
+  var totalLength = 0;
+  var numberRunLength = 0;
+  var longNumberFound = false;
+  return {
+    add: function(chunk){
+      chunks.push(chunk);
+      totalLength += chunk.length;
+      if(longNumberFound){
+        return;
+      }
+      for(var byteIndex = 0; byteIndex < chunk.length; byteIndex++){
+        if(numberCharacters[chunk[byteIndex]]===1){
+          if(++numberRunLength > maxNativeNumberLength){
+            longNumberFound = true;
+            return;
+          }
+        }
+        else {
+          numberRunLength = 0;
+        }
+      }
+    },
+    //returns the body received as a string
+    getBody: function(){
+      if(chunks.length === 1){
+        return chunks[0].toString('utf8');
+      }
+      return Buffer.concat(chunks, totalLength).toString('utf8');
+    },
+    //returns the number of bytes received
+    getLength: function(){
+      return totalLength;
+    },
+    //returns false if the body is known not to contain a number that would be parsed as a BigNumber
+    mayContainLargeNumbers: function(){
+      return longNumberFound;
+    }
+  };
+}
+
+//returns the start and end positions of the number literals in the body, outside of strings, that should be BigNumber objects
+var findLongNumbers = function(body){
+  var longNumbers = [];
+  var inString = false;
+  var escaped = false;
+  var runStart = -1;
+  for(var charIndex = 0; charIndex <= body.length; charIndex++){
+    var charCode = charIndex < body.length ? body.charCodeAt(charIndex) : 32;
+    if(inString){
+      if(escaped){
+        escaped = false;
+      }
+      else if(charCode === 92){
+        escaped = true;
+      }
+      else if(charCode === 34){
+        inString = false;
+      }
+      continue;
+    }
+    if(charCode < 256 && numberCharacters[charCode]===1){
+      if(runStart === -1){
+        runStart = charIndex;
+      }
+      continue;
+    }
+    if(runStart !== -1){
+      if(charIndex - runStart > maxNativeNumberLength && numberLiteralPattern.test(body.substring(runStart, charIndex))){
+        longNumbers.push(runStart, charIndex);
+      }
+      runStart = -1;
+    }
+    if(charCode === 34){
+      inString = true;
+    }
+  }
+  return longNumbers;
+};
+
+//replaces the marked strings in the parsed value with BigNumber objects, stopping once the number of marked strings passed have been found
+var replaceMarkedStrings = function(parsedValue, markedCount){
+  var remaining = markedCount;
+  var replaceInObject = function(objectValue){
+    for(var propertyName of Object.keys(objectValue)){
+      var propertyValue = objectValue[propertyName];
+      if(typeof(propertyValue)==='string'){
+        if(propertyValue.startsWith(bigNumberMarker)){
+          objectValue[propertyName] = new BigNumber(propertyValue.substring(bigNumberMarker.length));
+          remaining--;
+        }
+      }
+      else if(propertyValue!==null && typeof(propertyValue)==='object'){
+        replaceInObject(propertyValue);
+      }
+      if(remaining === 0){
+        return;
+      }
+    }
+  };
+  if(typeof(parsedValue)==='string'){
+    return new BigNumber(parsedValue.substring(bigNumberMarker.length));
+  }
+  replaceInObject(parsedValue);
+  return parsedValue;
+};
+
+//parses a body that may contain long numbers, marking them as strings so that the native parser can be used
+var parseWithBigNumbers = function(body){
+  var longNumbers = findLongNumbers(body);
+  if(longNumbers.length === 0){
+    return JSON.parse(body);
+  }
+  if(body.indexOf(bigNumberMarker)!==-1){
+    return JSONbig.parse(body);
+  }
+  var markedParts = [];
+  var copiedTo = 0;
+  for(var longNumberIndex = 0; longNumberIndex < longNumbers.length; longNumberIndex += 2){
+    markedParts.push(body.substring(copiedTo, longNumbers[longNumberIndex]), '"', bigNumberMarker,
+      body.substring(longNumbers[longNumberIndex], longNumbers[longNumberIndex + 1]), '"');
+    copiedTo = longNumbers[longNumberIndex + 1];
+  }
+  markedParts.push(body.substring(copiedTo));
+  return replaceMarkedStrings(JSON.parse(markedParts.join('')), longNumbers.length / 2);
+};
+
+//parses the JSON body passed, numbers too long to hold exactly as a double becoming BigNumber objects. 'mayContainLargeNumbers' should be
+//passed from the body collector the body was read with, if it was not the body is checked for long numbers first.
+function parse(body, mayContainLargeNumbers){
+  if(mayContainLargeNumbers===false || (mayContainLargeNumbers===undefined && !longNumberCharactersPattern.test(body))){
+    return JSON.parse(body);
+  }
+  return parseWithBigNumbers(body);
+}
+
+//serializes the value passed to JSON, BigNumber objects being written as numbers. Returns undefined for values JSON cannot represent.
+function stringify(value){
+  var bigNumberToJSON = BigNumber.prototype.toJSON;
+  var bigNumbersWritten = 0;
+  //the native serializer calls toJSON on each BigNumber, serialization is synchronous so no other code sees the replacement
+  BigNumber.prototype.toJSON = function(){
+    bigNumbersWritten++;
+    return bigNumberMarker + bigNumberToJSON.call(this);
+  };
+  var serialized;
+  try {
+    serialized = JSON.stringify(value);
+  }
+  finally {
+    BigNumber.prototype.toJSON = bigNumberToJSON;
+  }
+  if(bigNumbersWritten===0){
+    return serialized;
+  }
+  var unmarkedCount = 0;
+  var unmarked = serialized.replace(markedBigNumberPattern, function(markedBigNumber, bigNumberText){
+    unmarkedCount++;
+    return bigNumberText;
+  });
+  //a string in the value that contained the marker would also have been unmarked, the value is written with json-bigint instead
+  if(unmarkedCount!==bigNumbersWritten){
+    return JSONbig.stringify(value);
+  }
+  return unmarked;
+}
@@ -16,11 +16,23 @@
 //Represents configuration for logging.
 
 module.exports = {
+  getInfoSampleRate: getInfoSampleRate,
   getLogLevel: getLogLevel,
   setLogLevel: setLogLevel
 };
 var logLevelEnvName = 'CAF_LOG_LEVEL';
 var logLevelSet = process.env[logLevelEnvName];
+var infoSampleRateEnvName = 'CAF_LOG_INFO_SAMPLE_RATE';
+//one in this many high-volume INFO messages are output
+var infoSampleRate = 10;
+var infoSampleRateEnv = parseInt(process.env[infoSampleRateEnvName], 10);
+if(!isNaN(infoSampleRateEnv) && infoSampleRateEnv >= 1){
+  infoSampleRate = infoSampleRateEnv;
+}
+
+function getInfoSampleRate(){
+  return infoSampleRate;
+}
 
 function getLogLevel(){
   return logLevelSet;
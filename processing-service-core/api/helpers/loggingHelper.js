@@ -13,13 +13,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-//TODO investigate logging library for NodeJS, likely no need to invent a new logging implementation
+//writes log messages to stdout as JSON lines, each an object with the time, level and message. Lines are buffered and written together
+//once the current work completes, or once enough are buffered, rather than with a synchronous write per message. Anything still buffered
+//is written when the process exits. A message may be passed as a function returning it so that it is only built if it will be logged.
+var fs = require('fs');
 var loggingConfigHelper = require('./loggingConfigHelper.js');
 
 module.exports = {
   debug: logDebug,
   error: logError,
   info: logInfo,
+  infoSampled: logInfoSampled,
   warn: logWarn,
   warning: logWarning
 };
@@ -41,27 +45,132 @@ if(logLevelSet===null || logLevelSet===undefined || logLevels[logLevelSet]===und
 //record this to avoid looking it up every time in 'logToConsole'
 var logLevelIndex = logLevels[logLevelSet];
 
-var logToConsole = function(logLevel, logMessage){
+//the start of the line after the time for each level, built once
+var levelPrefixes = {};
+for(var logLevel of Object.keys(logLevels)){
+  levelPrefixes[logLevel] = ',"level":"' + logLevel + '","message":';
+}
+
+//the time is formatted once per millisecond however many lines are logged in it
+var timestampMilliseconds = -1;
+var formattedTimestamp;
+var getFormattedTimestamp = function(){
+  var now = Date.now();
+  if(now !== timestampMilliseconds){
+    timestampMilliseconds = now;
+    formattedTimestamp = '{"time":"' + new Date(now).toISOString() + '"';
+  }
+  return formattedTimestamp;
+};
+
+//lines are written once this many bytes are buffered, without waiting for the current work to complete
+var writeThresholdBytes = 64 * 1024;
+//lines logged while this many bytes are waiting to be written (stdout not keeping up) are dropped, the number dropped being logged
+var maxBufferedBytes = 8 * 1024 * 1024;
+var bufferedLines = [];
+var bufferedBytes = 0;
+var droppedLines = 0;
+var writeScheduled = false;
+var waitingForDrain = false;
+//set if stdout fails (e.g. it was closed), after which lines are discarded rather than the error stopping the service
+var outputFailed = false;
+process.stdout.on('error', function(){
+  outputFailed = true;
+});
+
+var takeBufferedLines = function(){
+  if(droppedLines > 0){
+    bufferedLines.push(getFormattedTimestamp() + levelPrefixes.WARNING + '"' + droppedLines + ' log lines were dropped as output was not keeping up."}\n');
+    droppedLines = 0;
+  }
+  var lines = bufferedLines.join('');
+  bufferedLines = [];
+  bufferedBytes = 0;
+  return lines;
+};
+
+var writeBufferedLines = function(){
+  writeScheduled = false;
+  if(outputFailed){
+    takeBufferedLines();
+    return;
+  }
+  if(waitingForDrain || bufferedLines.length === 0){
+    return;
+  }
+  if(!process.stdout.write(takeBufferedLines())){
+    waitingForDrain = true;
+    process.stdout.once('drain', function(){
+      waitingForDrain = false;
+      writeBufferedLines();
+    });
+  }
+};
+
+//the process is exiting so lines are written synchronously
+process.on('exit', function(){
+  if(!outputFailed && (bufferedLines.length > 0 || droppedLines > 0)){
+    try {
+      fs.writeSync(1, takeBufferedLines());
+    }
+    catch(error){
+      //nowhere left to report the failure
+    }
+  }
+});
+
+var bufferLine = function(line){
+  if(bufferedBytes + line.length > maxBufferedBytes){
+    droppedLines++;
+    return;
+  }
+  bufferedLines.push(line);
+  bufferedBytes += line.length;
+  if(bufferedBytes >= writeThresholdBytes && !waitingForDrain){
+    writeBufferedLines();
+  }
+  else if(!writeScheduled){
+    writeScheduled = true;
+    setImmediate(writeBufferedLines);
+  }
+};
+
+var logToConsole = function(logLevel, logMessage, extraProperties){
   //only log at the level set and above
   if(logLevels[logLevel]<logLevelIndex){
     return;
   }
   //support passsing a function to generate message. Avoids running logic like 'JSON.stringify(object)' if a message wouldn't be logged due to level settings.
-  var logOutputMessage = new Date().toUTCString()+ " "+logLevel+" "
-  if(typeof(logMessage)==='function'){
-    logOutputMessage += logMessage();
-  }
-  else{
-    logOutputMessage += logMessage;
-  }
-  console.log(logOutputMessage.replace(new RegExp("\\n", 'g'), ""));
+  var logOutputMessage = typeof(logMessage)==='function' ? logMessage() : logMessage;
+  //serializing the message escapes any line breaks in it so that each message is a single line
+  bufferLine(getFormattedTimestamp() + levelPrefixes[logLevel] + JSON.stringify(String(logOutputMessage)) +
+    (extraProperties===undefined ? '' : extraProperties) + '}\n');
 };
+
+//number of INFO messages logged with 'logInfoSampled' for each one output, per sample key
+var infoSampleRate = loggingConfigHelper.getInfoSampleRate();
+var sampleCounts = new Map();
+
 function logDebug(message){
   logToConsole("DEBUG", message);
 }
 function logInfo(message){
   logToConsole("INFO", message);
 }
+//logs an INFO message that is output frequently (e.g. for each request sent to another service). Only the first of every 'sample rate'
+//messages logged with the same sample key is output, the line recording the sample rate. All are output when logging at DEBUG level.
+function logInfoSampled(sampleKey, message){
+  if(infoSampleRate === 1 || logLevelIndex === logLevels.DEBUG){
+    logToConsole("INFO", message);
+    return;
+  }
+  var sampleCount = sampleCounts.get(sampleKey);
+  sampleCount = sampleCount===undefined ? 0 : sampleCount;
+  sampleCounts.set(sampleKey, (sampleCount + 1) % infoSampleRate);
+  if(sampleCount === 0){
+    logToConsole("INFO", message, ',"sampleRate":' + infoSampleRate);
+  }
+}
 function logError(message){
   logToConsole("ERROR", message);
 }
@@ -71,4 +180,3 @@ function logWarn(message){
 function logWarning(message){
   logWarn(message);
 }
-
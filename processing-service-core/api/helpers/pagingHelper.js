@@ -51,4 +51,54 @@ module.exports.buildArrayFromPagingParams = function(fullArray, pagingParams){
     }
   }
   return arrayToReturn;
-}
\ No newline at end of file
+}
+//header a response to a keyset page request carries the cursor of the next page in, absent on the last page
+var nextCursorHeader = 'X-Next-Cursor';
+module.exports.nextCursorHeader = nextCursorHeader;
+
+//returns an opaque cursor token for a page of configs continuing after the key passed
+module.exports.encodeKeyCursor = function(key){
+  return Buffer.from(key, 'utf8').toString('base64').replace(/\+/g, '-').replace(/\//g, '_').replace(/=+$/, '');
+};
+
+//returns the key that a cursor token created by 'encodeKeyCursor' continues after, or undefined if no cursor was passed
+module.exports.decodeKeyCursor = function(cursor){
+  if(cursor===undefined || cursor===null || cursor===''){
+    return undefined;
+  }
+  return Buffer.from(cursor.replace(/-/g, '+').replace(/_/g, '/'), 'base64').toString('utf8');
+};
+
+//takes the items retrieved for a keyset page, ordered by key and with one more than the page size requested if there is a further page,
+//and returns an object with the items of the page and the key the next page continues after (null if there is no further page)
+module.exports.buildKeysetPage = function(retrievedItems, pageSize){
+  if(retrievedItems.length <= pageSize){
+    return {items: retrievedItems, nextAfterKey: null};
+  }
+  var pageItems = retrievedItems.slice(0, pageSize);
+  return {items: pageItems, nextAfterKey: pageItems[pageItems.length - 1].key};
+};
+
+//sets the cursor of the next page on the response if there is one
+module.exports.setNextCursorHeader = function(response, nextAfterKey){
+  if(nextAfterKey!==null){
+    response.set(nextCursorHeader, module.exports.encodeKeyCursor(nextAfterKey));
+  }
+};
+
+//retrieves the items requested by the 'cursor' and 'limit' parameters of a keyset page request using the 'retrieve' function passed, which is
+//called with the key to continue after and the maximum number of items to return. If neither parameter was passed all items are retrieved,
+//otherwise a page of items is retrieved (of the default page size if no limit was passed) and the cursor of the next page set on the response.
+//Returns a promise resolved with the items.
+module.exports.retrieveKeysetPage = function(cursor, limit, retrieve, response){
+  if((cursor===undefined || cursor===null) && (limit===undefined || limit===null)){
+    return retrieve(undefined, undefined);
+  }
+  var pageSize = limit===undefined || limit===null ? pageSizeDefault : limit;
+  return retrieve(module.exports.decodeKeyCursor(cursor), pageSize + 1)
+    .then(function(retrievedItems){
+      var page = module.exports.buildKeysetPage(retrievedItems, pageSize);
+      module.exports.setNextCursorHeader(response, page.nextAfterKey);
+      return page.items;
+    });
+};
@@ -15,6 +15,7 @@
  */
 //holds methods to take Policy API Objects and extract relevant properties for Data Processing API Objects.
 var logger = require('./loggingHelper.js');
+var jsonBodyHelper = require('./jsonBodyHelper.js');
 var conditionModel = require('../models/policy_api/condition.js');
 
 module.exports = {
@@ -128,7 +129,7 @@ function buildConditionFromPolicyCondition(policyCondition, condition){
       conditionToReturn.additional = policyCondition.additional;
       break;
     default:
-      logger.error("Did not recognize type of condition on Policy API Condition when converting to Processing API Condition. Condition was: "+JSON.stringify(policyCondition));
+      logger.error("Did not recognize type of condition on Policy API Condition when converting to Processing API Condition. Condition was: "+jsonBodyHelper.stringify(policyCondition));
       throw "Unrecognized Condition type returned.";
   }
   return conditionToReturn;  
@@ -178,6 +179,7 @@ function buildActionFromCollection(collection, action){
   return actionToReturn;
 }
 //convenience method to take relevant properties from a policy and add them to an object representing an Action. If no action parameter passed then constructs new object.
+//The settings are not copied, they are the (frozen) details of the Policy passed. Copy them before making any change.
 function buildActionFromPolicy(policy, action){
   var actionToReturn = action !== null && action !== undefined ? action : {};
   actionToReturn.settings = policy.additional.details;
@@ -220,7 +222,7 @@ function buildRuleFromCollectionSequence(collectionSequenceObject, ruleToUpdate)
   ruleToReturn.name = collectionSequenceObject.name;
   ruleToReturn.description = collectionSequenceObject.description;
   if(collectionSequenceObject.additional===undefined || collectionSequenceObject.additional===null){
-    logger.error("Collection Sequence passed to build Rule from has no 'additional' property. Collection Sequence: "+ JSON.stringify(collectionSequenceObject));
+    logger.error("Collection Sequence passed to build Rule from has no 'additional' property. Collection Sequence: "+ jsonBodyHelper.stringify(collectionSequenceObject));
     throw "Unable to return Rule.";
   }
   ruleToReturn.enabled = collectionSequenceObject.additional.evaluation_enabled;
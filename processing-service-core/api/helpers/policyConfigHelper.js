@@ -14,17 +14,52 @@
  * limitations under the License.
  */
 var logger = require('./loggingHelper.js');
+var environmentConfigHelper = require('./environmentConfigHelper.js');
+var getIntegerFromEnvironment = environmentConfigHelper.getIntegerFromEnvironment;
+var getWorkerShare = environmentConfigHelper.getWorkerShare;
+var workers = require('./dataProcessingServiceConfigHelper.js').workers;
 
 //environment variables that config will be pulled from
 var policyAPIHost = "CAF_PROCESSING_SERVICE_POLICY_API_HOST";
 var policyAPIPort = "CAF_PROCESSING_SERVICE_POLICY_API_PORT";
 var policyAPIEntryPath = "CAF_PROCESSING_SERVICE_POLICY_API_ENTRY_PATH";
+var policyAPIKeepAlive = "CAF_PROCESSING_SERVICE_POLICY_API_KEEP_ALIVE";
+var policyAPIMaxSockets = "CAF_PROCESSING_SERVICE_POLICY_API_MAX_SOCKETS";
+var policyAPIMaxFreeSockets = "CAF_PROCESSING_SERVICE_POLICY_API_MAX_FREE_SOCKETS";
+var policyAPIFreeSocketTimeout = "CAF_PROCESSING_SERVICE_POLICY_API_FREE_SOCKET_TIMEOUT";
+var policyAPIRequestTimeout = "CAF_PROCESSING_SERVICE_POLICY_API_REQUEST_TIMEOUT";
+var policyAPIMaxConcurrentRequests = "CAF_PROCESSING_SERVICE_POLICY_API_MAX_CONCURRENT_REQUESTS";
+var policyAPICircuitFailureThreshold = "CAF_PROCESSING_SERVICE_POLICY_API_CIRCUIT_FAILURE_THRESHOLD";
+var policyAPICircuitResetTimeout = "CAF_PROCESSING_SERVICE_POLICY_API_CIRCUIT_RESET_TIMEOUT";
 
 var policyConfig = {
   policyAPIHost: "localhost",
   policyAPIPort: "8080",
-  policyAPIEntryPath: "/corepolicy/"
+  policyAPIEntryPath: "/corepolicy/",
+  //connection pool settings for the HTTP agent used on all Policy API requests
+  agent: {
+    keepAlive: true,
+    //maximum number of sockets open to the Policy API host at any one time, requests beyond this are queued by the agent
+    maxSockets: 50,
+    //maximum number of idle sockets to keep open to the Policy API host for reuse
+    maxFreeSockets: 10,
+    //time in milliseconds that an idle socket will be kept open before it is closed
+    freeSocketTimeout: 15000
+  },
+  //time in milliseconds that a request to Policy API may take once sent, including waiting for a pooled connection, before it is aborted
+  requestTimeout: 30000,
+  //maximum number of requests to Policy API in progress at any one time, further requests wait to be sent. Defaults to the maximum
+  //number of sockets so that requests wait in the fair queues of the service rather than in the queue of the agent.
+  maxConcurrentRequests: null,
+  //circuit breaker settings, requests fail immediately while the circuit is open
+  circuitBreaker: {
+    //number of consecutive failed requests after which the circuit opens
+    failureThreshold: 5,
+    //time in milliseconds the circuit stays open before a request is let through to probe Policy API
+    resetTimeout: 10000
+  }
 };
+
 //update config with policygateway environment options if any were passed
 //Get API Host
 var policyHostEnv = process.env[policyAPIHost];
@@ -41,5 +76,23 @@ var policyEntryPathEnv = process.env[policyAPIEntryPath];
 if(policyEntryPathEnv!==null && policyEntryPathEnv!==undefined){
   policyConfig.policyAPIEntryPath = policyEntryPathEnv;
 }
+//GET connection pool settings
+var keepAliveEnv = process.env[policyAPIKeepAlive];
+if(keepAliveEnv!==null && keepAliveEnv!==undefined){
+  policyConfig.agent.keepAlive = keepAliveEnv.toLowerCase() !== "false";
+}
+policyConfig.agent.maxSockets = getIntegerFromEnvironment(policyAPIMaxSockets, policyConfig.agent.maxSockets, 1);
+policyConfig.agent.maxFreeSockets = getIntegerFromEnvironment(policyAPIMaxFreeSockets, policyConfig.agent.maxFreeSockets, 0);
+policyConfig.agent.freeSocketTimeout = getIntegerFromEnvironment(policyAPIFreeSocketTimeout, policyConfig.agent.freeSocketTimeout, 0);
+//GET request timeout, concurrency and circuit breaker settings
+policyConfig.requestTimeout = getIntegerFromEnvironment(policyAPIRequestTimeout, policyConfig.requestTimeout, 0);
+policyConfig.maxConcurrentRequests = getIntegerFromEnvironment(policyAPIMaxConcurrentRequests, policyConfig.agent.maxSockets, 1);
+policyConfig.circuitBreaker.failureThreshold = getIntegerFromEnvironment(policyAPICircuitFailureThreshold,
+  policyConfig.circuitBreaker.failureThreshold, 1);
+policyConfig.circuitBreaker.resetTimeout = getIntegerFromEnvironment(policyAPICircuitResetTimeout, policyConfig.circuitBreaker.resetTimeout, 1000);
+//the socket and request limits are configured for the whole service, each worker process is given its share of them
+policyConfig.agent.maxSockets = getWorkerShare(policyConfig.agent.maxSockets, workers, 1);
+policyConfig.agent.maxFreeSockets = getWorkerShare(policyConfig.agent.maxFreeSockets, workers, 0);
+policyConfig.maxConcurrentRequests = getWorkerShare(policyConfig.maxConcurrentRequests, workers, 1);
 exports.policyConfig = policyConfig;
 logger.debug(function(){return "Policy API config is: "+JSON.stringify(policyConfig);});
\ No newline at end of file
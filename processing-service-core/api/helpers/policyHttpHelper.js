@@ -19,20 +19,221 @@ var querystring = require('querystring');
 var policyConfig = require('./policyConfigHelper.js').policyConfig;
 var logger = require('./loggingHelper.js');
 var promiseHelper = require('./httpPromiseHelper.js');
+var jsonBodyHelper = require('./jsonBodyHelper.js');
+var metrics = require('../libs/metrics.js');
+var circuitBreaker = require('../libs/circuitBreaker.js');
+var outboundScheduler = require('../libs/outboundScheduler.js');
+var apiErrorFactory = require('../models/errors/apiErrorFactory.js');
 
 module.exports = {
   genericPolicyAPIGetItemRequest: genericPolicyAPIGetItemRequest,
   genericPolicyAPIGetItemsRequest: genericPolicyAPIGetItemsRequest,
   genericPolicyAPIPostItemRequest: genericPolicyAPIPostItemRequest,
+  getAgentStatistics: getAgentStatistics,
+  getCircuitStatistics: getCircuitStatistics,
+  getCoalescingStatistics: getCoalescingStatistics,
+  getSchedulerStatistics: getSchedulerStatistics,
   getVersion: getVersion,
   healthCheck: healthCheck,
   policyAPIPostRequest: policyAPIPostRequest,
   policyAPIGetRequest:  policyAPIGetRequest
 };
 
+//--------------------CONNECTION POOL-------------------------------------//
+//a single pooled agent is shared by all requests to Policy API so that connections are reused rather than opened per request.
+var policyApiAgent = new http.Agent({
+  keepAlive: policyConfig.agent.keepAlive,
+  maxSockets: policyConfig.agent.maxSockets,
+  maxFreeSockets: policyConfig.agent.maxFreeSockets
+});
+
+//counters recording use of the connection pool over the lifetime of the process
+var agentCounters = {
+  requests: 0,
+  socketsCreated: 0,
+  socketsClosedWhileIdle: 0
+};
+
+var originalCreateConnection = policyApiAgent.createConnection;
+policyApiAgent.createConnection = function(){
+  agentCounters.socketsCreated++;
+  return originalCreateConnection.apply(this, arguments);
+};
+
+//closes a socket that has sat idle in the pool for longer than the configured free socket timeout
+var onFreeSocketTimeout = function(){
+  agentCounters.socketsClosedWhileIdle++;
+  this.destroy();
+};
+
+//when a socket is returned to the pool start the idle timer on it, this is cleared again when the socket is assigned to a request
+policyApiAgent.on('free', function(socket){
+  if(policyConfig.agent.freeSocketTimeout === 0){
+    return;
+  }
+  socket.setTimeout(policyConfig.agent.freeSocketTimeout);
+  if(socket.listeners('timeout').indexOf(onFreeSocketTimeout)===-1){
+    socket.on('timeout', onFreeSocketTimeout);
+  }
+});
+
+var countSockets = function(socketsByHost){
+  var socketCount = 0;
+  for(var hostKey of Object.keys(socketsByHost)){
+    socketCount += socketsByHost[hostKey].length;
+  }
+  return socketCount;
+};
+
+//returns an object describing the current occupancy of the Policy API connection pool and usage counters since startup.
+function getAgentStatistics(){
+  return {
+    activeSockets: countSockets(policyApiAgent.sockets),
+    freeSockets: countSockets(policyApiAgent.freeSockets),
+    queuedRequests: countSockets(policyApiAgent.requests),
+    maxSockets: policyApiAgent.maxSockets,
+    maxFreeSockets: policyApiAgent.maxFreeSockets,
+    requests: agentCounters.requests,
+    socketsCreated: agentCounters.socketsCreated,
+    socketsClosedWhileIdle: agentCounters.socketsClosedWhileIdle
+  };
+}
+
+metrics.createCollectedMetric('processing_policy_api_connections', 'Connections to Policy API in the pool, by state.', 'gauge', ['state'], function(){
+  var agentStatistics = getAgentStatistics();
+  return [
+    {labels: {state: 'active'}, value: agentStatistics.activeSockets},
+    {labels: {state: 'free'}, value: agentStatistics.freeSockets}
+  ];
+});
+metrics.createCollectedMetric('processing_policy_api_queued_requests', 'Requests to Policy API waiting for a pooled connection.', 'gauge', [], function(){
+  return [{value: countSockets(policyApiAgent.requests)}];
+});
+metrics.createCollectedMetric('processing_policy_api_connections_created_total', 'Connections opened to Policy API.', 'counter', [], function(){
+  return [{value: agentCounters.socketsCreated}];
+});
+
+//--------------------CIRCUIT BREAKER-------------------------------------//
+//requests to Policy API fail immediately while it is failing, rather than each waiting on a connection or for a timeout
+var policyApiCircuit = circuitBreaker.createCircuitBreaker('Policy API', policyConfig.circuitBreaker.failureThreshold,
+  policyConfig.circuitBreaker.resetTimeout);
+
+//statuses returned by Policy API, or a proxy in front of it, that indicate it is unavailable rather than that the request was rejected
+var unavailableStatusCodes = [502, 503, 504];
+
+//returns the state of the Policy API circuit and the number of times it has opened and requests refused since startup
+function getCircuitStatistics(){
+  return policyApiCircuit.getStatistics();
+}
+
+var circuitStates = [circuitBreaker.closed, circuitBreaker.halfOpen, circuitBreaker.open];
+metrics.createCollectedMetric('processing_policy_api_circuit_state', 'State of the Policy API circuit, 1 for the current state.', 'gauge', ['state'],
+  function(){
+    var currentState = policyApiCircuit.getState();
+    return circuitStates.map(function(circuitState){
+      return {labels: {state: circuitState}, value: circuitState===currentState ? 1 : 0};
+    });
+  });
+metrics.createCollectedMetric('processing_policy_api_circuit_rejected_requests_total',
+  'Requests to Policy API refused without being sent because the circuit was open.', 'counter', [], function(){
+  return [{value: policyApiCircuit.getStatistics().rejected}];
+});
+
+//--------------------REQUEST SCHEDULING----------------------------------//
+//the number of requests in progress to Policy API is limited, requests beyond the limit wait to be sent. Reads (GET requests, made to
+//answer interactive requests) are sent four times as often as writes (POST requests, which bulk imports send many of) while both are
+//waiting, and within each the tenants (project IDs) with requests waiting are served in turn so one tenant cannot hold up the others.
+var readRequestClass = 'read';
+var writeRequestClass = 'write';
+var policyApiScheduler = outboundScheduler.createScheduler(policyConfig.maxConcurrentRequests, {
+  read: 4,
+  write: 1
+});
+
+//returns the number of requests to Policy API in progress and waiting to be sent
+function getSchedulerStatistics(){
+  return policyApiScheduler.getStatistics();
+}
+
+//the tenant that requests are scheduled for, requests not made for a tenant share a queue
+var getSchedulingKey = function(requestParams){
+  if(requestParams===null || requestParams===undefined || requestParams.project_id===undefined || requestParams.project_id===null){
+    return '';
+  }
+  return String(requestParams.project_id);
+};
+
+var policyApiQueueWait = metrics.createHistogram('processing_policy_api_queue_wait_seconds',
+  'Time requests to Policy API waited to be sent because the limit of requests in progress was reached, by class (read or write).',
+  ['class']);
+metrics.createCollectedMetric('processing_policy_api_queue_depth',
+  'Requests to Policy API waiting to be sent because the limit of requests in progress was reached, by class (read or write).', 'gauge',
+  ['class'], function(){
+  var waitingByClass = policyApiScheduler.getStatistics().waiting;
+  return Object.keys(waitingByClass).map(function(requestClass){
+    return {labels: {class: requestClass}, value: waitingByClass[requestClass]};
+  });
+});
+metrics.createCollectedMetric('processing_policy_api_requests_in_progress', 'Requests to Policy API sent and awaiting a response.', 'gauge', [],
+  function(){
+  return [{value: policyApiScheduler.getStatistics().inProgress}];
+});
+
+//--------------------REQUEST COALESCING----------------------------------//
+//GET requests that are currently awaiting a response from Policy API, keyed on the full path and query string. Identical GET requests
+//made while one is in flight are attached to it rather than being sent again.
+var inFlightGetRequests = {};
+
+var coalescingCounters = {
+  issued: 0,
+  coalesced: 0
+};
+
+//returns counts of GET requests sent to Policy API and GET requests that were served by joining an identical in flight request instead.
+function getCoalescingStatistics(){
+  return {
+    getRequestsIssued: coalescingCounters.issued,
+    getRequestsCoalesced: coalescingCounters.coalesced,
+    getRequestsInFlight: Object.keys(inFlightGetRequests).length
+  };
+}
+
+metrics.createCollectedMetric('processing_policy_api_coalesced_requests_total',
+  'GET requests to Policy API that were served by joining an identical request already in flight.', 'counter', [], function(){
+  return [{value: coalescingCounters.coalesced}];
+});
+
+//calls the named callback for each of the waiters passed. All waiters are called even if one throws, the first error thrown is then rethrown.
+var notifyWaiters = function(waiters, callbackName, callbackArgs){
+  var firstError = null;
+  for(var waiter of waiters){
+    var callback = waiter[callbackName];
+    if(callback===null || callback===undefined){
+      continue;
+    }
+    try{
+      callback.apply(null, callbackArgs);
+    }
+    catch(error){
+      if(firstError===null){
+        firstError = error;
+      }
+    }
+  }
+  if(firstError!==null){
+    throw firstError;
+  }
+};
+
+//--------------------REQUEST METRICS-------------------------------------//
+var policyApiRequestDuration = metrics.createHistogram('processing_policy_api_request_duration_seconds',
+  'Time taken for requests to Policy API to complete, by API path. Status is the HTTP status code, \'error\' if no response was received or \'timeout\' if the request timed out.',
+  ['method', 'path', 'status']);
+
 //--------------------UTILITY METHODS-------------------------------------//
 var buildPolicyApiRequestOptions = function(apiPath, requestMethod){
   var corePolicyRequestOptions = {
+      agent: policyApiAgent,
       hostname: policyConfig.policyAPIHost,
       port: policyConfig.policyAPIPort,
       path: policyConfig.policyAPIEntryPath + apiPath,
@@ -41,26 +242,37 @@ var buildPolicyApiRequestOptions = function(apiPath, requestMethod){
   return corePolicyRequestOptions;
 };
 
+//used when logging request options to leave out the pooled agent, which holds references to the sockets in use.
+var requestOptionsLogReplacer = function(key, value){
+  return key === 'agent' ? undefined : value;
+};
+
 //adds query params to a corePolicyRequestOption object
 var updateRequestWithGetParams = function(corePolicyRequestOptions, params){
-  //creating a new version of params so it can be modified here without affecting the caller
-  var paramsToSend = {};
   if(params!==null && params !== undefined){
-    //cycle through the top level params and if any contain objects then JSON.stringify them so they can be passed correctly in URL
-    Object.keys(params).forEach(function(key,index) {
-      var paramsValue = params[key];
-      //if the parameter value is an object we stringify it. Unless it is an array, querystring library handles arrays for us.
-      if(typeof(paramsValue)==='object' && Array.isArray(paramsValue)===false){
-        paramsToSend[key] = JSON.stringify(paramsValue);
-      }
-      else {
-        paramsToSend[key] = paramsValue;
-      }
-    });    
-    corePolicyRequestOptions.path += '?'+ querystring.stringify(paramsToSend);
+    corePolicyRequestOptions.path += '?'+ buildQueryString(params);
   }
 };
 
+//builds a query string from the params passed
+var buildQueryString = function(params){
+  //creating a new version of params so it can be modified here without affecting the caller
+  var paramsToSend = {};
+  //cycle through the top level params and if any contain objects then serialize them as JSON so they can be passed correctly in URL,
+  //BigNumber IDs being written as numbers
+  Object.keys(params).forEach(function(key,index) {
+    var paramsValue = params[key];
+    //if the parameter value is an object we stringify it. Unless it is an array, querystring library handles arrays for us.
+    if(typeof(paramsValue)==='object' && Array.isArray(paramsValue)===false){
+      paramsToSend[key] = jsonBodyHelper.stringify(paramsValue);
+    }
+    else {
+      paramsToSend[key] = paramsValue;
+    }
+  });
+  return querystring.stringify(paramsToSend);
+};
+
 //call this to add Content Type and Length headers for POST, PUT, DELETE requests.
 var updateRequestWithContentHeaders = function(corePolicyRequestOptions, data){
   if(data===null || data===undefined){
@@ -73,46 +285,131 @@ var updateRequestWithContentHeaders = function(corePolicyRequestOptions, data){
 };
 
 //reads in data from a response and once response body is fully returned calls the passed in callback with the 
-//response and built up response body.
+//response and built up response body. The body is collected as Buffers and decoded once. 'mayContainLargeNumbers' is set on the response
+//so that the body can be parsed with the native parser if it has no numbers that need to be BigNumbers.
 var readResponse = function(response, completedResponseCallback) {
-  var responseBody = "";
-  response.setEncoding("utf8");
+  var bodyCollector = jsonBodyHelper.createBodyCollector();
   response.on('data', function(chunk) {
-    responseBody += chunk;
+    bodyCollector.add(chunk);
   });
   response.on('end', function() {
-    completedResponseCallback(response, responseBody);
+    response.mayContainLargeNumbers = bodyCollector.mayContainLargeNumbers();
+    completedResponseCallback(response, bodyCollector.getBody());
   });
 };
 
-//sends a HTTP request with the specified options. Does not call 'end' and does not write data for POST.
-var sendPolicyApiRequest = function(policyApiRequestOptions, policyCallback, errorCallback){
-  var policyApiRequest = http.request(policyApiRequestOptions, function(policyApiResponse){
-    readResponse(policyApiResponse, policyCallback);
-  });
-  policyApiRequest.on('error', function(e) {    
+//starts a request that is not scheduled straight away, in the same way the scheduler starts a scheduled one
+var sendUnscheduled = function(startFunction){
+  startFunction(function(){}, null);
+};
+
+//sends a HTTP request with the specified options and body (undefined for none) once the scheduler allows it, for the tenant identified by
+//the scheduling key. A scheduling key of null sends the request immediately, outside of the scheduler's limit.
+//The API path is used to record metrics for the request, which is also counted against the inbound request being handled.
+//Exactly one of the callbacks is called. The request is aborted if it does not complete within the configured timeout once sent.
+//If the Policy API circuit is open no request is sent and the error callback is called with a service unavailable error.
+var sendPolicyApiRequest = function(apiPath, policyApiRequestOptions, requestBody, schedulingKey, policyCallback, errorCallback){
+  //binding the callbacks to the inbound request so they run in its context whichever pooled connection the response arrives on
+  policyCallback = metrics.bindToCurrentRequest(policyCallback);
+  errorCallback = metrics.bindToCurrentRequest(errorCallback);
+  var reportError = function(e){
     if(errorCallback!==null && errorCallback!==undefined){
       errorCallback(e);
     }
     else{
-      logger.error("Error occured making Policy API Request to "+ apiPath +" "+ e);
+      logger.error("Error occured making Policy API Request to "+ policyApiRequestOptions.path +" "+ e);
     }
+  };
+  if(!policyApiCircuit.tryAcquire()){
+    var retryAfterSeconds = policyApiCircuit.getRetryAfterSeconds();
+    setImmediate(reportError, apiErrorFactory.createServiceUnavailableError(
+      "Policy API is unavailable, requests to it are not being sent. Retry after "+retryAfterSeconds+" seconds.", retryAfterSeconds));
+    return;
+  }
+  var requestContext = metrics.getCurrentRequestContext();
+  if(requestContext!==undefined){
+    requestContext.policyApiCalls++;
+  }
+  var requestClass = policyApiRequestOptions.method === 'GET' ? readRequestClass : writeRequestClass;
+  var schedule = schedulingKey===null ? sendUnscheduled : function(startFunction){
+    policyApiScheduler.schedule(requestClass, schedulingKey, startFunction);
+  };
+  schedule(function(releaseScheduledRequest, waitSeconds){
+    if(waitSeconds!==null){
+      policyApiQueueWait.observe({class: requestClass}, waitSeconds);
+    }
+    agentCounters.requests++;
+    var start = process.hrtime();
+    var recordDuration = function(status){
+      var elapsed = process.hrtime(start);
+      policyApiRequestDuration.observe({method: policyApiRequestOptions.method, path: apiPath, status: status}, elapsed[0] + elapsed[1] / 1e9);
+    };
+    //set once the outcome of the request has been reported, so that an error raised by aborting a timed out request is not reported again
+    var completed = false;
+    var timeoutTimer = null;
+    var complete = function(){
+      if(completed){
+        return false;
+      }
+      completed = true;
+      if(timeoutTimer!==null){
+        clearTimeout(timeoutTimer);
+      }
+      releaseScheduledRequest();
+      return true;
+    };
+    var policyApiRequest = http.request(policyApiRequestOptions, function(policyApiResponse){
+      //the connection closing before the whole body is received fails the request
+      policyApiResponse.on('aborted', function(){
+        if(!complete()){
+          return;
+        }
+        recordDuration('error');
+        policyApiCircuit.recordFailure();
+        reportError(new Error("Response from Policy API was aborted before it was fully received"));
+      });
+      readResponse(policyApiResponse, function(response, responseBody){
+        if(!complete()){
+          return;
+        }
+        recordDuration(response.statusCode);
+        if(unavailableStatusCodes.indexOf(response.statusCode)===-1){
+          policyApiCircuit.recordSuccess();
+        }
+        else {
+          policyApiCircuit.recordFailure();
+        }
+        policyCallback(response, responseBody);
+      });
+    });
+    //a pooled socket may still have its idle timer running, stop it now that the socket is in use again
+    policyApiRequest.on('socket', function(socket){
+      socket.setTimeout(0);
+    });
+    policyApiRequest.on('error', function(e) {    
+      if(!complete()){
+        return;
+      }
+      recordDuration('error');
+      policyApiCircuit.recordFailure();
+      reportError(e);
+    });
+    if(policyConfig.requestTimeout > 0){
+      timeoutTimer = setTimeout(function(){
+        if(!complete()){
+          return;
+        }
+        recordDuration('timeout');
+        policyApiCircuit.recordFailure();
+        policyApiRequest.abort();
+        var timeoutError = new Error("Request to Policy API did not complete within "+policyConfig.requestTimeout+"ms");
+        timeoutError.code = 'ETIMEDOUT';
+        reportError(timeoutError);
+      }, policyConfig.requestTimeout);
+    }
+    //finish sending the request, writing any data to the request body
+    policyApiRequest.end(requestBody);
   });
-  return policyApiRequest;
-};
-
-var sendPolicyAPIPostRequest = function(postData, policyApiRequestOptions, policyCallback, errorCallback){
-  var policyApiRequest = sendPolicyApiRequest(policyApiRequestOptions, policyCallback, errorCallback);
-  //finish sending the request, writing the data to request body
-  policyApiRequest.end(postData);
-  return policyApiRequest;
-};
-
-var sendPolicyAPIGetRequest = function(policyApiRequestOptions, policyCallback, errorCallback){
-  var policyApiRequest = sendPolicyApiRequest(policyApiRequestOptions, policyCallback, errorCallback);
-  //finish sending the request
-  policyApiRequest.end();
-  return policyApiRequest;
 };
 
 //Makes a HTTP request to Core Policy API using the specified path and parameters, calls the passed in callback with the response object
@@ -120,32 +417,86 @@ var sendPolicyAPIGetRequest = function(policyApiRequestOptions, policyCallback,
 //requestParams             - JSON object of parameters to submit in body of request
 //policyAPIRequestCallback  - function to call with response from request, will be 
 //                            passed the response and the responseBody as arguments
-//error callback            - function to call in case of error event being raised
-//Returns the request object created.
+//error callback            - function to call in case of error event being raised, the request timing out or the circuit being open
+//The request is scheduled for the tenant identified by the project_id in requestParams.
 function policyAPIPostRequest(apiPath, requestParams, policyAPIRequestCallback, errorCallback){
   var policyApiRequestOptions = buildPolicyApiRequestOptions(apiPath, 
     "POST");
   
-  var paramsAsStr = (requestParams !== null && requestParams !== undefined) ? JSON.stringify(requestParams) : "{}";  
+  var paramsAsStr = (requestParams !== null && requestParams !== undefined) ? jsonBodyHelper.stringify(requestParams) : "{}";  
   updateRequestWithContentHeaders(policyApiRequestOptions, paramsAsStr);
   
-  logger.info("About to issue request with options: " + JSON.stringify(policyApiRequestOptions) + ", body: "+paramsAsStr);
-  var policyApiRequest = sendPolicyAPIPostRequest(paramsAsStr, policyApiRequestOptions, policyAPIRequestCallback, errorCallback);
-  return policyApiRequest;
+  //a line is logged for every request sent so these are sampled, with the body only logged at debug level
+  logger.infoSampled('policyApiPostRequest', function(){
+    return "About to issue request with options: " + JSON.stringify(policyApiRequestOptions, requestOptionsLogReplacer);
+  });
+  logger.debug(function(){return "Body of request to "+policyApiRequestOptions.path+": "+paramsAsStr;});
+  sendPolicyApiRequest(apiPath, policyApiRequestOptions, paramsAsStr, getSchedulingKey(requestParams), policyAPIRequestCallback,
+    errorCallback);
 }
 
-function policyAPIGetRequest(apiPath, requestParams, policyAPIRequestCallback, errorCallback){
+//Makes a GET request to Core Policy API using the specified path and parameters. If an identical request (same path and parameters, which
+//include the project) is already in flight then no new request is sent, the callbacks are instead called with the outcome of the in flight request.
+//Each caller is passed the response body rather than a shared parsed object so callers remain free to modify the result they build from it.
+//The request is scheduled for the tenant identified by the project_id in requestParams.
+//getOptions                - Optional. Set 'noCoalesce' to true to always send a new request, for reads that must reflect every write completed
+//                            before they were made (an in flight request may have been sent before the write completed). Set 'unscheduled'
+//                            to true to send a new request immediately, not waiting behind the requests of tenants (used by the health probe).
+function policyAPIGetRequest(apiPath, requestParams, policyAPIRequestCallback, errorCallback, getOptions){
   var policyApiRequestOptions = buildPolicyApiRequestOptions(apiPath, 
     "GET");
   updateRequestWithGetParams(policyApiRequestOptions, requestParams);
-    
-  logger.info("About to issue request with options: " + JSON.stringify(policyApiRequestOptions));
-  var policyApiRequest = sendPolicyAPIGetRequest(policyApiRequestOptions, policyAPIRequestCallback, errorCallback);
-  return policyApiRequest;
+  
+  if(getOptions!==undefined && getOptions!==null && (getOptions.noCoalesce===true || getOptions.unscheduled===true)){
+    coalescingCounters.issued++;
+    logger.infoSampled('policyApiGetRequest', function(){
+      return "About to issue request with options: " + JSON.stringify(policyApiRequestOptions, requestOptionsLogReplacer);
+    });
+    sendPolicyApiRequest(apiPath, policyApiRequestOptions, undefined,
+      getOptions.unscheduled===true ? null : getSchedulingKey(requestParams), policyAPIRequestCallback, errorCallback);
+    return;
+  }
+  
+  var requestKey = policyApiRequestOptions.path;
+  //waiters joining a request sent for another inbound request still run their callbacks in the context of their own inbound request
+  var waiter = {
+    error: metrics.bindToCurrentRequest(errorCallback),
+    success: metrics.bindToCurrentRequest(policyAPIRequestCallback)
+  };
+  var inFlightRequest = inFlightGetRequests[requestKey];
+  if(inFlightRequest!==undefined){
+    coalescingCounters.coalesced++;
+    logger.debug(function(){return "Joining in flight request to: "+requestKey;});
+    inFlightRequest.waiters.push(waiter);
+    return;
+  }
+  inFlightRequest = {
+    waiters: [waiter]
+  };
+  inFlightGetRequests[requestKey] = inFlightRequest;
+  coalescingCounters.issued++;
+  
+  logger.infoSampled('policyApiGetRequest', function(){
+    return "About to issue request with options: " + JSON.stringify(policyApiRequestOptions, requestOptionsLogReplacer);
+  });
+  sendPolicyApiRequest(apiPath, policyApiRequestOptions, undefined, getSchedulingKey(requestParams),
+    function(response, responseBody){
+      //remove before notifying so that any request made by a waiter in response is sent rather than joined to this completed one
+      delete inFlightGetRequests[requestKey];
+      notifyWaiters(inFlightRequest.waiters, 'success', [response, responseBody]);
+    },
+    function(error){
+      delete inFlightGetRequests[requestKey];
+      if(inFlightRequest.waiters.every(function(errorWaiter){ return errorWaiter.error===null || errorWaiter.error===undefined; })){
+        logger.error("Error occured making Policy API Request to "+ policyApiRequestOptions.path +" "+ error);
+      }
+      notifyWaiters(inFlightRequest.waiters, 'error', [error]);
+    });
 }
 
 //a convenience method that calls policyAPIGetRequest with a specified policy path and returns the first result of the array of results in the response or null if none. Returns a promise that resolves on success and rejects on failure of the call.
-function genericPolicyAPIGetItemRequest(path, params){
+//'getOptions' is optional and passed on to policyAPIGetRequest.
+function genericPolicyAPIGetItemRequest(path, params, getOptions){
   //returns the first item from the array that call returns
   var extractFirstItem = function(policyResponse){
     if(policyResponse.results && policyResponse.results.length > 0){
@@ -156,7 +507,8 @@ function genericPolicyAPIGetItemRequest(path, params){
   var deferredRequest = Q.defer();
   policyAPIGetRequest(path, params,
     promiseHelper.handlePotentialSuccess(deferredRequest, extractFirstItem),
-    promiseHelper.handleFailure(deferredRequest)
+    promiseHelper.handleFailure(deferredRequest),
+    getOptions
   );
   return deferredRequest.promise;
 }
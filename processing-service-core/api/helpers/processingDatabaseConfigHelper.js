@@ -15,6 +15,8 @@
  */
 // configuration for communication with any databases the processing service may contact
 var logger = require('./loggingHelper.js');
+var environmentConfigHelper = require('./environmentConfigHelper.js');
+var workers = require('./dataProcessingServiceConfigHelper.js').workers;
 
 /**
  * Sets the specified property on database configuration using either the value set for the named environment variable or the
@@ -34,6 +36,7 @@ function setConfigProperty(propertyName, environmentVariableName, defaultValue)
 }
 
 //environment variables that config will be pulled from
+var databaseMaxConnectionsEnvName = "CAF_PROCESSING_SERVICE_DATABASE_MAX_CONNECTIONS";
 var databaseHostEnvName = "CAF_PROCESSING_SERVICE_DATABASE_HOST";
 var databaseNameEnvName = "CAF_PROCESSING_SERVICE_DATABASE_NAME";
 var databasePasswordEnvName = "CAF_PROCESSING_SERVICE_DATABASE_PASSWORD";
@@ -47,6 +50,9 @@ setConfigProperty('name', databaseNameEnvName, 'workflow');
 setConfigProperty('password', databasePasswordEnvName, '');
 setConfigProperty('port', databasePortEnvName, 5432);
 setConfigProperty('username', databaseUserEnvName, 'root');
+// the maximum number of connections is configured for the whole service, each worker process is given its share of them
+databaseConfig.maxConnections = environmentConfigHelper.getWorkerShare(
+    environmentConfigHelper.getIntegerFromEnvironment(databaseMaxConnectionsEnvName, 5, 1), workers, 1);
 
 module.exports = databaseConfig;
 logger.debug(function(){return "Service config is: "+JSON.stringify(databaseConfig);});
@@ -15,108 +15,57 @@
  */
 //administrative functions that give detail about the data processing service.
 var Q = require('q');
-var policyConfig = require('../helpers/policyConfigHelper.js').policyConfig;
 var packageJson = require('../../package.json');
 var loggingConfigHelper = require('../helpers/loggingConfigHelper.js');
-var request = require('request');
-var logger = require('../helpers/loggingHelper.js');
-
-const Sequelize = require('sequelize');
-const databaseConfig = require('../helpers/processingDatabaseConfigHelper.js');
-
-const unHealthy = 'UNHEALTHY';
-const healthy = 'HEALTHY';
-
-module.exports.healthCheck = function(onCompleteDeferred){
-
-  var policyApiStatus = {
-    name: 'POLICY_API',
-    status: unHealthy
-  }; 
-
-  var databaseStatus = {
-    name: 'PROCESSING_DATABASE',
-    status: unHealthy
-  };
-
-  var healthCheckResult = {
-    status: unHealthy,
-    dependencies: [databaseStatus, policyApiStatus]
-  }
+var policyHttpHelper = require('../helpers/policyHttpHelper.js');
+var databaseConnection = require('../models/db/databaseConnection.js');
+var healthProbes = require('./healthProbes.js');
+
+//the dependencies are checked in the background by the health probes, using the pooled Policy API agent and the shared database connection.
+//While the Policy API circuit is open the check fails immediately, reporting Policy API as unhealthy, and once the circuit is ready to be
+//probed the check is the request that probes it. The Policy API check is sent straight away rather than waiting in the queue of requests
+//to Policy API, so that a long queue is not reported as Policy API being unhealthy.
+healthProbes.registerProbe('PROCESSING_DATABASE', function(){
+  //the check resolves with true when the database is reachable, which is not a message to report
+  return databaseConnection.healthCheck()
+    .then(function(){
+      return undefined;
+    });
+});
 
+healthProbes.registerProbe('POLICY_API', function(){
   var policyHealthCheckDeferred = Q.defer();
-  policyHealthCheckDeferred.promise.then(function(response){
-    var healthStatusCode = (response.statusCode >= 200 && response.statusCode <=299);
-    policyApiStatus.status =  healthStatusCode ? healthy : unHealthy;
-
-    if(!healthStatusCode){
-      policyApiStatus.message = response.statusMessage;
-    }
-  })
-  .fail(function(error){
-    policyApiStatus.message = error;
-  });
-
-  makePolicyHealthCheckRequest(policyHealthCheckDeferred);
+  policyHttpHelper.policyAPIGetRequest('healthcheck', {
+      project_id: 'healthcheck'
+    },
+    function(response){
+      if(response.statusCode >= 200 && response.statusCode <=299){
+        policyHealthCheckDeferred.resolve();
+      }
+      else {
+        policyHealthCheckDeferred.reject(response.statusMessage);
+      }
+    },
+    function(error){
+      policyHealthCheckDeferred.reject(error);
+    },
+    {
+      unscheduled: true
+    });
+  return policyHealthCheckDeferred.promise;
+});
 
-  var databaseHealthCheckDeferred = Q.defer();
-  databaseHealthCheckDeferred.promise.then(function(dbHealthResult){
-    databaseStatus.status = dbHealthResult.status;
-    databaseStatus.message = dbHealthResult.message;
+//resolves the deferred passed with the result of the most recent health checks of the dependencies of the service.
+module.exports.healthCheck = function(onCompleteDeferred){
+  healthProbes.getHealth()
+  .then(function(healthCheckResult){
+    onCompleteDeferred.resolve(healthCheckResult);
   })
   .fail(function(error){
-    databaseStatus.message = error;
-  });
-
-  makeDatabaseHealthCheckRequest(databaseHealthCheckDeferred);
-
-  Q.all([policyHealthCheckDeferred.promise, databaseHealthCheckDeferred.promise]).then(function(){
-    healthCheckResult.status = policyApiStatus.status===healthy && databaseStatus.status===healthy ? healthy : unHealthy;
-    onCompleteDeferred.resolve(healthCheckResult);
-  }).fail(function(error){
     onCompleteDeferred.reject(error);
-  });
-};
-
-function makePolicyHealthCheckRequest(policyHealthCheckDeferred){
-  var policyHealthCheckRequest = request.get({
-    baseUrl: 'http://' + policyConfig.policyAPIHost + ':' + policyConfig.policyAPIPort + policyConfig.policyAPIEntryPath,
-    uri: 'healthcheck',
-    qs: {
-        project_id: 'healthcheck'
-    }
-  }, function (error, response, body) {
-    if(error){
-      policyHealthCheckDeferred.reject(error);
-    }
-    else {
-      policyHealthCheckDeferred.resolve(response);
-    }
-  });
-}
-
-function makeDatabaseHealthCheckRequest(databaseHealthCheckDeferred){
-
-  var databaseDefinition = new Sequelize(databaseConfig.name, databaseConfig.username, databaseConfig.password,
-    {
-        dialect: 'postgres',
-        host: databaseConfig.host,
-        logging: logger.debug,
-        operatorsAliases: false,
-        port: databaseConfig.port
-    }
-  );
-
-  databaseDefinition.authenticate()
-  .then(function() {
-    databaseHealthCheckDeferred.resolve({status: healthy});
   })
-  .catch(function(err) {
-      logger.error('Unable to connect to the database: ' + err);
-      databaseHealthCheckDeferred.resolve({status: unHealthy, message: 'Unable to connect to the database'});
-  });
-
-}
+  .done();
+};
 
 //Retrieves the version of this data-processing-service. In future may return the version of any external services used that provide that information.
 module.exports.getVersion = function() {
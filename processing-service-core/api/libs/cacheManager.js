@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//tracks the entries held by every in-process cache of the service against a single memory budget. Caches register with the manager and
+//report the entries they add, read and remove. When the estimated size of all entries exceeds the budget the least recently used entries,
+//across all caches, are evicted by calling back to the cache that holds them.
+//Sizes are estimated from the serialized length of the key and value so are approximate.
+var appConfig = require('../helpers/dataProcessingServiceConfigHelper.js');
+var logger = require('../helpers/loggingHelper.js');
+var metrics = require('./metrics.js');
+
+module.exports = {
+  getStatistics: getStatistics,
+  register: register
+};
+
+//all tracked entries in least to most recently used order (a Map iterates in insertion order so reading an entry moves it to the end)
+var trackedEntries = new Map();
+var totalBytes = 0;
+var registeredCaches = {};
+
+var buildTrackingKey = function(cacheName, key){
+  return cacheName + '\u0000' + key;
+};
+
+var estimateSize = function(key, value){
+  var serializedValue;
+  try {
+    serializedValue = JSON.stringify(value);
+  }
+  catch(error){
+    logger.warn("Unable to estimate size of cache entry with key: "+key+". "+error);
+  }
+  //strings are held as UTF-16 so allowing two bytes per character
+  return (String(key).length + (serializedValue===undefined ? 0 : serializedValue.length)) * 2;
+};
+
+var untrackEntry = function(trackingKey, trackedEntry){
+  trackedEntries.delete(trackingKey);
+  totalBytes -= trackedEntry.size;
+  trackedEntry.cache.bytes -= trackedEntry.size;
+  trackedEntry.cache.entries--;
+};
+
+//evicts least recently used entries until the total size is within the budget
+var evictToBudget = function(){
+  var maximumBytes = appConfig.cacheMaxBytes;
+  if(maximumBytes === 0){
+    return;
+  }
+  var iterator = trackedEntries.entries();
+  while(totalBytes > maximumBytes){
+    var next = iterator.next();
+    if(next.done){
+      break;
+    }
+    var trackingKey = next.value[0];
+    var trackedEntry = next.value[1];
+    untrackEntry(trackingKey, trackedEntry);
+    trackedEntry.cache.evictions++;
+    trackedEntry.cache.evictFunction(trackedEntry.key);
+  }
+};
+
+//registers a cache with the manager, returning an object the cache should use to report activity on its entries. The evict function
+//passed is called with the key of an entry when the manager evicts it, the cache should then remove that entry without reporting it back.
+function register(cacheName, evictFunction){
+  if(registeredCaches[cacheName]!==undefined){
+    throw new Error("A cache is already registered with name: "+cacheName);
+  }
+  var cache = {
+    bytes: 0,
+    entries: 0,
+    evictFunction: evictFunction,
+    evictions: 0,
+    hits: 0,
+    misses: 0
+  };
+  registeredCaches[cacheName] = cache;
+  return {
+    //records that the value has been cached against the key, evicting other entries if this takes the caches over budget. Returns false
+    //if the value was too large to fit in the budget, in which case it has already been passed to the evict function.
+    added: function(key, value){
+      var trackingKey = buildTrackingKey(cacheName, key);
+      var existingEntry = trackedEntries.get(trackingKey);
+      if(existingEntry!==undefined){
+        untrackEntry(trackingKey, existingEntry);
+      }
+      var trackedEntry = {
+        cache: cache,
+        key: key,
+        size: estimateSize(key, value)
+      };
+      //an entry larger than the whole budget is not kept, rather than evicting everything else to make room for it
+      if(appConfig.cacheMaxBytes!==0 && trackedEntry.size > appConfig.cacheMaxBytes){
+        cache.evictions++;
+        evictFunction(key);
+        return false;
+      }
+      trackedEntries.set(trackingKey, trackedEntry);
+      totalBytes += trackedEntry.size;
+      cache.bytes += trackedEntry.size;
+      cache.entries++;
+      evictToBudget();
+      return true;
+    },
+    //records a read of the cache, a hit if the entry for the key was found, moving it to most recently used
+    read: function(key, found){
+      if(!found){
+        cache.misses++;
+        return;
+      }
+      cache.hits++;
+      var trackingKey = buildTrackingKey(cacheName, key);
+      var trackedEntry = trackedEntries.get(trackingKey);
+      if(trackedEntry!==undefined){
+        trackedEntries.delete(trackingKey);
+        trackedEntries.set(trackingKey, trackedEntry);
+      }
+    },
+    //records that the entry for the key was removed by the cache itself (e.g. deleted or expired)
+    removed: function(key){
+      var trackingKey = buildTrackingKey(cacheName, key);
+      var trackedEntry = trackedEntries.get(trackingKey);
+      if(trackedEntry!==undefined){
+        untrackEntry(trackingKey, trackedEntry);
+      }
+    }
+  };
+}
+
+//returns the budget, the total estimated size of all cached entries and, for each registered cache, its number of entries, estimated size,
+//hits, misses, hit ratio and number of evictions.
+function getStatistics(){
+  var cacheStatistics = {};
+  for(var cacheName of Object.keys(registeredCaches)){
+    var cache = registeredCaches[cacheName];
+    var reads = cache.hits + cache.misses;
+    cacheStatistics[cacheName] = {
+      bytes: cache.bytes,
+      entries: cache.entries,
+      evictions: cache.evictions,
+      hitRatio: reads === 0 ? 0 : cache.hits / reads,
+      hits: cache.hits,
+      misses: cache.misses
+    };
+  }
+  return {
+    budgetBytes: appConfig.cacheMaxBytes,
+    totalBytes: totalBytes,
+    caches: cacheStatistics
+  };
+}
+
+//outputs a value from the statistics of each registered cache
+var collectCacheStatistic = function(statisticName){
+  return function(){
+    return Object.keys(registeredCaches).map(function(cacheName){
+      return {labels: {cache: cacheName}, value: registeredCaches[cacheName][statisticName]};
+    });
+  };
+};
+metrics.createCollectedMetric('processing_cache_hits_total', 'Reads that found an entry in the cache.', 'counter', ['cache'], collectCacheStatistic('hits'));
+metrics.createCollectedMetric('processing_cache_misses_total', 'Reads that did not find an entry in the cache.', 'counter', ['cache'], collectCacheStatistic('misses'));
+metrics.createCollectedMetric('processing_cache_evictions_total', 'Entries evicted from the cache to stay within the memory budget.', 'counter', ['cache'],
+  collectCacheStatistic('evictions'));
+metrics.createCollectedMetric('processing_cache_entries', 'Entries held in the cache.', 'gauge', ['cache'], collectCacheStatistic('entries'));
+metrics.createCollectedMetric('processing_cache_bytes', 'Estimated size of the entries held in the cache.', 'gauge', ['cache'], collectCacheStatistic('bytes'));
+metrics.createCollectedMetric('processing_cache_budget_bytes', 'Estimated size that all caches together may hold, 0 if unlimited.', 'gauge', [], function(){
+  return [{value: appConfig.cacheMaxBytes}];
+});
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//circuit breakers guarding the calls made to a dependency. After a number of consecutive failed calls the circuit opens and calls are
+//refused without being attempted, so that callers fail immediately rather than each waiting on a dependency that is down. Once the reset
+//timeout has passed a single call is let through to probe the dependency (half open), closing the circuit if it succeeds and opening it
+//again if it fails. The state is held per process.
+var logger = require('../helpers/loggingHelper.js');
+
+var closed = 'CLOSED';
+var halfOpen = 'HALF_OPEN';
+var open = 'OPEN';
+
+module.exports = {
+  closed: closed,
+  createCircuitBreaker: createCircuitBreaker,
+  halfOpen: halfOpen,
+  open: open
+};
+
+//creates a circuit breaker for the named dependency. The circuit opens after 'failureThreshold' consecutive failures and stays open for
+//'resetTimeout' milliseconds before a probe call is allowed. Each call allowed by 'tryAcquire' must have its outcome recorded with
+//'recordSuccess' or 'recordFailure'.
+function createCircuitBreaker(name, failureThreshold, resetTimeout){
+  var state = closed;
+  var consecutiveFailures = 0;
+  var openedAt = 0;
+  //time the probe call was allowed while half open, null if no probe is in progress
+  var probeStartedAt = null;
+  var counters = {
+    opened: 0,
+    rejected: 0
+  };
+
+  var setState = function(newState){
+    if(newState===state){
+      return;
+    }
+    state = newState;
+    if(newState===open){
+      logger.warn("Circuit for "+name+" is now "+newState+" after "+consecutiveFailures+" consecutive failures");
+    }
+    else {
+      logger.info("Circuit for "+name+" is now "+newState);
+    }
+  };
+
+  var openCircuit = function(){
+    openedAt = Date.now();
+    probeStartedAt = null;
+    counters.opened++;
+    setState(open);
+  };
+
+  return {
+    //returns true if a call may be made now. While half open only the probe call is allowed, another being allowed if the probe has
+    //not completed within the reset timeout.
+    tryAcquire: function(){
+      var now = Date.now();
+      if(state===closed){
+        return true;
+      }
+      if(state===open){
+        if(now - openedAt < resetTimeout){
+          counters.rejected++;
+          return false;
+        }
+        setState(halfOpen);
+      }
+      if(probeStartedAt!==null && now - probeStartedAt < resetTimeout){
+        counters.rejected++;
+        return false;
+      }
+      probeStartedAt = now;
+      return true;
+    },
+    //records a successful call, closing the circuit if it was the probe. Calls made before the circuit opened that complete while it is
+    //open do not close it.
+    recordSuccess: function(){
+      consecutiveFailures = 0;
+      if(state===halfOpen){
+        probeStartedAt = null;
+        setState(closed);
+      }
+    },
+    //records a failed call, opening the circuit if it was the probe or the failure threshold has been reached
+    recordFailure: function(){
+      if(state===open){
+        return;
+      }
+      consecutiveFailures++;
+      if(state===halfOpen || consecutiveFailures >= failureThreshold){
+        openCircuit();
+      }
+    },
+    getState: function(){
+      return state;
+    },
+    //returns the number of whole seconds until a probe call will be allowed, at least 1
+    getRetryAfterSeconds: function(){
+      return Math.max(1, Math.ceil((openedAt + resetTimeout - Date.now()) / 1000));
+    },
+    //returns the number of times the circuit has opened and the number of calls refused since startup
+    getStatistics: function(){
+      return {
+        state: state,
+        consecutiveFailures: consecutiveFailures,
+        opened: counters.opened,
+        rejected: counters.rejected
+      };
+    }
+  };
+}
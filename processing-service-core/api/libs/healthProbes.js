@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//checks the health of the dependencies of the service in the background and holds the result of the most recent checks so that health
+//requests can be answered immediately without contacting the dependencies. Each dependency is checked by a registered probe. Probes are
+//run together on a fixed interval, the next round being scheduled once the current one completes so that slow checks do not overlap.
+var Q = require('q');
+var appConfig = require('../helpers/dataProcessingServiceConfigHelper.js');
+var logger = require('../helpers/loggingHelper.js');
+
+var unHealthy = 'UNHEALTHY';
+var healthy = 'HEALTHY';
+
+module.exports = {
+  getHealth: getHealth,
+  healthy: healthy,
+  registerProbe: registerProbe,
+  start: start,
+  unHealthy: unHealthy
+};
+
+var probes = [];
+var started = false;
+//resolved once the first round of probes has completed
+var firstRoundDeferred = Q.defer();
+
+//registers a probe for the named dependency. The check function should return a promise that resolves if the dependency is healthy, with
+//an optional message string, and rejects with the reason if it is not. Checks that do not complete within the configured timeout are unhealthy.
+function registerProbe(name, checkFunction){
+  probes.push({
+    checkFunction: checkFunction,
+    result: {
+      name: name,
+      status: unHealthy,
+      message: 'Not yet checked'
+    }
+  });
+}
+
+var getErrorMessage = function(error){
+  if(error instanceof Error){
+    return error.message;
+  }
+  if(error!==null && typeof(error)==='object' && error.message!==undefined){
+    return error.message;
+  }
+  return String(error);
+};
+
+var runProbe = function(probe){
+  var start = process.hrtime();
+  var recordResult = function(status, message){
+    var elapsed = process.hrtime(start);
+    var result = {
+      name: probe.result.name,
+      status: status,
+      lastChecked: new Date().toISOString(),
+      latencyMs: Math.round(elapsed[0] * 1000 + elapsed[1] / 1e6)
+    };
+    if(typeof(message)==='string'){
+      result.message = message;
+    }
+    if(status!==probe.result.status){
+      logger.info("Dependency "+result.name+" is now "+status+(result.message===undefined ? "" : ": "+result.message));
+    }
+    probe.result = result;
+  };
+  return Q.fcall(probe.checkFunction)
+    .timeout(appConfig.healthProbe.timeout, 'Check did not complete within '+appConfig.healthProbe.timeout+'ms')
+    .then(function(message){
+      recordResult(healthy, message);
+    }, function(error){
+      recordResult(unHealthy, getErrorMessage(error));
+    });
+};
+
+var runProbes = function(){
+  Q.all(probes.map(runProbe))
+    .fin(function(){
+      firstRoundDeferred.resolve();
+      setTimeout(runProbes, appConfig.healthProbe.interval).unref();
+    })
+    .done();
+};
+
+//starts running the registered probes in the background. Has no effect if already started.
+function start(){
+  if(started){
+    return;
+  }
+  started = true;
+  runProbes();
+}
+
+//returns a promise resolving with the overall status of the service and the result of the most recent check of each dependency, including
+//when it was checked and how long the check took. Waits for the first round of checks if they have not yet completed.
+function getHealth(){
+  start();
+  return firstRoundDeferred.promise.then(function(){
+    var dependencies = probes.map(function(probe){
+      return probe.result;
+    });
+    return {
+      status: dependencies.every(function(dependency){ return dependency.status===healthy; }) ? healthy : unHealthy,
+      dependencies: dependencies
+    };
+  });
+}
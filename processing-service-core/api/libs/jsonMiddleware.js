@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//express middleware reading JSON request bodies and writing JSON responses with the BigNumber support of the JSON body helper, so that
+//64-bit integers sent to and returned from the service keep their precision while the global JSON object remains native.
+var jsonBodyHelper = require('../helpers/jsonBodyHelper.js');
+
+module.exports = {
+  parseJsonRequestBody: parseJsonRequestBody,
+  writeJsonResponses: writeJsonResponses
+};
+
+//largest request body accepted, the default limit of the body parser used by the swagger middleware
+var maxRequestBodyBytes = 100 * 1024;
+
+//content types read as JSON, as by the body parser used by the swagger middleware
+var jsonContentTypePattern = /^application\/(?:[^;\s]+\+)?json\s*(?:;|$)/i;
+
+var createError = function(status, message){
+  var error = new Error(message);
+  error.status = status;
+  return error;
+};
+
+//parses the body collected, an empty body being read as an empty object
+var parseBody = function(bodyCollector){
+  var body = bodyCollector.getBody();
+  var firstCharacterMatch = /^\s*(\S)/.exec(body);
+  if(firstCharacterMatch===null){
+    return {};
+  }
+  //only objects and arrays are accepted at the top level, as by the body parser in strict mode
+  if(firstCharacterMatch[1] !== '{' && firstCharacterMatch[1] !== '['){
+    throw new SyntaxError('Unexpected token ' + firstCharacterMatch[1] + ' in JSON at position ' + (firstCharacterMatch[0].length - 1));
+  }
+  return jsonBodyHelper.parse(body, bodyCollector.mayContainLargeNumbers());
+};
+
+//reads the body of requests with a JSON content type and sets the parsed body on the request, marking it as read so that the body parser
+//of the swagger middleware does not read it again. Must be used before the swagger middleware.
+function parseJsonRequestBody(request, response, next){
+  var contentType = request.headers['content-type'];
+  if(request._body===true || contentType===undefined || !jsonContentTypePattern.test(contentType)){
+    return next();
+  }
+  var contentLength = parseInt(request.headers['content-length'], 10);
+  if(!isNaN(contentLength) && contentLength > maxRequestBodyBytes){
+    return next(createError(413, 'request entity too large'));
+  }
+  var bodyCollector = jsonBodyHelper.createBodyCollector();
+  //set once next has been called so that the rest of the request is ignored
+  var completed = false;
+  var complete = function(error){
+    completed = true;
+    next(error);
+  };
+  request.on('data', function(chunk){
+    if(completed){
+      return;
+    }
+    bodyCollector.add(chunk);
+    if(bodyCollector.getLength() > maxRequestBodyBytes){
+      complete(createError(413, 'request entity too large'));
+    }
+  });
+  request.on('end', function(){
+    if(completed){
+      return;
+    }
+    try {
+      request.body = parseBody(bodyCollector);
+    }
+    catch(error){
+      error.status = 400;
+      return complete(error);
+    }
+    request._body = true;
+    complete();
+  });
+  request.on('error', function(error){
+    if(!completed){
+      complete(error);
+    }
+  });
+}
+
+//replaces 'json' on the response with a version that writes BigNumber objects as numbers. Must be used before any middleware that wraps 'json'.
+function writeJsonResponses(request, response, next){
+  response.json = function(body){
+    var serializedBody = jsonBodyHelper.stringify(body);
+    if(!this.get('Content-Type')){
+      this.set('Content-Type', 'application/json');
+    }
+    return this.send(serializedBody);
+  };
+  next();
+}
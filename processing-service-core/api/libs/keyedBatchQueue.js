@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//queues serializing the work done for each key, for example the read-modify-write of a single object. Only one batch runs for a key at a
+//time, items queued for the key while it runs wait and are then processed together as the next batch, so that many concurrent changes to
+//one object result in a few writes rather than one write each. Keys are independent of each other. The queues are held per process.
+var Q = require('q');
+
+module.exports = {
+  createKeyedBatchQueue: createKeyedBatchQueue
+};
+
+//creates a queue that processes the items of a key with 'processBatch', called with the key and an array of the items in the order they
+//were queued. It should return a promise resolving with an array holding an outcome for each item, either {value: ...} or {error: ...}.
+//If the promise rejects, or does not resolve with an outcome for each item, every item of the batch is rejected with the error.
+function createKeyedBatchQueue(processBatch){
+  //the items waiting for each key that has a batch running
+  var queuesByKey = new Map();
+  var counters = {
+    batches: 0,
+    items: 0
+  };
+
+  var runBatch = function(key, queuedItems){
+    counters.batches++;
+    counters.items += queuedItems.length;
+    var items = queuedItems.map(function(queuedItem){
+      return queuedItem.item;
+    });
+    Q.fcall(function(){
+      return processBatch(key, items);
+    })
+    .then(function(outcomes){
+      if(!Array.isArray(outcomes) || outcomes.length!==queuedItems.length || outcomes.some(function(outcome){
+        return outcome===null || typeof(outcome)!=='object';
+      })){
+        throw new Error("Processing a batch of "+queuedItems.length+" items for key "+key+" did not return an outcome for each item.");
+      }
+      queuedItems.forEach(function(queuedItem, itemIndex){
+        var outcome = outcomes[itemIndex];
+        if(outcome.error!==undefined){
+          queuedItem.deferred.reject(outcome.error);
+        }
+        else {
+          queuedItem.deferred.resolve(outcome.value);
+        }
+      });
+    })
+    .fail(function(errorResponse){
+      queuedItems.forEach(function(queuedItem){
+        queuedItem.deferred.reject(errorResponse);
+      });
+    })
+    .fin(function(){
+      var waitingItems = queuesByKey.get(key);
+      if(waitingItems.length===0){
+        queuesByKey.delete(key);
+        return;
+      }
+      queuesByKey.set(key, []);
+      runBatch(key, waitingItems);
+    })
+    .done();
+  };
+
+  return {
+    //queues an item for the key, returning a promise resolving or rejecting with the outcome of the item. Starts a batch immediately if
+    //none is running for the key.
+    enqueue: function(key, item){
+      var queuedItem = {
+        deferred: Q.defer(),
+        item: item
+      };
+      var waitingItems = queuesByKey.get(key);
+      if(waitingItems===undefined){
+        queuesByKey.set(key, []);
+        runBatch(key, [queuedItem]);
+      }
+      else {
+        waitingItems.push(queuedItem);
+      }
+      return queuedItem.deferred.promise;
+    },
+    //returns the number of keys with a batch running and the number of batches and items processed since startup
+    getStatistics: function(){
+      var waiting = 0;
+      queuesByKey.forEach(function(waitingItems){
+        waiting += waitingItems.length;
+      });
+      return {
+        activeKeys: queuesByKey.size,
+        waiting: waiting,
+        batches: counters.batches,
+        items: counters.items
+      };
+    }
+  };
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//registry of the metrics recorded by the service, output in the Prometheus text exposition format. Modules create the counters and
+//histograms they record to, or register a collect function for values they already track (e.g. pool sizes), when they are loaded.
+//Also tracks each inbound request so that work done on its behalf (e.g. calls to Policy API) can be attributed to it. A domain is used to
+//carry the request context across asynchronous calls as Q promises run each callback in the domain that was active when it was queued.
+var domain = require('domain');
+
+module.exports = {
+  bindToCurrentRequest: bindToCurrentRequest,
+  createCollectedMetric: createCollectedMetric,
+  createCounter: createCounter,
+  createHistogram: createHistogram,
+  getCurrentRequestContext: getCurrentRequestContext,
+  getMetricsText: getMetricsText,
+  trackRequest: trackRequest
+};
+
+var registeredMetrics = [];
+var registeredNames = {};
+
+var secondsBuckets = [0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10];
+
+var registerMetric = function(metric){
+  if(registeredNames[metric.name]!==undefined){
+    throw new Error("A metric is already registered with name: "+metric.name);
+  }
+  registeredNames[metric.name] = true;
+  registeredMetrics.push(metric);
+  return metric;
+};
+
+var escapeLabelValue = function(labelValue){
+  return String(labelValue).replace(/\\/g, '\\\\').replace(/\n/g, '\\n').replace(/"/g, '\\"');
+};
+
+//builds the label set for output e.g. {path="policy/retrieve",method="GET"}. Extra label text is appended (used for histogram 'le' labels).
+var formatLabels = function(labelNames, labelValues, extraLabelText){
+  var labelParts = [];
+  for(var labelIndex = 0; labelIndex < labelNames.length; labelIndex++){
+    labelParts.push(labelNames[labelIndex] + '="' + escapeLabelValue(labelValues[labelIndex]) + '"');
+  }
+  if(extraLabelText!==undefined){
+    labelParts.push(extraLabelText);
+  }
+  return labelParts.length === 0 ? '' : '{' + labelParts.join(',') + '}';
+};
+
+var getLabelValues = function(labelNames, labels){
+  return labelNames.map(function(labelName){
+    return labels===undefined || labels[labelName]===undefined ? '' : labels[labelName];
+  });
+};
+
+var formatHeader = function(metric){
+  return '# HELP ' + metric.name + ' ' + metric.help + '\n# TYPE ' + metric.name + ' ' + metric.type + '\n';
+};
+
+var formatNumber = function(value){
+  if(value === Infinity){
+    return '+Inf';
+  }
+  return String(value);
+};
+
+//creates a counter with the labels named. Returns an object with an 'inc' function taking the label values and an optional amount (default 1).
+function createCounter(name, help, labelNames){
+  var series = {};
+  var metric = registerMetric({
+    name: name,
+    help: help,
+    type: 'counter',
+    format: function(){
+      var output = formatHeader(metric);
+      for(var seriesKey of Object.keys(series)){
+        output += name + formatLabels(labelNames, series[seriesKey].labelValues) + ' ' + formatNumber(series[seriesKey].value) + '\n';
+      }
+      return output;
+    }
+  });
+  return {
+    inc: function(labels, amount){
+      var labelValues = getLabelValues(labelNames, labels);
+      var seriesKey = labelValues.join('\u0000');
+      var counterSeries = series[seriesKey];
+      if(counterSeries===undefined){
+        counterSeries = series[seriesKey] = {labelValues: labelValues, value: 0};
+      }
+      counterSeries.value += amount===undefined ? 1 : amount;
+    }
+  };
+}
+
+//creates a histogram with the labels and bucket upper bounds passed (defaults to buckets suitable for request durations in seconds).
+//Returns an object with an 'observe' function taking the label values and the value observed.
+function createHistogram(name, help, labelNames, buckets){
+  var bucketBounds = buckets===undefined ? secondsBuckets : buckets;
+  var series = {};
+  var metric = registerMetric({
+    name: name,
+    help: help,
+    type: 'histogram',
+    format: function(){
+      var output = formatHeader(metric);
+      for(var seriesKey of Object.keys(series)){
+        var histogramSeries = series[seriesKey];
+        var cumulativeCount = 0;
+        for(var bucketIndex = 0; bucketIndex < bucketBounds.length; bucketIndex++){
+          cumulativeCount += histogramSeries.bucketCounts[bucketIndex];
+          output += name + '_bucket' + formatLabels(labelNames, histogramSeries.labelValues, 'le="' + formatNumber(bucketBounds[bucketIndex]) + '"') +
+            ' ' + cumulativeCount + '\n';
+        }
+        output += name + '_bucket' + formatLabels(labelNames, histogramSeries.labelValues, 'le="+Inf"') + ' ' + histogramSeries.count + '\n';
+        output += name + '_sum' + formatLabels(labelNames, histogramSeries.labelValues) + ' ' + formatNumber(histogramSeries.sum) + '\n';
+        output += name + '_count' + formatLabels(labelNames, histogramSeries.labelValues) + ' ' + histogramSeries.count + '\n';
+      }
+      return output;
+    }
+  });
+  return {
+    observe: function(labels, value){
+      var labelValues = getLabelValues(labelNames, labels);
+      var seriesKey = labelValues.join('\u0000');
+      var histogramSeries = series[seriesKey];
+      if(histogramSeries===undefined){
+        histogramSeries = series[seriesKey] = {
+          bucketCounts: bucketBounds.map(function(){ return 0; }),
+          count: 0,
+          labelValues: labelValues,
+          sum: 0
+        };
+      }
+      for(var bucketIndex = 0; bucketIndex < bucketBounds.length; bucketIndex++){
+        if(value <= bucketBounds[bucketIndex]){
+          histogramSeries.bucketCounts[bucketIndex]++;
+          break;
+        }
+      }
+      histogramSeries.count++;
+      histogramSeries.sum += value;
+    }
+  };
+}
+
+//registers a metric whose values are read when metrics are output. The collect function should return an array of objects with 'labels'
+//(an object keyed on label name, may be omitted) and 'value' properties. Type should be 'gauge' or 'counter'.
+function createCollectedMetric(name, help, type, labelNames, collectFunction){
+  var metric = registerMetric({
+    name: name,
+    help: help,
+    type: type,
+    format: function(){
+      var output = formatHeader(metric);
+      for(var sample of collectFunction()){
+        output += name + formatLabels(labelNames, getLabelValues(labelNames, sample.labels)) + ' ' + formatNumber(sample.value) + '\n';
+      }
+      return output;
+    }
+  });
+}
+
+//returns all registered metrics in the Prometheus text format.
+function getMetricsText(){
+  var output = '';
+  for(var metric of registeredMetrics){
+    output += metric.format();
+  }
+  return output;
+}
+
+//--------------------REQUEST TRACKING------------------------------------//
+var httpRequestDuration = createHistogram('processing_http_request_duration_seconds',
+  'Time taken to respond to requests to the service, by route.', ['method', 'route', 'status']);
+var policyApiCallsPerRequest = createHistogram('processing_http_request_policy_api_calls',
+  'Number of requests sent to Policy API while handling a request to the service, by route.', ['method', 'route'],
+  [0, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89]);
+
+//returns the context of the inbound request currently being handled or undefined if none.
+function getCurrentRequestContext(){
+  var activeDomain = process.domain;
+  return activeDomain===null || activeDomain===undefined ? undefined : activeDomain.requestContext;
+}
+
+//returns the function passed bound to the inbound request currently being handled so that it is attributed to that request whichever
+//context it is later called from (e.g. a response arriving on a pooled connection first opened for a different request).
+function bindToCurrentRequest(callback){
+  var activeDomain = process.domain;
+  if(callback===null || callback===undefined || activeDomain===null || activeDomain===undefined){
+    return callback;
+  }
+  return activeDomain.bind(callback);
+}
+
+//the route a request was matched to in the contract, used rather than the request path so that IDs do not each create a series
+var getRoute = function(request){
+  if(request.swagger!==undefined && request.swagger.apiPath!==undefined){
+    return request.swagger.apiPath;
+  }
+  return 'unmatched';
+};
+
+//express middleware recording the duration of each request and the number of Policy API calls made for it
+function trackRequest(request, response, next){
+  var start = process.hrtime();
+  var requestDomain = domain.create();
+  requestDomain.requestContext = {
+    policyApiCalls: 0
+  };
+  response.on('finish', function(){
+    var elapsed = process.hrtime(start);
+    var route = getRoute(request);
+    httpRequestDuration.observe({method: request.method, route: route, status: response.statusCode}, elapsed[0] + elapsed[1] / 1e9);
+    policyApiCallsPerRequest.observe({method: request.method, route: route}, requestDomain.requestContext.policyApiCalls);
+  });
+  requestDomain.add(request);
+  requestDomain.add(response);
+  requestDomain.run(next);
+}
+
+//--------------------EVENT LOOP LAG--------------------------------------//
+var eventLoopLagSampleInterval = 500;
+var eventLoopLag = createHistogram('processing_event_loop_lag_seconds',
+  'Delay in running a timer beyond its scheduled time, sampled every '+eventLoopLagSampleInterval+'ms.', [],
+  [0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5]);
+var lastEventLoopLag = 0;
+createCollectedMetric('processing_event_loop_lag_last_seconds', 'Most recently sampled event loop lag.', 'gauge', [], function(){
+  return [{value: lastEventLoopLag}];
+});
+
+var sampleEventLoopLag = function(){
+  var scheduled = process.hrtime();
+  setTimeout(function(){
+    var elapsed = process.hrtime(scheduled);
+    lastEventLoopLag = Math.max(0, elapsed[0] + elapsed[1] / 1e9 - eventLoopLagSampleInterval / 1000);
+    eventLoopLag.observe({}, lastEventLoopLag);
+    sampleEventLoopLag();
+  }, eventLoopLagSampleInterval).unref();
+};
+sampleEventLoopLag();
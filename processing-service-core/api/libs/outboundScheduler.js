@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//schedulers limiting the number of outbound calls in progress to a dependency. Calls beyond the limit wait in a queue for their class (for
+//example reads and writes) and, within the class, for their key (for example the tenant). When a call completes the next call is taken from
+//the classes in proportion to their weights, so a class with a higher weight is served more often without the others being starved, and
+//within the class from each key waiting in turn, so that one key with many calls waiting does not delay the calls of the other keys. Keys
+//are not weighted, every key waiting in a class is served equally.
+
+module.exports = {
+  createScheduler: createScheduler
+};
+
+//creates a scheduler allowing at most 'maxConcurrent' calls in progress. 'classWeights' is an object of the class names calls may be
+//scheduled with and the weight of each, each weight being a positive integer.
+function createScheduler(maxConcurrent, classWeights){
+  Object.keys(classWeights).forEach(function(className){
+    if(!Number.isInteger(classWeights[className]) || classWeights[className] < 1){
+      throw new Error("Weight of scheduler class '" + className + "' must be a positive integer, was: " + classWeights[className]);
+    }
+  });
+  var inProgress = 0;
+  var waiting = 0;
+  var classes = Object.keys(classWeights).map(function(className){
+    return {
+      name: className,
+      weight: classWeights[className],
+      //used to choose between classes by smooth weighted round robin
+      currentWeight: 0,
+      waiting: 0,
+      //the calls waiting for each key, and the keys with calls waiting in the order they will be served
+      queuesByKey: new Map(),
+      keysWaiting: []
+    };
+  });
+  var classesByName = Object.create(null);
+  classes.forEach(function(schedulerClass){
+    classesByName[schedulerClass.name] = schedulerClass;
+  });
+
+  //chooses the class to take the next call from out of those with calls waiting, each being chosen in proportion to its weight
+  var chooseClass = function(){
+    var totalWeight = 0;
+    var chosenClass = null;
+    for(var schedulerClass of classes){
+      if(schedulerClass.waiting===0){
+        continue;
+      }
+      schedulerClass.currentWeight += schedulerClass.weight;
+      totalWeight += schedulerClass.weight;
+      if(chosenClass===null || schedulerClass.currentWeight > chosenClass.currentWeight){
+        chosenClass = schedulerClass;
+      }
+    }
+    chosenClass.currentWeight -= totalWeight;
+    return chosenClass;
+  };
+
+  //removes the next call to start from the class, taking one call from each key waiting in turn
+  var takeCall = function(schedulerClass){
+    var key = schedulerClass.keysWaiting.shift();
+    var keyQueue = schedulerClass.queuesByKey.get(key);
+    var call = keyQueue.shift();
+    if(keyQueue.length===0){
+      schedulerClass.queuesByKey.delete(key);
+    }
+    else {
+      schedulerClass.keysWaiting.push(key);
+    }
+    schedulerClass.waiting--;
+    waiting--;
+    return call;
+  };
+
+  var start = function(call){
+    inProgress++;
+    var released = false;
+    var done = function(){
+      if(released){
+        return;
+      }
+      released = true;
+      inProgress--;
+      startWaitingCalls();
+    };
+    var elapsed = process.hrtime(call.queuedAt);
+    call.startFunction(done, elapsed[0] + elapsed[1] / 1e9);
+  };
+
+  var startWaitingCalls = function(){
+    while(waiting > 0 && inProgress < maxConcurrent){
+      start(takeCall(chooseClass()));
+    }
+  };
+
+  return {
+    //schedules a call of the class and key passed. 'startFunction' is called once the call may start, passed a function that must be called
+    //when the call has completed and the number of seconds the call waited to start. Calls start immediately if below the limit. Throws
+    //if the class was not passed when the scheduler was created.
+    schedule: function(className, key, startFunction){
+      var schedulerClass = classesByName[className];
+      if(schedulerClass===undefined){
+        throw new Error("Unknown scheduler class: " + className);
+      }
+      var call = {
+        queuedAt: process.hrtime(),
+        startFunction: startFunction
+      };
+      if(inProgress < maxConcurrent && waiting===0){
+        start(call);
+        return;
+      }
+      var keyQueue = schedulerClass.queuesByKey.get(key);
+      if(keyQueue===undefined){
+        keyQueue = [];
+        schedulerClass.queuesByKey.set(key, keyQueue);
+        schedulerClass.keysWaiting.push(key);
+      }
+      keyQueue.push(call);
+      schedulerClass.waiting++;
+      waiting++;
+    },
+    //returns the number of calls in progress and the number waiting in each class
+    getStatistics: function(){
+      var waitingByClass = {};
+      for(var schedulerClass of classes){
+        waitingByClass[schedulerClass.name] = schedulerClass.waiting;
+      }
+      return {
+        inProgress: inProgress,
+        maxConcurrent: maxConcurrent,
+        waiting: waitingByClass
+      };
+    }
+  };
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//runs the service as a cluster of worker processes sharing the service port so that request handling can use more than one core.
+//The process started (the master) forks the configured number of workers, each running the service, and serves the admin port for all of
+//them: the metrics of each worker are requested over the IPC channel and combined. The dependencies are checked by the health probes of
+//the master alone, so that they are checked once however many workers run, and the health check adds whether the workers respond. Workers that exit unexpectedly are
+//replaced. On SIGHUP the workers are replaced one at a time, each new worker listening before the one it replaces stops, and on SIGTERM
+//or SIGINT all workers are stopped. A stopping worker finishes the requests it is handling, up to the configured shutdown timeout.
+//Each worker holds its own caches. Workers broadcast the invalidations they make through the master so that the other workers apply them too.
+var cluster = require('cluster');
+var Q = require('q');
+var appConfig = require('../helpers/dataProcessingServiceConfigHelper.js');
+var logger = require('../helpers/loggingHelper.js');
+var healthProbes = require('./healthProbes.js');
+var metrics = require('./metrics.js');
+
+module.exports = {
+  broadcast: broadcast,
+  onBroadcast: onBroadcast,
+  startMaster: startMaster,
+  startWorker: startWorker
+};
+
+var adminRequestType = 'processingServiceAdminRequest';
+var adminResponseType = 'processingServiceAdminResponse';
+var broadcastType = 'processingServiceBroadcast';
+
+//a worker that exits within this time in milliseconds of starting is replaced after the restart delay, so that a worker failing as it
+//starts is not restarted continuously
+var minimumWorkerUptime = 10000;
+var restartDelay = 5000;
+
+//--------------------WORKER------------------------------------//
+
+var sendAdminResponse = function(requestId, resultPromise){
+  resultPromise.then(function(result){
+    process.send({type: adminResponseType, requestId: requestId, result: result});
+  }, function(error){
+    process.send({type: adminResponseType, requestId: requestId, error: error instanceof Error ? error.message : String(error)});
+  })
+  .done();
+};
+
+//handlers for the messages broadcast by other workers, keyed on channel
+var broadcastHandlers = {};
+
+//answers requests from the master to check this worker responds and for its metrics, and passes on messages broadcast by other workers
+var onMasterMessage = function(message){
+  if(message===null || typeof(message)!=='object'){
+    return;
+  }
+  if(message.type===broadcastType){
+    var broadcastHandler = broadcastHandlers[message.channel];
+    if(broadcastHandler!==undefined){
+      broadcastHandler(message.message);
+    }
+  }
+  else if(message.type===adminRequestType){
+    if(message.requestType==='ping'){
+      sendAdminResponse(message.requestId, Q({pid: process.pid}));
+    }
+    else {
+      sendAdminResponse(message.requestId, Q(metrics.getMetricsText()));
+    }
+  }
+};
+if(cluster.isWorker){
+  process.on('message', onMasterMessage);
+}
+
+//sends the message passed to the other workers, where it is passed to the handler registered for the channel. Has no effect when the
+//service is not running as a cluster. The message should be a plain object as it is serialized.
+function broadcast(channel, message){
+  if(!cluster.isWorker || !cluster.worker.isConnected()){
+    return;
+  }
+  process.send({type: broadcastType, channel: channel, message: message});
+}
+
+//registers the function to call with the messages broadcast by other workers on the channel named.
+function onBroadcast(channel, handler){
+  broadcastHandlers[channel] = handler;
+}
+
+//exits once the master has disconnected the worker (the servers of the worker having been closed and the requests it was handling
+//completed) or the master has exited.
+function startWorker(){
+  cluster.worker.on('disconnect', function(){
+    process.exit(0);
+  });
+}
+
+//--------------------MASTER------------------------------------//
+
+//the worker currently running in each position, positions being kept across restarts so that metrics are labelled consistently
+var workerSlots = [];
+var pendingAdminRequests = new Map();
+var nextAdminRequestId = 0;
+var restarting = false;
+var shuttingDown = false;
+var workerRestarts;
+
+//sends messages broadcast by a worker to all other workers, including any starting
+var relayBroadcast = function(sendingWorker, message){
+  for(var workerId of Object.keys(cluster.workers)){
+    var worker = cluster.workers[workerId];
+    if(worker!==sendingWorker && isRunning(worker)){
+      worker.send(message);
+    }
+  }
+};
+
+var onWorkerMessage = function(sendingWorker, message){
+  if(message===null || typeof(message)!=='object'){
+    return;
+  }
+  if(message.type===broadcastType){
+    relayBroadcast(sendingWorker, message);
+    return;
+  }
+  if(message.type!==adminResponseType){
+    return;
+  }
+  var pendingRequest = pendingAdminRequests.get(message.requestId);
+  if(pendingRequest===undefined){
+    return;
+  }
+  if(message.error!==undefined){
+    pendingRequest.reject(new Error(message.error));
+  }
+  else {
+    pendingRequest.resolve(message.result);
+  }
+};
+
+var isRunning = function(worker){
+  return worker!==undefined && !worker.isDead() && worker.isConnected();
+};
+
+//stops the worker passed, allowing it to finish the requests it is handling up to the shutdown timeout. Returns a promise resolved once it has exited.
+var stopWorker = function(worker){
+  if(worker===undefined || worker.isDead()){
+    return Q();
+  }
+  var exitedDeferred = Q.defer();
+  var killTimer = setTimeout(function(){
+    logger.warn("Worker "+worker.process.pid+" did not stop within "+appConfig.workerShutdownTimeout+"ms, killing it.");
+    worker.kill('SIGKILL');
+  }, appConfig.workerShutdownTimeout);
+  worker.once('exit', function(){
+    clearTimeout(killTimer);
+    exitedDeferred.resolve();
+  });
+  if(worker.isConnected()){
+    worker.disconnect();
+  }
+  return exitedDeferred.promise;
+};
+
+//forks a worker for the position passed. The worker is only placed in the position when 'assignToSlot' is true, otherwise the caller
+//should place it once ready.
+var createWorker = function(slotIndex, assignToSlot){
+  var worker = cluster.fork();
+  var startedAt = Date.now();
+  worker.on('message', function(message){
+    onWorkerMessage(worker, message);
+  });
+  worker.on('exit', function(code, signal){
+    if(workerSlots[slotIndex]!==worker || worker.exitedAfterDisconnect || shuttingDown){
+      return;
+    }
+    var uptime = Date.now() - startedAt;
+    var delay = uptime < minimumWorkerUptime ? restartDelay : 0;
+    logger.error("Worker "+worker.process.pid+" exited unexpectedly with "+(signal===null ? "code "+code : "signal "+signal)+
+      ". Starting a replacement in "+delay+"ms.");
+    workerRestarts.inc();
+    setTimeout(function(){
+      if(!shuttingDown && workerSlots[slotIndex]===worker){
+        createWorker(slotIndex, true);
+      }
+    }, delay);
+  });
+  if(assignToSlot){
+    workerSlots[slotIndex] = worker;
+  }
+  return worker;
+};
+
+//starts a new worker for the position passed and once it is listening stops the worker it replaces.
+var replaceWorker = function(slotIndex){
+  var replacedWorker = workerSlots[slotIndex];
+  var listeningDeferred = Q.defer();
+  var replacementWorker = createWorker(slotIndex, false);
+  replacementWorker.once('listening', function(){
+    workerSlots[slotIndex] = replacementWorker;
+    listeningDeferred.resolve();
+  });
+  replacementWorker.once('exit', function(){
+    listeningDeferred.reject(new Error("Replacement worker "+replacementWorker.process.pid+" exited before it started listening."));
+  });
+  return listeningDeferred.promise.then(function(){
+    return stopWorker(replacedWorker);
+  });
+};
+
+//replaces each worker in turn so that requests are served throughout. Has no effect if a restart is already in progress.
+var restartWorkers = function(){
+  if(restarting || shuttingDown){
+    return;
+  }
+  restarting = true;
+  logger.info("Restarting "+workerSlots.length+" workers.");
+  workerSlots.reduce(function(previousReplacement, worker, slotIndex){
+    return previousReplacement.then(function(){
+      return replaceWorker(slotIndex);
+    });
+  }, Q())
+  .then(function(){
+    logger.info("Workers restarted.");
+  }, function(error){
+    logger.error("Restart of workers stopped. "+error.message);
+  })
+  .fin(function(){
+    restarting = false;
+  })
+  .done();
+};
+
+var shutdown = function(adminServer){
+  if(shuttingDown){
+    return;
+  }
+  shuttingDown = true;
+  logger.info("Stopping "+workerSlots.length+" workers.");
+  Q.all(workerSlots.map(stopWorker))
+  .fin(function(){
+    adminServer.close();
+    process.exit(0);
+  })
+  .done();
+};
+
+//sends a request to check it responds ('ping') or for its metrics ('metrics') to the worker passed. Returns a promise resolved with the result.
+var requestFromWorker = function(worker, requestType){
+  if(!isRunning(worker)){
+    return Q.reject(new Error("Worker is not running."));
+  }
+  var requestId = ++nextAdminRequestId;
+  var responseDeferred = Q.defer();
+  pendingAdminRequests.set(requestId, responseDeferred);
+  worker.send({type: adminRequestType, requestId: requestId, requestType: requestType}, function(error){
+    if(error){
+      responseDeferred.reject(error);
+    }
+  });
+  return responseDeferred.promise
+    .timeout(appConfig.healthProbe.timeout, "Worker did not respond within "+appConfig.healthProbe.timeout+"ms")
+    .fin(function(){
+      pendingAdminRequests.delete(requestId);
+    });
+};
+
+//returns the result of the most recent checks of the dependencies, made by the master, and the number of workers that responded. The
+//service is healthy if at least one worker responded and all dependencies are healthy.
+var getClusterHealth = function(){
+  return Q.all([
+    healthProbes.getHealth(),
+    Q.allSettled(workerSlots.map(function(worker){
+      return requestFromWorker(worker, 'ping');
+    }))
+  ])
+  .spread(function(dependenciesHealth, workerResults){
+    var respondingWorkers = workerResults.filter(function(workerResult){
+      return workerResult.state==='fulfilled';
+    }).length;
+    return {
+      status: respondingWorkers > 0 && dependenciesHealth.status===healthProbes.healthy ? healthProbes.healthy : healthProbes.unHealthy,
+      dependencies: dependenciesHealth.dependencies,
+      workers: {
+        expected: workerSlots.length,
+        responding: respondingWorkers
+      }
+    };
+  });
+};
+
+//adds a 'worker' label to a sample line of the Prometheus text format
+var addWorkerLabel = function(sampleLine, workerLabel){
+  var nameEnd = sampleLine.search(/[{ ]/);
+  if(nameEnd===-1){
+    return sampleLine;
+  }
+  if(sampleLine.charAt(nameEnd)==='{'){
+    return sampleLine.substring(0, nameEnd + 1) + 'worker="' + workerLabel + '",' + sampleLine.substring(nameEnd + 1);
+  }
+  return sampleLine.substring(0, nameEnd) + '{worker="' + workerLabel + '"}' + sampleLine.substring(nameEnd);
+};
+
+//combines metrics in the Prometheus text format from several processes, labelling each sample with the process it came from. Each
+//metric is output once with the samples from all processes.
+var combineMetricsTexts = function(labelledTexts){
+  var metricFamilies = new Map();
+  for(var labelledText of labelledTexts){
+    var currentFamily;
+    for(var line of labelledText.text.split('\n')){
+      if(line===''){
+        continue;
+      }
+      var headerMatch = /^# (?:HELP|TYPE) (\S+)/.exec(line);
+      if(headerMatch!==null){
+        currentFamily = metricFamilies.get(headerMatch[1]);
+        if(currentFamily===undefined){
+          currentFamily = {headerLines: [], headerSource: labelledText, sampleLines: []};
+          metricFamilies.set(headerMatch[1], currentFamily);
+        }
+        if(currentFamily.headerSource===labelledText){
+          currentFamily.headerLines.push(line);
+        }
+        continue;
+      }
+      if(currentFamily!==undefined){
+        currentFamily.sampleLines.push(addWorkerLabel(line, labelledText.label));
+      }
+    }
+  }
+  var output = '';
+  for(var metricFamily of metricFamilies.values()){
+    output += metricFamily.headerLines.join('\n') + '\n';
+    for(var sampleLine of metricFamily.sampleLines){
+      output += sampleLine + '\n';
+    }
+  }
+  return output;
+};
+
+//returns the metrics of this process and of each worker that responded, labelled with the worker position (or 'master')
+var getClusterMetricsText = function(){
+  return Q.allSettled(workerSlots.map(function(worker){
+    return requestFromWorker(worker, 'metrics');
+  }))
+  .then(function(workerResults){
+    var labelledTexts = [{label: 'master', text: metrics.getMetricsText()}];
+    workerResults.forEach(function(workerResult, slotIndex){
+      if(workerResult.state==='fulfilled'){
+        labelledTexts.push({label: String(slotIndex), text: workerResult.value});
+      }
+      else {
+        logger.warn("Unable to retrieve metrics from worker "+slotIndex+". "+workerResult.reason.message);
+      }
+    });
+    return combineMetricsTexts(labelledTexts);
+  });
+};
+
+var startAdminApp = function(){
+  var adminApp = require('express')();
+  adminApp.use('/healthcheck', function(req, res){
+    getClusterHealth().then(function(result){
+      res.status(result.status===healthProbes.unHealthy ? 500 : 200);
+      res.json(result);
+    })
+    .fail(function(error){
+      res.status(500);
+      res.json({message: error.message});
+    })
+    .done();
+  });
+  adminApp.use('/metrics', function(req, res){
+    getClusterMetricsText().then(function(metricsText){
+      res.status(200);
+      res.set('Content-Type', 'text/plain; version=0.0.4');
+      res.send(metricsText);
+    })
+    .fail(function(error){
+      res.status(500);
+      res.send(error.message);
+    })
+    .done();
+  });
+  var adminServer = adminApp.listen(appConfig.adminPort);
+  logger.info('Service listening on port: ' + appConfig.adminPort);
+  return adminServer;
+};
+
+//forks the configured number of workers, replacing any that exit, and serves the admin port for all of them. The dependencies are checked
+//from this process.
+function startMaster(){
+  //registers the probes of the dependencies, loaded here as the workers do not need this module loaded in the master
+  require('./admin.js');
+  healthProbes.start();
+  workerRestarts = metrics.createCounter('processing_cluster_worker_restarts_total',
+    'Number of workers replaced after exiting unexpectedly.', []);
+  metrics.createCollectedMetric('processing_cluster_workers', 'Number of workers running.', 'gauge', [], function(){
+    return [{value: workerSlots.filter(isRunning).length}];
+  });
+  logger.info("Starting "+appConfig.workers+" workers.");
+  for(var slotIndex = 0; slotIndex < appConfig.workers; slotIndex++){
+    createWorker(slotIndex, true);
+  }
+  var adminServer = startAdminApp();
+  process.on('SIGHUP', restartWorkers);
+  process.on('SIGTERM', function(){
+    shutdown(adminServer);
+  });
+  process.on('SIGINT', function(){
+    shutdown(adminServer);
+  });
+}
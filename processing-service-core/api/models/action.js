@@ -15,6 +15,8 @@
  */
 var Q = require('q');
 var logger = require('../helpers/loggingHelper.js');
+var jsonBodyHelper = require('../helpers/jsonBodyHelper.js');
+var appConfig = require('../helpers/dataProcessingServiceConfigHelper.js');
 var colSeqModel = require('./policy_api/collectionSequence.js');
 var polWorkflowModel = require('./policy_api/workflow.js');
 var collectionModel = require('./policy_api/collection.js');
@@ -26,11 +28,15 @@ var pagingHelper = require('../helpers/pagingHelper.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
 var policyToProcessingHelper = require('../helpers/policyApiToProcessingApiHelper.js');
 var apiErrorFactory = require('./errors/apiErrorFactory.js');
+var errorResponseHelper = require('./errorResponse.js');
 
 module.exports.getActions = function(getActionsParams){
   if(getActionsParams===null || getActionsParams===undefined){
     throw new Error("Must pass an object of properties to use in retrieving actions.");
   }
+  if(appConfig.actionsFromFullSequence){
+    return module.exports.getActionsUsingFullSeq(getActionsParams);
+  }
     
   //to be used as a map of Action ID to built up object
   var actionsMap = {};
@@ -44,6 +50,7 @@ module.exports.getActions = function(getActionsParams){
   
   var deferredGetActions = Q.defer();
   var validationParams = {    
+    allowCachedMembership: true,
     id: getActionsParams.ruleId,
     project_id: getActionsParams.project_id,
     workflowId: getActionsParams.workflowId
@@ -201,6 +208,136 @@ module.exports.getActions = function(getActionsParams){
   return deferredGetActions.promise;
 };
 
+//retrieves a page of Actions on a Rule using a single retrieve of the Collection Sequence with its children (Collections, Policies and Policy Types) rather than requesting each of those separately.
+module.exports.getActionsUsingFullSeq = function(getActionsParams){
+  if(getActionsParams===null || getActionsParams===undefined){
+    throw new Error("Must pass an object of properties to use in retrieving actions.");
+  }
+  var deferredGetActions = Q.defer();
+  var actionsTotalHits = 0;
+  var actionsToReturn = [];
+  //used to record Actions whose Policy Type was not returned on the sequence details and so need to be retrieved separately.
+  var typeIdToActionsMap = {};
+  var typesToGet = [];
+  
+  var validationParams = {
+    allDetails: true,
+    allowCachedMembership: true,
+    id: getActionsParams.ruleId,
+    project_id: getActionsParams.project_id,
+    workflowId: getActionsParams.workflowId
+  };
+  
+  validationModel.validateWorkflowAndSeqForRule(validationParams)
+  .then(function(validationResult){
+    logger.debug("Validated that workflow and rule exist before retrieving actions.");
+    var retrievedSeq = validationResult.collectionSequence;
+    var seqDetails = validationResult.collectionSequenceDetails.additional;
+    var collectionEntries = retrievedSeq.additional.collection_sequence_entries;
+    if(collectionEntries===null || collectionEntries===undefined || collectionEntries.length===0){
+      logger.debug("No collection entries on sequence with ID: "+getActionsParams.ruleId);
+      return {
+        totalHits: 0,
+        actions: []
+      };
+    }
+    actionsTotalHits = retrievedSeq.additional.collection_count !== undefined && retrievedSeq.additional.collection_count !== null ?
+      retrievedSeq.additional.collection_count : collectionEntries.length;
+    
+    //only build as many Actions as requested by paging parameters
+    var pagingParams = pagingHelper.getValidatedPagingParams(getActionsParams.pageNum, getActionsParams.pageSize);
+    if(pagingParams.start > collectionEntries.length || pagingParams.pageSize === 0){
+      //start index is greater than the number of entries, return empty array.
+      return {
+        totalHits: actionsTotalHits,
+        actions: []
+      };
+    }
+    
+    var collectionsMap = buildIdMap(seqDetails.collections);
+    var policiesMap = buildIdMap(seqDetails.policies);
+    var typesMap = buildIdMap(seqDetails.policy_types);
+    
+    for(var collectionEntry of pagingHelper.buildArrayFromPagingParams(collectionEntries, pagingParams)){
+      //Data Processing API does not support multiple collections on a single entry
+      if(collectionEntry.collection_ids.length !== 1){
+        logger.error("Expected 1 entry on collection sequence entry for sequence ID: "+getActionsParams.ruleId +" but found "+collectionEntry.collection_ids.length);
+        throw apiErrorFactory.createError("Unable to retrieve Actions on Rule with ID: "+getActionsParams.ruleId);
+      }
+      var builtAction = policyToProcessingHelper.buildActionFromCollectionEntry(collectionEntry);
+      var collection = collectionsMap[builtAction.id];
+      if(collection===undefined){
+        logger.error("Collection ID: "+builtAction.id+" on sequence ID: "+getActionsParams.ruleId+" was not returned in the sequence details.");
+        throw apiErrorFactory.createError('Unable to retrieve the Actions.');
+      }
+      policyToProcessingHelper.buildActionFromCollection(collection, builtAction);
+      
+      if(collection.additional.policy_ids === null || collection.additional.policy_ids === undefined || collection.additional.policy_ids.length ===0){
+        logger.warn("No Policy IDs returned for Collection ID: "+collection.id+". Action expects there to be a Policy on the Collection.");
+        throw apiErrorFactory.createError('Unable to retrieve the Actions.');
+      }
+      var policy = policiesMap[collection.additional.policy_ids[0]];
+      if(policy===undefined){
+        logger.error("Policy ID: "+collection.additional.policy_ids[0]+" on Collection ID: "+collection.id+" was not returned in the sequence details.");
+        throw apiErrorFactory.createError('Unable to retrieve the Actions.');
+      }
+      policyToProcessingHelper.buildActionFromPolicy(policy, builtAction);
+      
+      var typeId = policy.additional.policy_type_id;
+      if(typesMap[typeId]!==undefined){
+        policyToProcessingHelper.buildActionFromPolicyType(typesMap[typeId], builtAction);
+      }
+      else if(typeIdToActionsMap[typeId]===undefined){
+        typeIdToActionsMap[typeId] = [builtAction];
+        typesToGet.push(typeId);
+      }
+      else {
+        typeIdToActionsMap[typeId].push(builtAction);
+      }
+      actionsToReturn.push(builtAction);
+    }
+    
+    if(typesToGet.length===0){
+      return {
+        totalHits: actionsTotalHits,
+        actions: actionsToReturn
+      };
+    }
+    //Policy Types may not be included in sequence details, fall back to retrieving them (these are likely to be cached)
+    return policyTypeModel.getTypesByIds(getActionsParams.project_id, {ids: typesToGet})
+    .then(function(returnedTypes){
+      for(var returnedType of returnedTypes.results){
+        for(var typeAction of typeIdToActionsMap[returnedType.id]){
+          policyToProcessingHelper.buildActionFromPolicyType(returnedType, typeAction);
+        }
+      }
+      return {
+        totalHits: actionsTotalHits,
+        actions: actionsToReturn
+      };
+    });
+  })
+  .then(function(actionsResult){
+    deferredGetActions.resolve(actionsResult);
+  })
+  .fail(function(errorResponse){
+    deferredGetActions.reject(errorResponse);
+  }).done();
+  return deferredGetActions.promise;
+};
+
+//takes an array of Policy API items and returns an object mapping the ID of each item to the item. Returns an empty object if no array passed.
+function buildIdMap(items){
+  var idMap = {};
+  if(items===null || items===undefined){
+    return idMap;
+  }
+  for(var item of items){
+    idMap[item.id] = item;
+  }
+  return idMap;
+}
+
 module.exports.getAction = function(getActionParams){
   if(getActionParams===null || getActionParams===undefined){
     throw new Error("Must pass an object of properties to use in retrieving action.");
@@ -210,6 +347,7 @@ module.exports.getAction = function(getActionParams){
   var deferredGetAction = Q.defer();
   
   var validationParams = {    
+    allowCachedMembership: true,
     id: getActionParams.ruleId,
     project_id: getActionParams.project_id,
     workflowId: getActionParams.workflowId
@@ -280,6 +418,7 @@ module.exports.updateAction = function(updateActionParams){
   
   var deferredUpdateAction = Q.defer();
   var validationParams = {    
+    allowCachedMembership: true,
     id: updateActionParams.ruleId,
     project_id: updateActionParams.project_id,
     workflowId: updateActionParams.workflowId
@@ -293,31 +432,16 @@ module.exports.updateAction = function(updateActionParams){
       logger.debug("No collection entries on sequence with ID: "+updateActionParams.ruleId);
       throw apiErrorFactory.createNotFoundError("There are no Actions on Rule with ID: "+updateActionParams.ruleId);      
     }
-    var foundActionOnSeq = false;
-    //iterate over collection entries to find the match for the ID requested
-    for(var collectionEntry of retrievedSeq.additional.collection_sequence_entries){
-      if(collectionEntry.collection_ids[0]!==updateActionParams.id){
-        continue;
-      }
-      //update the order field to be what was passed by caller
-      collectionEntry.order = updateActionParams.order;      
-      policyToProcessingHelper.buildActionFromCollectionEntry(collectionEntry, actionToReturn);
-      foundActionOnSeq = true;
-      break;
-    }
-    if(foundActionOnSeq===false){
+    //update the order field on the entry to be what was passed by caller
+    return colSeqModel.updateEntryOrder(updateActionParams.project_id, updateActionParams.ruleId, updateActionParams.id,
+      updateActionParams.order);
+  })
+  .then(function(updatedEntry){
+    if(updatedEntry===null){
       logger.debug("Could not find a collection with the specified ID on the collection sequence. ID: "+updateActionParams.id);
       throw apiErrorFactory.createNotFoundError("Could not find Action with ID: "+updateActionParams.ruleId +" on Rule with ID: " + updateActionParams.ruleId);
     }
-    //save the collection sequence with the updated order field
-    var updateCollectionSequenceParams = {
-      additional: retrievedSeq.additional,
-      enabled: retrievedSeq.additional.evaluation_enabled,
-      id: retrievedSeq.id,
-      name: retrievedSeq.name,
-      description: retrievedSeq.description
-    };
-    return colSeqModel.update(updateActionParams.project_id, updateCollectionSequenceParams);
+    policyToProcessingHelper.buildActionFromCollectionEntry(updatedEntry, actionToReturn);
   })
   .then(function(){
     logger.debug("Updated collection entry on collection sequence as part of updating action with ID: "+updateActionParams.id);
@@ -386,6 +510,7 @@ module.exports.createAction = function(createActionParams){
   var deferredCreateAction = Q.defer();
   
   var validationParams = {    
+    allowCachedMembership: true,
     id: createActionParams.ruleId,
     project_id: createActionParams.project_id,
     workflowId: createActionParams.workflowId
@@ -400,27 +525,59 @@ module.exports.createAction = function(createActionParams){
   })
   .then(function(retrievedRuleCondition){
     logger.debug("Retrieved rule condition to include on action being created.");
-    ruleConditionId = retrievedRuleCondition.id;    
-    //create a Policy for use as part of the action
+    ruleConditionId = retrievedRuleCondition.id;
+    return createPolicyAndCollectionForAction(createActionParams.project_id, ruleConditionId, createActionParams);
+  })
+  .then(function(createdAction){
+    actionToReturn = createdAction;
     
-    var createPolicyParams = {
-      name: createActionParams.name,
-      description: "", //Only recording description on the Collection created. Saves recording more duplicate information where possible.
-      details: createActionParams.settings,
-      priority: 0, //action should only have one Policy on it so always passing 0 for priority.
-      typeId: createActionParams.typeId
-    };
-        
-    return policyModel.create(createActionParams.project_id, createPolicyParams);
+    //add this collection to the requested rule (col seq)
+    return colSeqModel.addEntry(createActionParams.project_id, collectionSequenceToAddTo.id, actionToReturn.id,
+      createActionParams.order);
   })
+  .then(function(){
+    logger.debug("Updated collection sequence with an entry for the new action. Action ID: "+actionToReturn.id);
+    actionToReturn.order = createActionParams.order;
+    
+    //get the internal_name of the policy type for inclusion on the returned Action.
+    return policyTypeModel.get(createActionParams.project_id, createActionParams.typeId);
+  })
+  .then(function(retrievedPolicyType){
+    logger.debug("Retrieved the internal name of the policy type to return on the action.");
+    actionToReturn = policyToProcessingHelper.buildActionFromPolicyType(retrievedPolicyType, actionToReturn);
+    deferredCreateAction.resolve(actionToReturn);
+  })
+  .fail(function(errorResponse){
+    deferredCreateAction.reject(errorResponse);
+  }).done();
+  
+  return deferredCreateAction.promise;
+};
+
+//creates the Policy and the Collection using it that represent an Action, with the condition on the Collection referring to the Rule level condition.
+//Returns a promise resolving with the Action built from the Policy and Collection, the Action is not yet added to the Rule. If the Collection
+//cannot be created the Policy is deleted again before the promise rejects.
+function createPolicyAndCollectionForAction(projectId, ruleConditionId, actionDetails){
+  var actionToReturn = {};
+  var createdPolicyId = null;
+  //create a Policy for use as part of the action
+  var createPolicyParams = {
+    name: actionDetails.name,
+    description: "", //Only recording description on the Collection created. Saves recording more duplicate information where possible.
+    details: actionDetails.settings,
+    priority: 0, //action should only have one Policy on it so always passing 0 for priority.
+    typeId: actionDetails.typeId
+  };
+  return policyModel.create(projectId, createPolicyParams)
   .then(function(createdPolicy){
     logger.debug("Created Policy for use with Action being created. Policy ID: "+createdPolicy.id);
+    createdPolicyId = createdPolicy.id;
     actionToReturn = policyToProcessingHelper.buildActionFromPolicy(createdPolicy, actionToReturn);
     
     //create a collection that uses this Policy    
     var createCollectionParams = {
-      description: createActionParams.description,
-      name: createActionParams.name,
+      description: actionDetails.description,
+      name: actionDetails.name,
       policyIds: [createdPolicy.id]
     };
     //add a condition to act as a Root that other conditions can be attached to. By default this will match all documents.
@@ -430,34 +587,200 @@ module.exports.createAction = function(createActionParams){
     var fragmentPointer = conditionModel.getNewFragmentCondition(ruleConditionId);    
     conditionModel.addChildToCondition(createCollectionParams.condition, fragmentPointer);
     
-    return collectionModel.create(createActionParams.project_id, createCollectionParams);
+    return collectionModel.create(projectId, createCollectionParams)
+    .fail(function(errorResponse){
+      //the Policy would not be used by anything, remove it before reporting the failure
+      return policyModel.delete(projectId, createdPolicyId)
+      .then(function(resultOfDelete){
+        httpHelper.handleDeleteResponseAndThrow(resultOfDelete);
+        logger.debug("Deleted Policy with ID: "+createdPolicyId+" after failing to create the Collection for an Action.");
+      })
+      .fail(function(deleteErrorResponse){
+        logger.error("Unable to delete Policy with ID: "+createdPolicyId+" after failing to create the Collection for an Action, it is not used by any Action: "+
+          jsonBodyHelper.stringify(deleteErrorResponse));
+      })
+      .then(function(){
+        throw errorResponse;
+      });
+    });
   })
   .then(function(createdCollection){
     logger.debug("Created collection to represent Action. ID: "+createdCollection.id);
-    actionToReturn = policyToProcessingHelper.buildActionFromCollection(createdCollection, actionToReturn);
-    
-    //add this collection to the requested rule (col seq)
-    return colSeqModel.updateCollectionSequenceWithEntryForCollection(createActionParams.project_id,
-      collectionSequenceToAddTo, createdCollection.id, createActionParams.order,
-      colSeqModel.defaults.updateBehaviour.add);    
+    return policyToProcessingHelper.buildActionFromCollection(createdCollection, actionToReturn);
+  });
+}
+
+//calls 'processItem' with each index from 0 to 'count' - 1, with at most 'parallelism' of the promises it returns unresolved at a time. Returns a
+//promise resolving once all of them have resolved, 'processItem' should handle failures of the individual items.
+function forEachIndexWithParallelism(count, parallelism, processItem){
+  var nextIndex = 0;
+  var processNext = function(){
+    if(nextIndex >= count){
+      return Q();
+    }
+    var itemIndex = nextIndex++;
+    return processItem(itemIndex).then(processNext);
+  };
+  var inProgress = [];
+  for(var started = 0; started < Math.min(parallelism, count); started++){
+    inProgress.push(processNext());
+  }
+  return Q.all(inProgress);
+}
+
+//returns the result for an Action of a batch that could not be created, holding the status and message of the error
+function getBatchActionErrorResult(error){
+  //failures from Policy API have already been converted to a status and response body
+  if(error!==null && typeof(error)==='object' && error.statusCode!==undefined && error.response!==undefined){
+    return {
+      status: error.statusCode,
+      error: error.response
+    };
+  }
+  var errorDetails = errorResponseHelper.create(error);
+  return {
+    status: errorDetails.statusCode,
+    error: errorDetails.response
+  };
+}
+
+//creates a batch of Actions on a Rule. The Workflow and Rule are validated and the Rule level condition retrieved once for the batch, the Policies
+//and Collections of the Actions are created with at most 'batchActionParallelism' Actions in progress, and the Actions created are then added to
+//the Rule with a single update. Returns a promise resolving with a result for each Action, in the order passed, holding the status and either the
+//created Action or the error that prevented it being created. If the Actions cannot be added to the Rule their Collections and Policies are
+//deleted again, any that cannot be deleted are given on the 'reason' of the error for the Action.
+module.exports.createActions = function(createActionsParams){
+  if(createActionsParams===null || createActionsParams===undefined){
+    throw new Error("Must pass an object of properties to use in creating actions.");
+  }
+  
+  var actionsToCreate = createActionsParams.actions;
+  var createdActions = [];
+  var actionErrors = [];
+  //IDs of actions that could not be added to the rule and whose Collection and Policy could not be deleted
+  var orphanedActionIds = [];
+  var collectionSequenceToAddTo = null;
+  var deferredCreateActions = Q.defer();
+  
+  var validationParams = {    
+    allowCachedMembership: true,
+    id: createActionsParams.ruleId,
+    project_id: createActionsParams.project_id,
+    workflowId: createActionsParams.workflowId
+  };
+  
+  validationModel.validateWorkflowAndSeqForRule(validationParams)
+  .then(function(validationResult){
+    logger.debug("Validated workflow and processing rule exist when creating batch of actions");
+    collectionSequenceToAddTo = validationResult.collectionSequence;
+    //retrieve the Rule level condition to add as a child condition on each Collection that is created.
+    return conditionModel.getSingleConditionByNotes(createActionsParams.project_id, conditionModel.getRuleNotesValue(createActionsParams.ruleId));
+  })
+  .then(function(retrievedRuleCondition){
+    logger.debug("Retrieved rule condition to include on batch of "+actionsToCreate.length+" actions being created.");
+    return forEachIndexWithParallelism(actionsToCreate.length, appConfig.batchActionParallelism, function(actionIndex){
+      return createPolicyAndCollectionForAction(createActionsParams.project_id, retrievedRuleCondition.id, actionsToCreate[actionIndex])
+      .then(function(createdAction){
+        createdActions[actionIndex] = createdAction;
+      }, function(errorResponse){
+        logger.debug("Failed to create action at position "+actionIndex+" of batch: "+jsonBodyHelper.stringify(errorResponse));
+        actionErrors[actionIndex] = errorResponse;
+      });
+    });
   })
   .then(function(){
-    logger.debug("Updated collection sequence with an entry for the new action. Action ID: "+actionToReturn.id);
-    actionToReturn.order = createActionParams.order;
-    
-    //get the internal_name of the policy type for inclusion on the returned Action.
-    return policyTypeModel.get(createActionParams.project_id, createActionParams.typeId);
+    //add the collections of all the actions created to the requested rule (col seq) with one update
+    var collectionEntries = [];
+    for(var actionIndex = 0; actionIndex < actionsToCreate.length; actionIndex++){
+      if(createdActions[actionIndex]!==undefined){
+        collectionEntries.push(colSeqModel.createCollectionEntry(createdActions[actionIndex].id, actionsToCreate[actionIndex].order));
+      }
+    }
+    if(collectionEntries.length===0){
+      return;
+    }
+    return colSeqModel.addEntries(createActionsParams.project_id, collectionSequenceToAddTo.id, collectionEntries)
+    .then(function(){
+      logger.debug("Updated collection sequence with entries for "+collectionEntries.length+" new actions.");
+    }, function(errorResponse){
+      //none of the actions were added to the rule, delete their Collections and Policies and report each of them as failed
+      logger.error("Unable to add "+collectionEntries.length+" new actions to rule with ID: "+createActionsParams.ruleId+
+        ", deleting the Collections and Policies created for them.");
+      var rollbackIndexes = [];
+      var rollbackPromises = [];
+      for(var actionIndex = 0; actionIndex < actionsToCreate.length; actionIndex++){
+        if(createdActions[actionIndex]===undefined){
+          continue;
+        }
+        rollbackIndexes.push(actionIndex);
+        rollbackPromises.push(continueDeleteActionAfterRemovalFromRule(createActionsParams.project_id, Q(createdActions[actionIndex].id)));
+      }
+      return Q.allSettled(rollbackPromises)
+      .then(function(rollbackStates){
+        rollbackStates.forEach(function(rollbackState, rollbackIndex){
+          var actionIndex = rollbackIndexes[rollbackIndex];
+          actionErrors[actionIndex] = errorResponse;
+          if(rollbackState.state!=='fulfilled'){
+            logger.error("Unable to delete the Collection and Policy of Action with ID: "+createdActions[actionIndex].id+
+              " that could not be added to the rule: "+jsonBodyHelper.stringify(rollbackState.reason));
+            orphanedActionIds[actionIndex] = createdActions[actionIndex].id;
+          }
+          createdActions[actionIndex] = undefined;
+        });
+      });
+    });
   })
-  .then(function(retrievedPolicyType){
-    logger.debug("Retrieved the internal name of the policy type to return on the action.");
-    actionToReturn = policyToProcessingHelper.buildActionFromPolicyType(retrievedPolicyType, actionToReturn);
-    deferredCreateAction.resolve(actionToReturn);
+  .then(function(){
+    //get the internal_name of each policy type used for inclusion on the returned Actions.
+    var typeIds = [];
+    for(var actionIndex = 0; actionIndex < actionsToCreate.length; actionIndex++){
+      if(createdActions[actionIndex]!==undefined && typeIds.indexOf(actionsToCreate[actionIndex].typeId)===-1){
+        typeIds.push(actionsToCreate[actionIndex].typeId);
+      }
+    }
+    return Q.allSettled(typeIds.map(function(typeId){
+      return policyTypeModel.get(createActionsParams.project_id, typeId);
+    }))
+    .then(function(typeRetrieveStates){
+      var results = [];
+      for(var actionIndex = 0; actionIndex < actionsToCreate.length; actionIndex++){
+        var createdAction = createdActions[actionIndex];
+        if(createdAction===undefined){
+          var errorResult = getBatchActionErrorResult(actionErrors[actionIndex]);
+          if(orphanedActionIds[actionIndex]!==undefined){
+            errorResult.error = Object.assign({}, errorResult.error, {
+              reason: "The Collection and Policy created for the Action (Collection ID: "+orphanedActionIds[actionIndex]+
+                ") could not be deleted and are not on the Rule."
+            });
+          }
+          results.push(errorResult);
+          continue;
+        }
+        createdAction.order = actionsToCreate[actionIndex].order;
+        var typeRetrieveState = typeRetrieveStates[typeIds.indexOf(actionsToCreate[actionIndex].typeId)];
+        //the action is on the rule by now so is reported as created even if the internal name of its type could not be retrieved
+        if(typeRetrieveState.state==='fulfilled'){
+          createdAction = policyToProcessingHelper.buildActionFromPolicyType(typeRetrieveState.value, createdAction);
+        }
+        else {
+          logger.warn("Unable to retrieve the internal name of Action Type with ID: "+actionsToCreate[actionIndex].typeId+
+            " for created Action with ID: "+createdAction.id+": "+jsonBodyHelper.stringify(typeRetrieveState.reason));
+        }
+        results.push({
+          status: 201,
+          action: createdAction
+        });
+      }
+      deferredCreateActions.resolve({
+        results: results
+      });
+    });
   })
   .fail(function(errorResponse){
-    deferredCreateAction.reject(errorResponse);
+    deferredCreateActions.reject(errorResponse);
   }).done();
   
-  return deferredCreateAction.promise;
+  return deferredCreateActions.promise;
 };
 
 //a version of deleteAction that removes all Actions under a passed 'full detail' Collection Sequence (one that was retrieved using 'include_children' from Policy API).
@@ -470,16 +793,15 @@ module.exports.deleteActionsUsingFullSeq = function(projectId, existingSeqDetail
   //4) Delete Collections
   
   //'include_children' version of sequence is structured differently, retrieve the sequence to use in update from property on 'additional'
-  var sequenceForUpdate = existingSeqDetails.additional.collection_sequences[0];
+  var existingSequence = existingSeqDetails.additional.collection_sequences[0];
 
   var collectionIds = [];
   var rootConditionIds = [];
   
-  //remove collection entries from sequence
-  sequenceForUpdate.additional.collection_sequence_entries = [];    
-  colSeqModel.update(projectId, sequenceForUpdate)
+  //remove collection entries from the sequence
+  colSeqModel.removeAllEntries(projectId, existingSequence.id)
   .then(function(){
-    logger.debug('Updated sequence with ID: '+sequenceForUpdate.id + ' removing Collection Entries');
+    logger.debug('Updated sequence with ID: '+existingSequence.id + ' removing Collection Entries');
     
     //remove Policies from each Collection    
     var updateCollectionPromises = [];
@@ -498,21 +820,21 @@ module.exports.deleteActionsUsingFullSeq = function(projectId, existingSeqDetail
   })
   .all()
   .then(function(){
-    logger.debug('Removed Policies from Collections that were on Sequence with ID: '+ sequenceForUpdate.id);
+    logger.debug('Removed Policies from Collections that were on Sequence with ID: '+ existingSequence.id);
     //delete the ROOT conditions that are on the Collections
     return conditionModel.deleteAll(projectId, rootConditionIds);
   })
   .then(function(resultOfDelete){
     //if Policy API can't delete it returns 200 status and a body conveying error.
     httpHelper.handleDeleteResponseAndThrow(resultOfDelete);
-    logger.debug('Deleted all conditions that were on the Collections on Sequence with ID: '+sequenceForUpdate.id);
+    logger.debug('Deleted all conditions that were on the Collections on Sequence with ID: '+existingSequence.id);
     //with the Policies off the Collections, delete all the Collections
     return collectionModel.deleteAll(projectId, collectionIds);
   })
   .then(function(resultOfDelete){
     //if Policy API can't delete it returns 200 status and a body conveying error.
     httpHelper.handleDeleteResponseAndThrow(resultOfDelete);
-    logger.debug('Deleted all Collections that were on Sequence with ID: '+sequenceForUpdate.id);
+    logger.debug('Deleted all Collections that were on Sequence with ID: '+existingSequence.id);
     
     var policyIds = [];
     //delete all the Policies
@@ -542,6 +864,7 @@ module.exports.deleteAction = function(deleteActionParams){
   var deferredDeleteAction = Q.defer();
   
   var validationParams = {    
+    allowCachedMembership: true,
     id: deleteActionParams.ruleId,
     project_id: deleteActionParams.project_id,
     workflowId: deleteActionParams.workflowId
@@ -550,18 +873,8 @@ module.exports.deleteAction = function(deleteActionParams){
   var removeFromSequencePromise = validationModel.validateWorkflowAndSeqForRule(validationParams)
   .then(function(validationResult){
     logger.debug("Validated workflow and processing rule exist when deleting action");
-    var retrievedSeq = validationResult.collectionSequence;
     //remove the Collection Entry from the Collection Sequence
-    colSeqModel.removeCollectionEntry(retrievedSeq.additional.collection_sequence_entries, deleteActionParams.id);
-    
-    //save this updated collection sequence
-    var updateCollectionSequenceParams = {
-      additional: retrievedSeq.additional,
-      id: retrievedSeq.id,
-      name: retrievedSeq.name,
-      description: retrievedSeq.description
-    };    
-    return colSeqModel.update(deleteActionParams.project_id, updateCollectionSequenceParams);
+    return colSeqModel.removeEntry(deleteActionParams.project_id, deleteActionParams.ruleId, deleteActionParams.id);
   })
   .then(function(){
     logger.debug('Removed Collection Entry with Collection ID: '+deleteActionParams.id+' from Collection Sequence with ID: '+deleteActionParams.ruleId);
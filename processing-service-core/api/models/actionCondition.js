@@ -42,6 +42,7 @@ function deleteActionCondition(deleteParams){
   var deferredDelete = Q.defer();
   var validationParams = {    
     actionId: deleteParams.actionId,
+    allowCachedMembership: true,
     conditionId: deleteParams.conditionId,
     ruleId: deleteParams.ruleId,
     project_id: deleteParams.project_id,
@@ -72,6 +73,7 @@ function get(getParams){
   var deferredGetActionCondition = Q.defer();
   var validationParams = {    
     actionId: getParams.actionId,
+    allowCachedMembership: true,
     conditionId: getParams.conditionId,
     ruleId: getParams.ruleId,
     project_id: getParams.project_id,
@@ -98,6 +100,7 @@ function getConditions(getParams){
   var pagingParams = pagingHelper.getValidatedPagingParams(getParams.pageNum, getParams.pageSize);
   //verify the workflow, rule and action exist.
   var validationParams = {    
+    allowCachedMembership: true,
     id: getParams.ruleId,
     project_id: getParams.project_id,
     workflowId: getParams.workflowId
@@ -153,6 +156,7 @@ function create(createParams){
   //check that the passed in Workflow, Rule and Action exist.    
   var validationParams = {
     actionId: createParams.actionId,
+    allowCachedMembership: true,
     project_id: createParams.project_id,
     ruleId: createParams.ruleId,
     workflowId: createParams.workflowId
@@ -191,6 +195,7 @@ function update(updateParams){
   //check that the passed in Workflow, Rule and Action exist, and the Action has the specified condition. 
   var validationParams = {    
     actionId: updateParams.actionId,
+    allowCachedMembership: true,
     conditionId: updateParams.conditionId,
     ruleId: updateParams.ruleId,
     project_id: updateParams.project_id,
@@ -18,6 +18,7 @@
 const Sequelize = require('sequelize');
 const Q = require('q');
 var logger = require('../../helpers/loggingHelper.js');
+var metrics = require('../../libs/metrics.js');
 const databaseConfig = require('../../helpers/processingDatabaseConfigHelper.js');
 
 function healthCheck() {
@@ -40,12 +41,38 @@ const databaseDefinition = new Sequelize(databaseConfig.name, databaseConfig.use
         host: databaseConfig.host,
         logging: logger.debug,
         operatorsAliases: false,
+        pool: {
+            max: databaseConfig.maxConnections
+        },
         port: databaseConfig.port
     }
 );
 
 //healthCheck();
 
+//reports the connections in the Sequelize pool by state. The pool is created by Sequelize so may not be present for all configurations.
+metrics.createCollectedMetric('processing_database_pool_connections', 'Connections in the database connection pool, by state.', 'gauge', ['state'],
+    function(){
+        var pool = databaseDefinition.connectionManager.pool;
+        if(pool===null || pool===undefined){
+            return [];
+        }
+        return [
+            {labels: {state: 'borrowed'}, value: pool.borrowed},
+            {labels: {state: 'available'}, value: pool.available}
+        ];
+    });
+metrics.createCollectedMetric('processing_database_pool_max_connections', 'Maximum number of connections in the database connection pool.',
+    'gauge', [], function(){
+        var pool = databaseDefinition.connectionManager.pool;
+        return pool===null || pool===undefined ? [] : [{value: pool.max}];
+    });
+metrics.createCollectedMetric('processing_database_pool_pending_requests', 'Requests waiting for a connection from the database connection pool.',
+    'gauge', [], function(){
+        var pool = databaseDefinition.connectionManager.pool;
+        return pool===null || pool===undefined ? [] : [{value: pool.pending}];
+    });
+
 module.exports = {
     definition: databaseDefinition,
     healthCheck: healthCheck
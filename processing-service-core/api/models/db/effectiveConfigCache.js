@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+// caches resolved effective configs, keyed on tenant ID and repository ID (no repository ID for the effective tenant configs).
+// Every entry key includes version stamps for the global configs, the tenant and the repository. A write to a config increments the
+// relevant version so entries resolved before the write are no longer returned (they are left to expire or be evicted):
+//  - global config writes increment the global generation, invalidating every tenant and repository,
+//  - tenant config writes increment the tenant version, invalidating the tenant and all of its repositories,
+//  - repository config writes increment the repository version.
+// A retrieve started before a write caches its result under the versions read when it started so a stale result is never returned.
+// The version of a tenant or repository is only kept while a cached entry or a retrieve in progress uses it, so that the versions held are
+// limited to those of the tenants and repositories in the cache.
+// Cached configs are frozen and handed out without being copied.
+// When running as a cluster, invalidations are also applied by the other workers.
+const Q = require('q');
+const NodeCache = require('node-cache');
+const appConfig = require('../../helpers/dataProcessingServiceConfigHelper.js');
+const cacheManager = require('../../libs/cacheManager.js');
+const logger = require('../../helpers/loggingHelper.js');
+const workerCluster = require('../../libs/workerCluster.js');
+
+module.exports = {
+    getEffectiveConfig: getEffectiveConfig,
+    invalidateGlobalAfter: invalidateGlobalAfter,
+    invalidateRepositoryAfter: invalidateRepositoryAfter,
+    invalidateTenantAfter: invalidateTenantAfter,
+    retrieveEffectiveConfigs: retrieveEffectiveConfigs
+};
+
+const effectiveConfigCache = new NodeCache({
+    stdTTL: appConfig.cacheDuration,
+    useClones: false
+});
+const managedCache = cacheManager.register('effectiveConfig', function (cacheKey) {
+    effectiveConfigCache.del(cacheKey);
+});
+const onEntryRemoved = function (cacheKey, entry) {
+    managedCache.removed(cacheKey);
+    if (entry !== undefined) {
+        releaseVersions(entry.versionHold);
+    }
+};
+effectiveConfigCache.on('del', onEntryRemoved);
+effectiveConfigCache.on('expired', onEntryRemoved);
+
+var globalGeneration = 0;
+// versions keyed on tenant ID and on tenant ID and repository ID, each with the number of cached entries and retrieves in progress
+// referencing it. Once a version is not referenced nothing is cached under it or an earlier version, so it is removed and a later
+// retrieve starts again from version 0.
+const tenantVersions = new Map();
+const repositoryVersions = new Map();
+
+function buildRepositoryVersionKey(tenantId, repositoryId) {
+    return JSON.stringify([tenantId, repositoryId]);
+}
+
+function getVersion(versions, versionKey) {
+    const versionState = versions.get(versionKey);
+    return versionState === undefined ? 0 : versionState.version;
+}
+
+// an unreferenced version is not recorded, there being no entry or retrieve for the increment to invalidate
+function incrementVersion(versions, versionKey) {
+    const versionState = versions.get(versionKey);
+    if (versionState !== undefined) {
+        versionState.version++;
+    }
+}
+
+function addVersionReference(versions, versionKey) {
+    var versionState = versions.get(versionKey);
+    if (versionState === undefined) {
+        versionState = { references: 0, version: 0 };
+        versions.set(versionKey, versionState);
+    }
+    versionState.references++;
+}
+
+function removeVersionReference(versions, versionKey) {
+    const versionState = versions.get(versionKey);
+    versionState.references--;
+    if (versionState.references === 0) {
+        versions.delete(versionKey);
+    }
+}
+
+// references the current versions of the tenant and repository for a retrieve, returning the hold to release once the retrieve fails or
+// the entry it cached is removed. Repository ID is undefined for effective tenant configs.
+function holdVersions(tenantId, repositoryId) {
+    const versionHold = {
+        released: false,
+        repositoryVersionKey: repositoryId === undefined ? undefined : buildRepositoryVersionKey(tenantId, repositoryId),
+        tenantId: tenantId
+    };
+    addVersionReference(tenantVersions, tenantId);
+    if (versionHold.repositoryVersionKey !== undefined) {
+        addVersionReference(repositoryVersions, versionHold.repositoryVersionKey);
+    }
+    return versionHold;
+}
+
+// releases the versions held, ignoring a hold already released as an expired entry is reported both as deleted and as expired
+function releaseVersions(versionHold) {
+    if (versionHold.released) {
+        return;
+    }
+    versionHold.released = true;
+    removeVersionReference(tenantVersions, versionHold.tenantId);
+    if (versionHold.repositoryVersionKey !== undefined) {
+        removeVersionReference(repositoryVersions, versionHold.repositoryVersionKey);
+    }
+}
+
+// builds the key for the current versions of the tenant and repository. Repository ID is undefined for effective tenant configs.
+function buildCacheKey(tenantId, repositoryId) {
+    const repositoryVersion = repositoryId === undefined ? 0 :
+        getVersion(repositoryVersions, buildRepositoryVersionKey(tenantId, repositoryId));
+    return JSON.stringify([globalGeneration, getVersion(tenantVersions, tenantId), repositoryVersion, tenantId,
+        repositoryId === undefined ? null : repositoryId]);
+}
+
+function getEntry(cacheKey) {
+    const entry = effectiveConfigCache.get(cacheKey);
+    managedCache.read(cacheKey, entry !== undefined);
+    return entry;
+}
+
+/**
+ * Returns the cached effective configs for the tenant and repository if present, otherwise calls the retrieve function passed, which
+ * should return a promise resolving with the array of effective configs, and caches the result.
+ * @param tenantId {String} the tenant ID.
+ * @param repositoryId {String} the repository ID, undefined for the effective tenant configs.
+ * @param retrieveFunction {Function} function that resolves the effective configs from the database.
+ * @returns {*|d.promise|Function|promise|a|h} a promise resolved with the effective configs or rejected with the error of the retrieve.
+ */
+function retrieveEffectiveConfigs(tenantId, repositoryId, retrieveFunction) {
+    const cacheKey = buildCacheKey(tenantId, repositoryId);
+    const entry = getEntry(cacheKey);
+    if (entry !== undefined) {
+        return Q(entry.configs);
+    }
+    const versionHold = holdVersions(tenantId, repositoryId);
+    return retrieveFunction()
+        .then(function (configs) {
+            const configsByKey = new Map();
+            for (var configIndex = 0; configIndex < configs.length; configIndex++) {
+                Object.freeze(configs[configIndex]);
+                configsByKey.set(configs[configIndex].key, configs[configIndex]);
+            }
+            Object.freeze(configs);
+            // an entry cached by a retrieve of the same versions that completed first is replaced without being reported as deleted
+            const replacedEntry = effectiveConfigCache.get(cacheKey);
+            if (replacedEntry !== undefined) {
+                releaseVersions(replacedEntry.versionHold);
+            }
+            effectiveConfigCache.set(cacheKey, { configs: configs, configsByKey: configsByKey, versionHold: versionHold });
+            if (!managedCache.added(cacheKey, configs)) {
+                logger.debug("Effective configs for tenant " + tenantId + " and repository " + repositoryId
+                    + " are larger than the cache budget and were not cached.");
+            }
+            return configs;
+        }, function (errorResponse) {
+            releaseVersions(versionHold);
+            throw errorResponse;
+        });
+}
+
+/**
+ * Returns the cached effective config for a single key, as an object with the value and value type, or undefined if the effective configs
+ * for the tenant and repository are not cached or do not contain the key.
+ * @param tenantId {String} the tenant ID.
+ * @param repositoryId {String} the repository ID, undefined for the effective tenant config.
+ * @param key {String} the config key.
+ */
+function getEffectiveConfig(tenantId, repositoryId, key) {
+    const entry = getEntry(buildCacheKey(tenantId, repositoryId));
+    if (entry === undefined) {
+        return undefined;
+    }
+    const config = entry.configsByKey.get(key);
+    return config === undefined ? undefined : { value: config.value, valueType: config.valueType };
+}
+
+// increments the versions for the invalidation passed, an object with the tenant ID and repository ID written to (neither for global configs)
+function applyInvalidation(invalidation) {
+    if (invalidation.tenantId === undefined) {
+        globalGeneration++;
+    }
+    else if (invalidation.repositoryId === undefined) {
+        incrementVersion(tenantVersions, invalidation.tenantId);
+    }
+    else {
+        incrementVersion(repositoryVersions, buildRepositoryVersionKey(invalidation.tenantId, invalidation.repositoryId));
+    }
+}
+
+workerCluster.onBroadcast('effectiveConfigCache', applyInvalidation);
+
+// invalidates once the write promise passed completes, whether it succeeds or fails (a failed write may still have been applied).
+// Returns a promise resolved or rejected with the outcome of the write.
+function invalidateAfter(writePromise, invalidation) {
+    const invalidate = function () {
+        applyInvalidation(invalidation);
+        workerCluster.broadcast('effectiveConfigCache', invalidation);
+    };
+    return writePromise.then(function (result) {
+        invalidate();
+        return result;
+    }, function (errorResponse) {
+        invalidate();
+        throw errorResponse;
+    });
+}
+
+/**
+ * Invalidates the effective configs of every tenant and repository once the write promise passed completes.
+ * @param writePromise {*|d.promise|Function|promise|a|h} promise for a write to global configs.
+ * @returns {*|d.promise|Function|promise|a|h} a promise resolved or rejected with the outcome of the write.
+ */
+function invalidateGlobalAfter(writePromise) {
+    return invalidateAfter(writePromise, {});
+}
+
+/**
+ * Invalidates the effective configs of the tenant and all of its repositories once the write promise passed completes.
+ * @param writePromise {*|d.promise|Function|promise|a|h} promise for a write to the tenant's configs.
+ * @param tenantId {String} the tenant ID.
+ * @returns {*|d.promise|Function|promise|a|h} a promise resolved or rejected with the outcome of the write.
+ */
+function invalidateTenantAfter(writePromise, tenantId) {
+    return invalidateAfter(writePromise, { tenantId: tenantId });
+}
+
+/**
+ * Invalidates the effective configs of the repository once the write promise passed completes.
+ * @param writePromise {*|d.promise|Function|promise|a|h} promise for a write to the repository's configs.
+ * @param tenantId {String} the tenant ID.
+ * @param repositoryId {String} the repository ID.
+ * @returns {*|d.promise|Function|promise|a|h} a promise resolved or rejected with the outcome of the write.
+ */
+function invalidateRepositoryAfter(writePromise, tenantId, repositoryId) {
+    return invalidateAfter(writePromise, { tenantId: tenantId, repositoryId: repositoryId });
+}
@@ -21,6 +21,7 @@ const databaseDefinition = require('./databaseConnection.js').definition;
 const globalConfigTableDetails = require('./tables/globalConfig.js');
 const repositoryConfigTableDetails = require('./tables/repositoryConfig.js');
 const logger = require('../../helpers/loggingHelper.js');
+const effectiveConfigCache = require('./effectiveConfigCache.js');
 
 module.exports = {
     deleteGlobalConfig: deleteGlobalConfig,
@@ -72,7 +73,7 @@ function deleteGlobalConfig(key) {
             deferredDelete.reject(apiErrorFactory.createDatabaseUnknownError("Failure during delete of global config with" +
                 " key '" +key+ "'."));
         });
-    return deferredDelete.promise;
+    return effectiveConfigCache.invalidateGlobalAfter(deferredDelete.promise);
 }
 
 /**
@@ -127,16 +128,26 @@ function getGlobalConfig(key) {
 }
 
 /**
- * Retrieves existing global configs. The first 100 global configs will be returned.
+ * Retrieves existing global configs, ordered by key. All global configs are returned unless a limit is passed. Pages are read by key
+ * from the primary key index, so each page costs the same however far into the configs it starts.
+ * @param afterKey {String} optional. Only global configs with a key after this key will be returned.
+ * @param limit {Number} optional. The maximum number of global configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
  * Resolved promise will return an array of global configs that match the schema defined in ./tables/globalConfig.js.
  * Rejected promise will pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
  */
-function getGlobalConfigs() {
+function getGlobalConfigs(afterKey, limit) {
     var deferredGetAll = Q.defer();
 
-    // defaulting number returned to the first 100. We may expand this in future to support passed in offsets and limits.
-    globalConfigTable.findAll({ limit: 100 })
+    var whereCondition = {};
+    if(afterKey!==undefined) {
+        whereCondition.key = { [Sequelize.Op.gt]: afterKey };
+    }
+    globalConfigTable.findAll({
+            limit: limit,
+            order: [[tableDefinition.key.field, 'ASC']],
+            where: whereCondition
+        })
         .then(function(retrievedGlobalConfigs){
             // the objects returned have additional properties specific to the database model, only return properties that caller
             // is interested in
@@ -206,7 +217,7 @@ function setGlobalConfig(key, defaultValue, description) {
             deferredSet.reject(apiErrorFactory.createDatabaseUnknownError('Failure during creation of global config.'));
         })
         .done();
-    return deferredSet.promise;
+    return effectiveConfigCache.invalidateGlobalAfter(deferredSet.promise);
 }
 
 /**
@@ -328,6 +339,6 @@ function setGlobalConfigWithScope(key, defaultValue, description, scope) {
         );
     }
 
-    return deferredSet.promise;
+    return effectiveConfigCache.invalidateGlobalAfter(deferredSet.promise);
 }
 
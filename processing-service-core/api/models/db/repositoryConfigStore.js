@@ -19,14 +19,22 @@ const Q = require('q');
 const apiErrorFactory = require('../errors/apiErrorFactory.js');
 const databaseDefinition = require('./databaseConnection.js').definition;
 const logger = require('../../helpers/loggingHelper.js');
+const configSetOutcomeHelper = require('../../helpers/configSetOutcomeHelper.js');
+const effectiveConfigCache = require('./effectiveConfigCache.js');
 const repositoryConfigTableDetails = require('./tables/repositoryConfig.js');
 const globalConfigTableDetails = require('./tables/globalConfig.js');
+const tenantConfigTableDetails = require('./tables/tenantConfig.js');
 
 module.exports = {
     deleteRepositoryConfig: deleteRepositoryConfig,
+    deleteRepositoryConfigs: deleteRepositoryConfigs,
+    getEffectiveRepositoryConfigs: getEffectiveRepositoryConfigs,
+    getEffectiveRepositoryConfigsForRepositories: getEffectiveRepositoryConfigsForRepositories,
     getRepositoryConfig: getRepositoryConfig,
     getRepositoryConfigs: getRepositoryConfigs,
-    setRepositoryConfig: setRepositoryConfig
+    getRepositoryIdsPage: getRepositoryIdsPage,
+    setRepositoryConfig: setRepositoryConfig,
+    setRepositoryConfigs: setRepositoryConfigs
 }
 
 const tableDefinition = repositoryConfigTableDetails.definition;
@@ -70,7 +78,187 @@ function deleteRepositoryConfig(tenantId, repositoryId, key) {
                 " repositoryId '" + repositoryId + "', key '" + key + "', and tenantId '" + tenantId + "'."));
         });
 
-    return deferredDelete.promise;
+    return effectiveConfigCache.invalidateRepositoryAfter(deferredDelete.promise, tenantId, repositoryId);
+}
+
+/**
+ * Deletes all repository configs of the specified tenant and repository with a single statement.
+ * @param tenantId {String} the tenant ID identifying the configs that should be deleted.
+ * @param repositoryId {String} the repository ID identifying the configs that should be deleted.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of delete.
+ *  Resolved promise will return the number of repository configs deleted.
+ *  Rejected promise will pass an ApiError with type DATABASE_UNKNOWN_ERROR.
+ */
+function deleteRepositoryConfigs(tenantId, repositoryId) {
+    var deferredDelete = Q.defer();
+
+    repositoryConfigTable.destroy({ where: { repositoryId: repositoryId, tenantId: tenantId } })
+        .then(function (deleteResult) {
+            logger.debug("Deleted " + deleteResult + " repository configs for repositoryId '" + repositoryId + "' and tenantId '"
+                + tenantId + "'.");
+            deferredDelete.resolve(deleteResult);
+        })
+        .catch(function (errorResponse) {
+            logger.error("Failure occurred during delete of repository configs with repositoryId '" + repositoryId + "' and tenantId '"
+                + tenantId + "': " + errorResponse.toString());
+            deferredDelete.reject(apiErrorFactory.createDatabaseUnknownError("Failure during delete of repository configs with" +
+                " repositoryId '" + repositoryId + "' and tenantId '" + tenantId + "'."));
+        });
+
+    return effectiveConfigCache.invalidateRepositoryAfter(deferredDelete.promise, tenantId, repositoryId);
+}
+
+// resolves the effective value of every config key for a repository in a single statement. Each global config key takes the repository
+// value if set, otherwise the tenant value if set, otherwise the global default. Repository configs are also returned for any key that
+// is not (or is no longer) a global config key.
+const effectiveRepositoryConfigsQuery =
+    'SELECT COALESCE(repository_config.key, global_config.key) AS "key", ' +
+    'COALESCE(repository_config.value, tenant_config.value, global_config."' + globalConfigTableDetails.definition.default.field + '") AS "value", ' +
+    'CASE WHEN repository_config.value IS NULL AND tenant_config.value IS NULL THEN \'DEFAULT\' ELSE \'CUSTOM\' END AS "valueType" ' +
+    'FROM ' + globalConfigTableDetails.tableName + ' global_config ' +
+    'FULL OUTER JOIN (SELECT key, value FROM ' + repositoryConfigTableDetails.tableName + ' ' +
+        'WHERE ' + tableDefinition.tenantId.field + ' = :tenantId AND ' + tableDefinition.repositoryId.field + ' = :repositoryId) ' +
+        'repository_config ON repository_config.key = global_config.key ' +
+    'LEFT JOIN ' + tenantConfigTableDetails.tableName + ' tenant_config ON tenant_config.' +
+        tenantConfigTableDetails.definition.tenantId.field + ' = :tenantId AND tenant_config.key = global_config.key ' +
+    'ORDER BY 1';
+
+/**
+ * Retrieves the effective configs for the specified tenant and repository, resolving repository, then tenant, then global default values
+ * for each key in a single query.
+ * @param tenantId {String} the tenant ID to return effective configs for.
+ * @param repositoryId {String} the repository ID to return effective configs for.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
+ *  Resolved promise will return an array containing the key, value and value type of each effective config, ordered by key. The value
+ *  type is CUSTOM where a repository or tenant value was set and DEFAULT where the global default applies.
+ *  e.g. [ { 'key': 'entity', 'value': 'ip_address', 'valueType': 'CUSTOM' } ]
+ *  Rejected promise can pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
+ */
+function getEffectiveRepositoryConfigs(tenantId, repositoryId) {
+    var deferredGetAll = Q.defer();
+
+    databaseDefinition.query(effectiveRepositoryConfigsQuery, {
+        replacements: { repositoryId: repositoryId, tenantId: tenantId },
+        type: Sequelize.QueryTypes.SELECT
+    })
+        .then(function (effectiveConfigs) {
+            deferredGetAll.resolve(effectiveConfigs);
+        })
+        .catch(function (errorResponse) {
+            logger.error("Failure occurred trying to get effective repository configs with repositoryId '" + repositoryId
+                + "' and tenantId '" + tenantId + "': " + errorResponse.toString());
+            deferredGetAll.reject(apiErrorFactory.createDatabaseUnknownError(
+                "Failure occurred trying to get effective repository configs with repositoryId '" + repositoryId + "' and tenantId '"
+                + tenantId + "'."));
+        })
+        .done();
+
+    return deferredGetAll.promise;
+}
+
+// resolves the effective configs of several repositories of a tenant in a single statement, with the same precedence as the query for a
+// single repository above. The FULL OUTER JOIN of that query is split into the global config keys for each repository and the repository
+// config keys that are not global config keys, as a full join cannot refer to each repository.
+const effectiveConfigsForRepositoriesQuery =
+    'SELECT repositories.repository_id AS "repositoryId", global_config.key AS "key", ' +
+    'COALESCE(repository_config.value, tenant_config.value, global_config."' + globalConfigTableDetails.definition.default.field + '") AS "value", ' +
+    'CASE WHEN repository_config.value IS NULL AND tenant_config.value IS NULL THEN \'DEFAULT\' ELSE \'CUSTOM\' END AS "valueType" ' +
+    'FROM unnest(ARRAY[:repositoryIds]::varchar[]) AS repositories(repository_id) ' +
+    'CROSS JOIN ' + globalConfigTableDetails.tableName + ' global_config ' +
+    'LEFT JOIN ' + repositoryConfigTableDetails.tableName + ' repository_config ON repository_config.' + tableDefinition.tenantId.field +
+        ' = :tenantId AND repository_config.' + tableDefinition.repositoryId.field + ' = repositories.repository_id ' +
+        'AND repository_config.key = global_config.key ' +
+    'LEFT JOIN ' + tenantConfigTableDetails.tableName + ' tenant_config ON tenant_config.' +
+        tenantConfigTableDetails.definition.tenantId.field + ' = :tenantId AND tenant_config.key = global_config.key ' +
+    'UNION ALL ' +
+    'SELECT repository_config.' + tableDefinition.repositoryId.field + ', repository_config.key, repository_config.value, \'CUSTOM\' ' +
+    'FROM ' + repositoryConfigTableDetails.tableName + ' repository_config ' +
+    'WHERE repository_config.' + tableDefinition.tenantId.field + ' = :tenantId AND repository_config.' +
+        tableDefinition.repositoryId.field + ' IN (:repositoryIds) ' +
+        'AND NOT EXISTS (SELECT 1 FROM ' + globalConfigTableDetails.tableName + ' global_config WHERE global_config.key = repository_config.key) ' +
+    'ORDER BY 1, 2';
+
+/**
+ * Retrieves the effective configs for several repositories of a tenant in a single query.
+ * @param tenantId {String} the tenant ID the repositories belong to.
+ * @param repositoryIds {Array} the IDs of the repositories to return effective configs for, must not be empty.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
+ *  Resolved promise will return a Map from each repository ID passed to its effective configs, as returned by getEffectiveRepositoryConfigs.
+ *  Rejected promise can pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
+ */
+function getEffectiveRepositoryConfigsForRepositories(tenantId, repositoryIds) {
+    var deferredGetAll = Q.defer();
+
+    databaseDefinition.query(effectiveConfigsForRepositoriesQuery, {
+        replacements: { repositoryIds: repositoryIds, tenantId: tenantId },
+        type: Sequelize.QueryTypes.SELECT
+    })
+        .then(function (effectiveConfigRows) {
+            const effectiveConfigsByRepository = new Map();
+            for (var repositoryIndex = 0; repositoryIndex < repositoryIds.length; repositoryIndex++) {
+                effectiveConfigsByRepository.set(repositoryIds[repositoryIndex], []);
+            }
+            for (var rowIndex = 0; rowIndex < effectiveConfigRows.length; rowIndex++) {
+                const effectiveConfigRow = effectiveConfigRows[rowIndex];
+                effectiveConfigsByRepository.get(effectiveConfigRow.repositoryId).push({
+                    key: effectiveConfigRow.key,
+                    value: effectiveConfigRow.value,
+                    valueType: effectiveConfigRow.valueType
+                });
+            }
+            deferredGetAll.resolve(effectiveConfigsByRepository);
+        })
+        .catch(function (errorResponse) {
+            logger.error("Failure occurred trying to get effective repository configs for " + repositoryIds.length
+                + " repositories of tenantId '" + tenantId + "': " + errorResponse.toString());
+            deferredGetAll.reject(apiErrorFactory.createDatabaseUnknownError(
+                "Failure occurred trying to get effective repository configs for repositories of tenantId '" + tenantId + "'."));
+        })
+        .done();
+
+    return deferredGetAll.promise;
+}
+
+// pages of the distinct IDs of the repositories of a tenant, in order, read from the primary key index of the table
+const repositoryIdsPageQuery = function (afterCondition) {
+    return 'SELECT DISTINCT ' + tableDefinition.repositoryId.field + ' AS "repositoryId" ' +
+        'FROM ' + repositoryConfigTableDetails.tableName + ' ' +
+        'WHERE ' + tableDefinition.tenantId.field + ' = :tenantId ' + afterCondition +
+        'ORDER BY 1 LIMIT :limit';
+};
+const firstRepositoryIdsPageQuery = repositoryIdsPageQuery('');
+const nextRepositoryIdsPageQuery = repositoryIdsPageQuery('AND ' + tableDefinition.repositoryId.field + ' > :afterRepositoryId ');
+
+/**
+ * Retrieves the IDs of repositories of a tenant that have repository configs, in order, starting after the repository ID passed. Pages
+ * are read using the primary key of the table (keyset pagination) so each page costs the same however far through the repositories it is.
+ * @param tenantId {String} the tenant ID to return repository IDs for.
+ * @param afterRepositoryId {String} the last repository ID of the previous page, null for the first page.
+ * @param limit {Number} the maximum number of repository IDs to return.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
+ *  Resolved promise will return an array of repository IDs, fewer than the limit if there are no more.
+ *  Rejected promise can pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
+ */
+function getRepositoryIdsPage(tenantId, afterRepositoryId, limit) {
+    var deferredGetPage = Q.defer();
+
+    databaseDefinition.query(afterRepositoryId === null ? firstRepositoryIdsPageQuery : nextRepositoryIdsPageQuery, {
+        replacements: { afterRepositoryId: afterRepositoryId, limit: limit, tenantId: tenantId },
+        type: Sequelize.QueryTypes.SELECT
+    })
+        .then(function (repositoryRows) {
+            deferredGetPage.resolve(repositoryRows.map(function (repositoryRow) {
+                return repositoryRow.repositoryId;
+            }));
+        })
+        .catch(function (errorResponse) {
+            logger.error("Failure occurred trying to get repository IDs of tenantId '" + tenantId + "': " + errorResponse.toString());
+            deferredGetPage.reject(apiErrorFactory.createDatabaseUnknownError(
+                "Failure occurred trying to get repository IDs of tenantId '" + tenantId + "'."));
+        })
+        .done();
+
+    return deferredGetPage.promise;
 }
 
 /**
@@ -114,23 +302,31 @@ function getRepositoryConfig(tenantId, repositoryId, key) {
 }
 
 /**
- * Retrieves existing repository configs for the specified tenant and repository. The first 100 repository configs will be returned.
+ * Retrieves existing repository configs for the specified tenant and repository, ordered by key. All repository configs are returned
+ * unless a limit is passed. Pages are read by key from the primary key index, so each page costs the same however far into the configs
+ * it starts.
  * @param repositoryId {String} the repository ID to return repository configs for.
  * @param tenanatId {String} the tenant ID identifying the config that should be deleted.
+ * @param afterKey {String} optional. Only repository configs with a key after this key will be returned.
+ * @param limit {Number} optional. The maximum number of repository configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
  *  Resolved promise will return an array of containing the keys and values for the repository configs matched by the tenant ID 
  *  and repository ID.
  *  e.g. [ { 'key': entity', 'value': 'ip_address' } ]
  *  Rejected promise can pass an ApiError with type set to either DATABASE_UNKNOWN_ERROR.
  */
-function getRepositoryConfigs(tenantId, repositoryId) {
+function getRepositoryConfigs(tenantId, repositoryId, afterKey, limit) {
     var deferredGetAll = Q.defer();
 
-    // defaulting number returned to the first 100. We may expand this in future to support passed in offsets and limits.
+    var whereCondition = { repositoryId: repositoryId, tenantId: tenantId };
+    if(afterKey!==undefined) {
+        whereCondition.key = { [Sequelize.Op.gt]: afterKey };
+    }
     repositoryConfigTable.findAll({
         attributes: [tableDefinition.key.field, tableDefinition.value.field],
-        limit: 100,
-        where: { repositoryId: repositoryId, tenantId: tenantId }
+        limit: limit,
+        order: [[tableDefinition.key.field, 'ASC']],
+        where: whereCondition
     })
         .then(function (retrievedRepositoryConfigs) {
             // the objects returned have additional properties specific to the database model, only return properties that caller
@@ -213,5 +409,68 @@ function setRepositoryConfig(tenantId, repositoryId, key, value) {
         deferredSet.reject(apiErrorFactory.createDatabaseUnknownError('Failure during creation of repository config.'));
     })
         .done();
-    return deferredSet.promise;
+    return effectiveConfigCache.invalidateRepositoryAfter(deferredSet.promise, tenantId, repositoryId);
+}
+
+// creates or updates the repository configs passed whose keys have a repository scoped global config, reporting each row written and
+// whether it was created. Keys without a repository scoped global config are not written.
+const setRepositoryConfigsQuery =
+    'INSERT INTO ' + repositoryConfigTableDetails.tableName + ' (' + tableDefinition.tenantId.field + ', ' +
+        tableDefinition.repositoryId.field + ', ' + tableDefinition.key.field + ', ' + tableDefinition.value.field + ') ' +
+    'SELECT :tenantId, :repositoryId, input_config.key, input_config.value ' +
+    'FROM unnest(ARRAY[:keys]::varchar[], ARRAY[:values]::text[]) AS input_config (key, value) ' +
+    'WHERE EXISTS (SELECT 1 FROM ' + globalConfigTableDetails.tableName + ' global_config WHERE global_config.key = input_config.key ' +
+        'AND global_config.' + tableDefinition2.scope.field + ' = :validScope) ' +
+    'ON CONFLICT (' + tableDefinition.tenantId.field + ', ' + tableDefinition.repositoryId.field + ', ' + tableDefinition.key.field +
+        ') DO UPDATE SET ' + tableDefinition.value.field + ' = EXCLUDED.' + tableDefinition.value.field + ' ' +
+    'RETURNING ' + tableDefinition.key.field + ' AS key, (xmax = 0) AS created';
+
+/**
+ * Creates or updates several repository configs of a repository with a single statement, so that the keys and their scopes are validated
+ * and all the rows written in one round trip and one transaction. Configs whose key does not match an existing global config with
+ * repository scope are not written. Where a key is passed more than once the last value passed is written.
+ * @param tenantId {String} the tenant ID for the repository configs.
+ * @param repositoryId {String} the repository ID for the repository configs.
+ * @param repositoryConfigs {Array} the repository configs to set, each with a key and value.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of create/update.
+ *  Resolved promise will return an array with the outcome for each repository config passed, in the order passed.
+ *  e.g. [ { 'key': 'entity', 'outcome': 'CREATED' }, { 'key': 'unknown', 'outcome': 'NOT_FOUND' } ]
+ *  where outcome is one of CREATED, UPDATED or NOT_FOUND (no global config with repository scope exists for the key).
+ *  Rejected promise can pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
+ */
+function setRepositoryConfigs(tenantId, repositoryId, repositoryConfigs) {
+    var deferredSet = Q.defer();
+    var validScope = 1;
+
+    const valuesByKey = new Map();
+    for (var configIndex = 0; configIndex < repositoryConfigs.length; configIndex++) {
+        valuesByKey.set(repositoryConfigs[configIndex].key, repositoryConfigs[configIndex].value);
+    }
+    if (valuesByKey.size === 0) {
+        deferredSet.resolve([]);
+        return deferredSet.promise;
+    }
+
+    databaseDefinition.query(setRepositoryConfigsQuery, {
+        replacements: {
+            keys: Array.from(valuesByKey.keys()),
+            repositoryId: repositoryId,
+            tenantId: tenantId,
+            validScope: validScope,
+            values: Array.from(valuesByKey.values())
+        },
+        type: Sequelize.QueryTypes.SELECT
+    })
+        .then(function (writtenRows) {
+            logger.debug("Set " + writtenRows.length + " of " + valuesByKey.size + " repository configs in database for repositoryId '"
+                + repositoryId + "' and tenantId '" + tenantId + "'.");
+            deferredSet.resolve(configSetOutcomeHelper.buildSetOutcomes(repositoryConfigs, writtenRows));
+        })
+        .catch(function (errorResponse) {
+            logger.error("Failure occurred trying to create " + valuesByKey.size + " repository configs for repositoryId '" + repositoryId
+                + "' and tenantId '" + tenantId + "': " + errorResponse.toString());
+            deferredSet.reject(apiErrorFactory.createDatabaseUnknownError('Failure during creation of repository configs.'));
+        })
+        .done();
+    return effectiveConfigCache.invalidateRepositoryAfter(deferredSet.promise, tenantId, repositoryId);
 }
@@ -19,19 +19,28 @@ const Q = require('q');
 const apiErrorFactory = require('../errors/apiErrorFactory.js');
 const databaseDefinition = require('./databaseConnection.js').definition;
 const logger = require('../../helpers/loggingHelper.js');
+const configSetOutcomeHelper = require('../../helpers/configSetOutcomeHelper.js');
+const effectiveConfigCache = require('./effectiveConfigCache.js');
 const tenantConfigTableDetails = require('./tables/tenantConfig.js');
+const globalConfigTableDetails = require('./tables/globalConfig.js');
+const repositoryConfigTableDetails = require('./tables/repositoryConfig.js');
 
 module.exports = {
     deleteTenantConfig: deleteTenantConfig,
+    deleteTenantConfigs: deleteTenantConfigs,
     getTenantConfig: getTenantConfig,
     getTenantConfigs: getTenantConfigs,
-    setTenantConfig: setTenantConfig
+    setTenantConfig: setTenantConfig,
+    setTenantConfigs: setTenantConfigs
 }
 
 const tableDefinition = tenantConfigTableDetails.definition;
 const tenantConfigTable = databaseDefinition.define(tenantConfigTableDetails.name,
     tableDefinition,
     { tableName:  tenantConfigTableDetails.tableName, timestamps: false });
+const repositoryConfigTable = databaseDefinition.define(repositoryConfigTableDetails.name,
+    repositoryConfigTableDetails.definition,
+    { tableName: repositoryConfigTableDetails.tableName, timestamps: false });
 
 /**
  * Deletes a tenant config matching the specified parameters.
@@ -62,7 +71,53 @@ function deleteTenantConfig(tenantId, key) {
                 " tenantId '" +tenantId+ "' and key '" +key+ "'."));
         });
 
-    return deferredDelete.promise;
+    return effectiveConfigCache.invalidateTenantAfter(deferredDelete.promise, tenantId);
+}
+
+/**
+ * Deletes all tenant configs of the specified tenant with a single statement. If cascade is requested the repository configs of every
+ * repository of the tenant are also deleted first, both deletes running in one transaction so that either all or none are deleted.
+ * @param tenantId {String} the tenant ID identifying the configs that should be deleted.
+ * @param cascadeToRepositories {Boolean} true if the repository configs of the tenant should also be deleted.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of delete.
+ *  Resolved promise will return an object with the number of tenant configs and of repository configs deleted.
+ *  e.g. { 'tenantConfigs': 12, 'repositoryConfigs': 0 }
+ *  Rejected promise will pass an ApiError with type DATABASE_UNKNOWN_ERROR.
+ */
+function deleteTenantConfigs(tenantId, cascadeToRepositories) {
+    var deferredDelete = Q.defer();
+
+    var deletePromise;
+    if(cascadeToRepositories === true) {
+        deletePromise = databaseDefinition.transaction(function(transaction) {
+            return repositoryConfigTable.destroy({ where: { tenantId: tenantId }, transaction: transaction })
+                .then(function(repositoryConfigsDeleted) {
+                    return tenantConfigTable.destroy({ where: { tenantId: tenantId }, transaction: transaction })
+                        .then(function(tenantConfigsDeleted) {
+                            return { tenantConfigs: tenantConfigsDeleted, repositoryConfigs: repositoryConfigsDeleted };
+                        });
+                });
+        });
+    }
+    else {
+        deletePromise = tenantConfigTable.destroy({ where: { tenantId: tenantId }})
+            .then(function(tenantConfigsDeleted) {
+                return { tenantConfigs: tenantConfigsDeleted, repositoryConfigs: 0 };
+            });
+    }
+    deletePromise
+        .then(function(deleteResult) {
+            logger.debug("Deleted " + deleteResult.tenantConfigs + " tenant configs and " + deleteResult.repositoryConfigs
+                + " repository configs for tenantId '" + tenantId + "'.");
+            deferredDelete.resolve(deleteResult);
+        })
+        .catch(function(errorResponse) {
+            logger.error("Failure occurred during delete of tenant configs with tenantId '" + tenantId + "': " + errorResponse.toString());
+            deferredDelete.reject(apiErrorFactory.createDatabaseUnknownError("Failure during delete of tenant configs with tenantId '"
+                + tenantId + "'."));
+        });
+
+    return effectiveConfigCache.invalidateTenantAfter(deferredDelete.promise, tenantId);
 }
 
 /**
@@ -102,21 +157,28 @@ function getTenantConfig(tenantId, key) {
 }
 
 /**
- * Retrieves existing tenant configs for the specified tenant. The first 100 tenant configs will be returned.
+ * Retrieves existing tenant configs for the specified tenant, ordered by key. All tenant configs are returned unless a limit is passed.
+ * Pages are read by key from the primary key index, so each page costs the same however far into the configs it starts.
  * @param tenantId {String} the tenant ID to return tenant configs for.
+ * @param afterKey {String} optional. Only tenant configs with a key after this key will be returned.
+ * @param limit {Number} optional. The maximum number of tenant configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of retrieval.
  *  Resolved promise will return an array of containing the keys and values for the tenant configs matched by the tenant ID.
  *  e.g. [ { 'key': entity', 'value': 'ip_address' } ]
  *  Rejected promise can pass an ApiError with type set to either DATABASE_UNKNOWN_ERROR.
  */
-function getTenantConfigs(tenantId) {
+function getTenantConfigs(tenantId, afterKey, limit) {
     var deferredGetAll = Q.defer();
 
-    // defaulting number returned to the first 100. We may expand this in future to support passed in offsets and limits.
+    var whereCondition = { tenantId: tenantId };
+    if(afterKey!==undefined) {
+        whereCondition.key = { [Sequelize.Op.gt]: afterKey };
+    }
     tenantConfigTable.findAll({
             attributes: [tableDefinition.key.field, tableDefinition.value.field],
-            limit: 100,
-            where: { tenantId: tenantId }
+            limit: limit,
+            order: [[tableDefinition.key.field, 'ASC']],
+            where: whereCondition
         })
         .then(function(retrievedTenantConfigs){
             // the objects returned have additional properties specific to the database model, only return properties that caller
@@ -186,5 +248,59 @@ function setTenantConfig(tenantId, key, value) {
             deferredSet.reject(apiErrorFactory.createDatabaseUnknownError('Failure during creation of tenant config.'));
         })
         .done();
-    return deferredSet.promise;
+    return effectiveConfigCache.invalidateTenantAfter(deferredSet.promise, tenantId);
+}
+
+// creates or updates the tenant configs passed whose keys exist in the global config table, reporting each row written and whether it was
+// created. Keys without a global config are not written.
+const setTenantConfigsQuery =
+    'INSERT INTO ' + tenantConfigTableDetails.tableName + ' (' + tableDefinition.tenantId.field + ', ' + tableDefinition.key.field + ', ' +
+        tableDefinition.value.field + ') ' +
+    'SELECT :tenantId, input_config.key, input_config.value ' +
+    'FROM unnest(ARRAY[:keys]::varchar[], ARRAY[:values]::text[]) AS input_config (key, value) ' +
+    'WHERE EXISTS (SELECT 1 FROM ' + globalConfigTableDetails.tableName + ' global_config WHERE global_config.key = input_config.key) ' +
+    'ON CONFLICT (' + tableDefinition.tenantId.field + ', ' + tableDefinition.key.field + ') DO UPDATE SET ' +
+        tableDefinition.value.field + ' = EXCLUDED.' + tableDefinition.value.field + ' ' +
+    'RETURNING ' + tableDefinition.key.field + ' AS key, (xmax = 0) AS created';
+
+/**
+ * Creates or updates several tenant configs of a tenant with a single statement, so that the keys are validated and all the rows written
+ * in one round trip and one transaction. Configs whose key does not match an existing global config are not written. Where a key is passed
+ * more than once the last value passed is written.
+ * @param tenantId {String} the tenant ID for the tenant configs.
+ * @param tenantConfigs {Array} the tenant configs to set, each with a key and value.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on the result of create/update.
+ *  Resolved promise will return an array with the outcome for each tenant config passed, in the order passed.
+ *  e.g. [ { 'key': 'entity', 'outcome': 'CREATED' }, { 'key': 'unknown', 'outcome': 'NOT_FOUND' } ]
+ *  where outcome is one of CREATED, UPDATED or NOT_FOUND (no global config exists for the key).
+ *  Rejected promise can pass an ApiError with type set to DATABASE_UNKNOWN_ERROR.
+ */
+function setTenantConfigs(tenantId, tenantConfigs) {
+    var deferredSet = Q.defer();
+
+    const valuesByKey = new Map();
+    for(var configIndex=0; configIndex < tenantConfigs.length; configIndex++) {
+        valuesByKey.set(tenantConfigs[configIndex].key, tenantConfigs[configIndex].value);
+    }
+    if(valuesByKey.size === 0) {
+        deferredSet.resolve([]);
+        return deferredSet.promise;
+    }
+
+    databaseDefinition.query(setTenantConfigsQuery, {
+            replacements: { keys: Array.from(valuesByKey.keys()), tenantId: tenantId, values: Array.from(valuesByKey.values()) },
+            type: Sequelize.QueryTypes.SELECT
+        })
+        .then(function(writtenRows) {
+            logger.debug("Set " + writtenRows.length + " of " + valuesByKey.size + " tenant configs in database for tenantId '"
+                + tenantId + "'.");
+            deferredSet.resolve(configSetOutcomeHelper.buildSetOutcomes(tenantConfigs, writtenRows));
+        })
+        .catch(function(errorResponse) {
+            logger.error("Failure occurred trying to create " + valuesByKey.size + " tenant configs for tenantId '" + tenantId + "': "
+                + errorResponse.toString());
+            deferredSet.reject(apiErrorFactory.createDatabaseUnknownError('Failure during creation of tenant configs.'));
+        })
+        .done();
+    return effectiveConfigCache.invalidateTenantAfter(deferredSet.promise, tenantId);
 }
@@ -21,6 +21,7 @@ var apiErrorTypes = require('./errors/apiErrorTypes.js');
 
 module.exports = {
   create: create,
+  setRetryAfterHeader: setRetryAfterHeader,
   writeErrorToResponseJSON: writeErrorToResponseJSON
 };
 
@@ -37,6 +38,9 @@ function getStatusCodeFromApiErrorType(apiErrorType){
     case apiErrorTypes.METHOD_NOT_ALLOWED:
       statusCode = 405;
       break;
+    case apiErrorTypes.SERVICE_UNAVAILABLE:
+      statusCode = 503;
+      break;
     default:
       statusCode = 500;
   }
@@ -76,10 +80,18 @@ function create(errorResponse, statusCode){
 
 function writeErrorToResponseJSON(error, responseToWriteTo){
   var errorResponse = create(error);
+  setRetryAfterHeader(error, responseToWriteTo);
   responseToWriteTo.status(errorResponse.statusCode);
   responseToWriteTo.json(errorResponse.response);
 }
 
+//sets the Retry-After header on the response if the error passed says when the request may be retried
+function setRetryAfterHeader(error, responseToWriteTo){
+  if(error instanceof ApiError && error.retryAfterSeconds!==undefined){
+    responseToWriteTo.set('Retry-After', String(error.retryAfterSeconds));
+  }
+}
+
 function writeErrorToLog(error){
   var errorResponse = create(error);
   logger.error(error.status + " " + error.message);
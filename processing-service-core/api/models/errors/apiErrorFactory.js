@@ -22,7 +22,8 @@ module.exports = {
   createDatabaseUnknownError: createDatabaseUnknownError,
   createMethodNotAllowedError: createMethodNotAllowedError,
   createError: createError,
-  createNotFoundError: createNotFoundError  
+  createNotFoundError: createNotFoundError,
+  createServiceUnavailableError: createServiceUnavailableError
 }
 
 function createDatabaseUnknownError(message) {
@@ -37,6 +38,15 @@ function createNotFoundError(message){
   return new ApiError(message, apiErrorTypes.ITEM_NOT_FOUND);
 }
 
+//retryAfterSeconds - the number of seconds after which the request may be retried, returned in the Retry-After header
+function createServiceUnavailableError(message, retryAfterSeconds){
+  var error = new ApiError(message, apiErrorTypes.SERVICE_UNAVAILABLE);
+  error.retryAfterSeconds = retryAfterSeconds;
+  //status used by the error handler of the app when the error is passed to 'next'
+  error.status = 503;
+  return error;
+}
+
 function createError(message, type){
   if(type===undefined || type === null){
     return new ApiError(message, apiErrorTypes.UNKNOWN);
@@ -21,5 +21,9 @@ module.exports = {
   DATABASE_UNKNOWN_ERROR: 'DATABASE_UNKNOWN_ERROR',
   ITEM_NOT_FOUND: 'ITEM_NOT_FOUND',
   METHOD_NOT_ALLOWED: 'METHOD_NOT_ALLOWED',
+  /**
+   * Describes a dependency of the service being unavailable, such as while the circuit to Policy API is open.
+   */
+  SERVICE_UNAVAILABLE: 'SERVICE_UNAVAILABLE',
   UNKNOWN: 'UNKNOWN'
 };
@@ -58,13 +58,15 @@ function getGlobalConfig(key){
 };
 
 /**
- * Retrieves all global configs.
+ * Retrieves all global configs ordered by key, or a page of them if a limit is passed.
  * 
+ * @param {String} afterKey Optional. Only global configs with a key after this key are returned.
+ * @param {Number} limit Optional. The maximum number of global configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  */
-function getGlobalConfigs(){
+function getGlobalConfigs(afterKey, limit){
   return executeConfig(
-    store.getGlobalConfigs(),
+    store.getGlobalConfigs(afterKey, limit),
     'Retrieved all global configurations',
     'Failed to retrieve all global configurations'
   );
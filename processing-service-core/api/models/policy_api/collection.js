@@ -15,9 +15,13 @@
  */
 var Q = require('q');
 var policyApiHelper = require('../../helpers/policyApiHelpers.js');
+var policyApiCache = require('./policyApiCache.js');
 var pagingHelper = require('../../helpers/pagingHelper.js');
 var apiErrorFactory = require('../errors/apiErrorFactory.js');
 
+//object types whose cached entries may be changed by a write to a Collection (Collections hold a Condition and are included in Sequence details)
+var invalidatedOnWrite = [policyApiCache.objectTypes.COLLECTION, policyApiCache.objectTypes.CONDITION, policyApiCache.objectTypes.COLLECTION_SEQUENCE];
+
 //returns a params object with common parameters for Collection. Takes in a project ID and uses that in the params.
 var getDefaultParams = function(projectId){
   return {
@@ -38,6 +42,11 @@ module.exports = {
   validateCollectionExists: validateCollectionExists
 };
 
+//builds the key to cache a Collection under, the retrieve options are part of the key as they change the form of Collection returned.
+var buildCacheKey = function(collectionId, include_condition, include_children){
+  return collectionId + ':' + (include_condition ? 'condition' : '') + ':' + (include_children ? 'children' : '');
+};
+
 function get(projectId, collectionId, include_condition, include_children){
   var getCollectionParams = getDefaultParams(projectId);
   getCollectionParams.id = collectionId;
@@ -49,7 +58,9 @@ function get(projectId, collectionId, include_condition, include_children){
     getCollectionParams.additional.include_children = true;
   }
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionParams);
+  return policyApiCache.retrieve(projectId, policyApiCache.objectTypes.COLLECTION, buildCacheKey(collectionId, include_condition, include_children), function(){
+    return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionParams);
+  });
 }
 
 //gets collections in the system. Supports paging. Will not return detail about policyIds or conditions on Collection. Returns a promise.
@@ -68,14 +79,47 @@ function getCollections(projectId, pageNum, pageSize){
 //Will return details about policyIds on a Collection
 function getCollectionsByIds(projectId, params){
   var getCollectionsParams = getDefaultParams(projectId);
+  var includeCondition = params.includeCondition === undefined ? false : params.includeCondition;
+  var includeChildren = params.includeChildren === undefined ? false : params.includeChildren;
+  
+  var idsToRequest = [];
+  var collectionsFromCache = [];
+  //see if we have any of these Collections already in the cache to avoid requesting them again
+  for(var collectionId of params.ids){
+    var collectionFromCache = policyApiCache.get(projectId, policyApiCache.objectTypes.COLLECTION, buildCacheKey(collectionId, includeCondition, includeChildren));
+    if(collectionFromCache===undefined){
+      idsToRequest.push(collectionId);
+    }
+    else {
+      collectionsFromCache.push(collectionFromCache);
+    }
+  }
+  //if we have all the ids in the cache then construct a response without going to the API
+  if(idsToRequest.length ===0){
+    return Q({
+      totalhits: collectionsFromCache.length,
+      results: collectionsFromCache
+    });
+  }
 
-  getCollectionsParams.id = params.ids;
+  getCollectionsParams.id = idsToRequest;
 
   getCollectionsParams.additional = {
-    include_condition: params.includeCondition === undefined ? false : params.includeCondition,
-    include_children: params.includeChildren === undefined ? false : params.includeChildren
+    include_condition: includeCondition,
+    include_children: includeChildren
   };
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemsRequest("classification/retrieve", getCollectionsParams);
+  var generation = policyApiCache.getGeneration(projectId, policyApiCache.objectTypes.COLLECTION);
+  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemsRequest("classification/retrieve", getCollectionsParams)
+  .then(function(returnedCollections){
+    //add these retrieved entries to the cache
+    for(var returnedCollection of returnedCollections.results){
+      policyApiCache.set(projectId, policyApiCache.objectTypes.COLLECTION, buildCacheKey(returnedCollection.id, includeCondition, includeChildren), returnedCollection, generation);
+    }
+    //add those that were already in the cache to the results
+    returnedCollections.totalhits += collectionsFromCache.length;
+    returnedCollections.results = returnedCollections.results.concat(collectionsFromCache);
+    return returnedCollections;
+  });
 }
 
 //create a collection using the provided parameter object. Returns a promise.
@@ -88,7 +132,8 @@ function create(projectId, collection){
   createCollectionParams.description = collection.description;
   createCollectionParams.name = collection.name;
 
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createCollectionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createCollectionParams),
+    projectId, invalidatedOnWrite);
 }
 //update a collection using the provided parameter object. Returns a promise.
 function update(projectId, collection){
@@ -103,18 +148,21 @@ function update(projectId, collection){
   updateCollectionParams.id = collection.id;
   updateCollectionParams.name = collection.name;
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateCollectionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateCollectionParams),
+    projectId, invalidatedOnWrite);
 }
 function deleteCollection(projectId, collectionId){
   var deleteCollectionParams = getDefaultParams(projectId);
   deleteCollectionParams.id = collectionId;
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionParams),
+    projectId, invalidatedOnWrite);
 }
 //delete all Collections specified in the passed array. Returns a promise.
 function deleteAll(projectId, collectionIds){
   var deleteCollectionParams = getDefaultParams(projectId);
   deleteCollectionParams.id = collectionIds;
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionParams),
+    projectId, invalidatedOnWrite);
 }
 
 //Retuns a promise to check that a given Collection exists. Resolved result will be the retrieved Collection
@@ -14,10 +14,15 @@
  * limitations under the License.
  */
 var policyApiHelper = require('../../helpers/policyApiHelpers.js');
+var policyApiCache = require('./policyApiCache.js');
 var Q = require('q');
 var apiErrorFactory = require('../errors/apiErrorFactory.js');
+var keyedBatchQueue = require('../../libs/keyedBatchQueue.js');
+var metrics = require('../../libs/metrics.js');
 
 module.exports = {
+  addEntries: addEntries,
+  addEntry: addEntry,
   create: create,
   createCollectionEntry: createCollectionEntry,
   defaults: {
@@ -29,13 +34,21 @@ module.exports = {
   delete: deleteSequence,
   get: get,
   getAllDetails: getAllDetails,
+  getByIds: getByIds,
   getCollectionIdsFromEntries: getCollectionIdsFromEntries,
+  getUpdateQueueStatistics: getUpdateQueueStatistics,
+  removeAllEntries: removeAllEntries,
   removeCollectionEntry: removeCollectionEntry,
+  removeEntry: removeEntry,
   update: update,
-  updateCollectionSequenceWithEntryForCollection: updateCollectionSequenceWithEntryForCollection,
+  updateDetails: updateDetails,
+  updateEntryOrder: updateEntryOrder,
   validateSequenceExists: validateSequenceExists
 };
 
+//object types whose cached entries may be changed by a write to a Collection Sequence (Workflows hold entries referring to Sequences)
+var invalidatedOnWrite = [policyApiCache.objectTypes.COLLECTION_SEQUENCE, policyApiCache.objectTypes.WORKFLOW];
+
 //returns a params object with common parameters for Collection. Takes in a project ID and uses that in the params.
 var getDefaultParams = function(projectId){
   return {
@@ -49,7 +62,8 @@ function deleteSequence(projectId, collectionSequenceId){
   var deleteCollectionSequenceParams = getDefaultParams(projectId);
   deleteCollectionSequenceParams.id = collectionSequenceId;
 
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionSequenceParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteCollectionSequenceParams),
+    projectId, invalidatedOnWrite);
 }
 //creates a collection sequence using the provided parameter object. Returns a promise.
 function create(projectId, collectionSequence){
@@ -60,7 +74,8 @@ function create(projectId, collectionSequence){
     evaluation_enabled: collectionSequence.enabled
   };
 
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createCollectionSequenceParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createCollectionSequenceParams),
+    projectId, invalidatedOnWrite);
 }
 
 //gets a collection sequence matching the specified ID. Returns a promise.
@@ -68,7 +83,60 @@ function get(projectId, collectionSequenceId){
   var getCollectionSequenceParams = getDefaultParams(projectId);
   getCollectionSequenceParams.id = collectionSequenceId;
 
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionSequenceParams);
+  return policyApiCache.retrieve(projectId, policyApiCache.objectTypes.COLLECTION_SEQUENCE, collectionSequenceId, function(){
+    return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionSequenceParams);
+  });
+}
+
+//maximum number of IDs to send on a single retrieve so that the request URL stays within limits
+var maxIdsPerRetrieve = 100;
+
+//gets collection sequences with IDs matching those in the 'ids' array passed. Sequences already cached are not requested again, the rest are
+//retrieved in as few requests as possible (one per 'maxIdsPerRetrieve' IDs). Returns a promise resolving with an object holding the 'totalhits'
+//and the 'results' in the order of the IDs passed. IDs that do not match a sequence are left out of the results.
+function getByIds(projectId, ids){
+  var sequencesById = {};
+  var idsToRequest = [];
+  //see if we have any of these Sequences already in the cache to avoid requesting them again
+  for(var collectionSequenceId of ids){
+    var sequenceFromCache = policyApiCache.get(projectId, policyApiCache.objectTypes.COLLECTION_SEQUENCE, collectionSequenceId);
+    if(sequenceFromCache===undefined){
+      idsToRequest.push(collectionSequenceId);
+    }
+    else {
+      sequencesById[collectionSequenceId] = sequenceFromCache;
+    }
+  }
+
+  var generation = policyApiCache.getGeneration(projectId, policyApiCache.objectTypes.COLLECTION_SEQUENCE);
+  var retrievePromises = [];
+  for(var chunkStart = 0; chunkStart < idsToRequest.length; chunkStart += maxIdsPerRetrieve){
+    var getCollectionSequencesParams = getDefaultParams(projectId);
+    getCollectionSequencesParams.id = idsToRequest.slice(chunkStart, chunkStart + maxIdsPerRetrieve);
+    getCollectionSequencesParams.max_page_results = getCollectionSequencesParams.id.length;
+    retrievePromises.push(policyApiHelper.HttpHelper.genericPolicyAPIGetItemsRequest("classification/retrieve", getCollectionSequencesParams));
+  }
+
+  return Q.all(retrievePromises)
+  .then(function(retrievedChunks){
+    //add these retrieved entries to the cache
+    for(var retrievedChunk of retrievedChunks){
+      for(var returnedSequence of retrievedChunk.results){
+        policyApiCache.set(projectId, policyApiCache.objectTypes.COLLECTION_SEQUENCE, returnedSequence.id, returnedSequence, generation);
+        sequencesById[returnedSequence.id] = returnedSequence;
+      }
+    }
+    var results = [];
+    for(var requestedId of ids){
+      if(sequencesById[requestedId]!==undefined){
+        results.push(sequencesById[requestedId]);
+      }
+    }
+    return {
+      totalhits: results.length,
+      results: results
+    };
+  });
 }
 
 //gets details for a collection sequence matching the specified ID, returning details of the sequence, the policies on it, collection entries, condition fragments on it and any Policy Types it is using.
@@ -79,7 +147,10 @@ function getAllDetails(projectId, collectionSequenceId){
     include_children: true
   };
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionSequenceParams);
+  //the details include the Collections, Conditions, Policies and Policy Types on the sequence, writes to any of those invalidate Collection Sequence entries
+  return policyApiCache.retrieve(projectId, policyApiCache.objectTypes.COLLECTION_SEQUENCE, collectionSequenceId + ':details', function(){
+    return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionSequenceParams);
+  });
 }
 
 //updates a collection sequence with passed in object properties. If 'updateBehaviour' passed then the update on children of the collection sequence can be either 'ADD' or 'REPLACE'.
@@ -89,39 +160,204 @@ function update(projectId, collectionSequence, updateBehaviour){
   updateCollectionSequenceParams.name = collectionSequence.name;
   updateCollectionSequenceParams.description = collectionSequence.description;
   
-  if(collectionSequence.additional){
-    updateCollectionSequenceParams.additional = collectionSequence.additional;
-  }
-  else {
-    updateCollectionSequenceParams.additional = {};
-  }
+  //copying 'additional' so that the caller's object (which may be a cached, frozen object) is not modified
+  updateCollectionSequenceParams.additional = Object.assign({}, collectionSequence.additional);
   updateCollectionSequenceParams.additional.evaluation_enabled = collectionSequence.enabled;
   
   if(updateBehaviour!==undefined && updateBehaviour!==null){
     updateCollectionSequenceParams.update_behaviour =  updateBehaviour;
   }
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateCollectionSequenceParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateCollectionSequenceParams),
+    projectId, invalidatedOnWrite);
 }
 
-//updates a collection using the description, id and name on the details provided and an entry for the collection with the ID passed using the provided order.
-function updateCollectionSequenceWithEntryForCollection(project_id, collectionSequenceDetails, collectionId, collectionOrder, updateBehaviour){
-  //add this collection to the requested rule (col seq)    
-    var updateCollectionSequenceParams = {
-      description: collectionSequenceDetails.description,
-      enabled: collectionSequenceDetails.additional.evaluation_enabled,
-      id: collectionSequenceDetails.id,
-      name: collectionSequenceDetails.name
-    };
-    
-    var newCollectionEntry = createCollectionEntry(collectionId,
-      collectionOrder);
-    updateCollectionSequenceParams.additional = {
-      collection_sequence_entries: [newCollectionEntry]
+//changes to a sequence are queued per sequence so that each read-modify-write of the entries completes before the next starts, with the
+//changes queued meanwhile applied together in a single update. This avoids concurrent changes overwriting each other's entries.
+var changeTypes = {
+  addEntries: 'ADD_ENTRIES',
+  removeAllEntries: 'REMOVE_ALL_ENTRIES',
+  removeEntry: 'REMOVE_ENTRY',
+  updateDetails: 'UPDATE_DETAILS',
+  updateEntryOrder: 'UPDATE_ENTRY_ORDER'
+};
+var updateQueue = keyedBatchQueue.createKeyedBatchQueue(applyQueuedChanges);
+
+var queueChange = function(projectId, collectionSequenceId, change){
+  change.projectId = projectId;
+  change.collectionSequenceId = collectionSequenceId;
+  return updateQueue.enqueue(projectId + ':' + collectionSequenceId, change);
+};
+
+//adds an entry for the collection with the ID passed using the provided order. Returns a promise resolving with the entry added.
+function addEntry(projectId, collectionSequenceId, collectionId, collectionOrder){
+  return addEntries(projectId, collectionSequenceId, [createCollectionEntry(collectionId, collectionOrder)])
+  .then(function(addedEntries){
+    return addedEntries[0];
+  });
+}
+
+//adds the collection entries passed (see 'createCollectionEntry') to the sequence in one change. Returns a promise resolving with the entries added.
+function addEntries(projectId, collectionSequenceId, collectionEntries){
+  return queueChange(projectId, collectionSequenceId, {
+    type: changeTypes.addEntries,
+    entries: collectionEntries
+  });
+}
+
+//removes the collection with the ID passed from the entries of the sequence. Returns a promise.
+function removeEntry(projectId, collectionSequenceId, collectionId){
+  return queueChange(projectId, collectionSequenceId, {
+    type: changeTypes.removeEntry,
+    collectionId: collectionId
+  });
+}
+
+//removes all entries from the sequence. Returns a promise.
+function removeAllEntries(projectId, collectionSequenceId){
+  return queueChange(projectId, collectionSequenceId, {
+    type: changeTypes.removeAllEntries
+  });
+}
+
+//sets the order on the entry for the collection with the ID passed. Returns a promise resolving with the updated entry, or null if the
+//sequence has no entry for the collection.
+function updateEntryOrder(projectId, collectionSequenceId, collectionId, collectionOrder){
+  return queueChange(projectId, collectionSequenceId, {
+    type: changeTypes.updateEntryOrder,
+    collectionId: collectionId,
+    order: collectionOrder
+  });
+}
+
+//updates the name, description and enabled state of a sequence, keeping its entries. Returns a promise resolving with the updated sequence.
+function updateDetails(projectId, collectionSequence){
+  return queueChange(projectId, collectionSequence.id, {
+    type: changeTypes.updateDetails,
+    description: collectionSequence.description,
+    enabled: collectionSequence.enabled,
+    name: collectionSequence.name
+  });
+}
+
+//retrieves the sequence from Policy API to apply a batch of queued changes to. The cache is not used as another process may have updated
+//the sequence without this process having seen the invalidation yet, and the request is not joined to one already in flight as that may have
+//been sent before the previous batch was saved.
+function retrieveForUpdate(projectId, collectionSequenceId){
+  var getCollectionSequenceParams = getDefaultParams(projectId);
+  getCollectionSequenceParams.id = collectionSequenceId;
+  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getCollectionSequenceParams, {noCoalesce: true})
+  .fail(function(errorResponse){
+    if(errorResponse.statusCode === 400){
+      throw apiErrorFactory.createNotFoundError("Unable to find Rule with ID: "+collectionSequenceId);
+    }
+    throw errorResponse;
+  });
+}
+
+//applies the changes queued for a sequence, in the order they were queued, and saves them with one update. The update is skipped if none of
+//the changes modify the sequence. Returns a promise resolving with the outcome of each change.
+//The queue only serializes changes made by this process. So that entries added by other processes at the same time are not lost, a batch
+//that only adds entries (and updates the details) is saved with the 'ADD' update behaviour, passing just the new entries. Only batches that
+//remove or reorder entries replace the entries of the sequence with those read at the start of the batch.
+function applyQueuedChanges(key, changes){
+  var projectId = changes[0].projectId;
+  var collectionSequenceId = changes[0].collectionSequenceId;
+  return retrieveForUpdate(projectId, collectionSequenceId)
+  .then(function(retrievedSeq){
+    var sequenceForUpdate = {
+      additional: Object.assign({}, retrievedSeq.additional),
+      description: retrievedSeq.description,
+      enabled: retrievedSeq.additional.evaluation_enabled,
+      id: retrievedSeq.id,
+      name: retrievedSeq.name
     };
-    
-    //call update sequence with 'add' update behaviour so this new collection entry is just added to the sequence rather than having to pass existing entries also as part of update.
-    return update(project_id, updateCollectionSequenceParams, 
-      updateBehaviour);   
+    var entries = retrievedSeq.additional.collection_sequence_entries || [];
+    var addedEntries = [];
+    var outcomes = [];
+    var modified = false;
+    var replaceEntries = false;
+    for(var change of changes){
+      var outcome = {value: undefined};
+      switch(change.type){
+        case changeTypes.addEntries:
+          entries = entries.concat(change.entries);
+          addedEntries = addedEntries.concat(change.entries);
+          outcome.value = change.entries;
+          modified = true;
+          break;
+        case changeTypes.removeEntry:
+          entries = removeCollectionEntry(entries, change.collectionId);
+          modified = true;
+          replaceEntries = true;
+          break;
+        case changeTypes.removeAllEntries:
+          entries = [];
+          modified = true;
+          replaceEntries = true;
+          break;
+        case changeTypes.updateEntryOrder:
+          outcome.value = null;
+          for(var entryIndex = 0; entryIndex < entries.length; entryIndex++){
+            if(entries[entryIndex].collection_ids[0]!==change.collectionId){
+              continue;
+            }
+            //the entries must not be modified as they may be shared with an earlier change's outcome, replace the entry with a copy
+            var updatedEntry = Object.assign({}, entries[entryIndex], {order: change.order});
+            entries = entries.slice();
+            entries[entryIndex] = updatedEntry;
+            outcome.value = updatedEntry;
+            modified = true;
+            replaceEntries = true;
+            break;
+          }
+          break;
+        case changeTypes.updateDetails:
+          sequenceForUpdate.description = change.description;
+          sequenceForUpdate.enabled = change.enabled;
+          sequenceForUpdate.name = change.name;
+          modified = true;
+          break;
+      }
+      outcomes.push(outcome);
+    }
+    if(!modified){
+      return outcomes;
+    }
+    var updatePromise;
+    if(replaceEntries){
+      sequenceForUpdate.additional.collection_sequence_entries = entries;
+      updatePromise = update(projectId, sequenceForUpdate);
+    }
+    else {
+      sequenceForUpdate.additional = {
+        collection_sequence_entries: addedEntries
+      };
+      updatePromise = update(projectId, sequenceForUpdate, module.exports.defaults.updateBehaviour.add);
+    }
+    return updatePromise
+    .then(function(updatedSeq){
+      changes.forEach(function(change, changeIndex){
+        if(change.type===changeTypes.updateDetails){
+          outcomes[changeIndex].value = updatedSeq;
+        }
+      });
+      return outcomes;
+    });
+  });
+}
+
+metrics.createCollectedMetric('processing_rule_changes_total', 'Changes to the Actions and details of Rules, applied in batches per Rule.',
+  'counter', [], function(){
+  return [{value: updateQueue.getStatistics().items}];
+});
+metrics.createCollectedMetric('processing_rule_change_batches_total', 'Batches of queued changes applied to Rules, each saved with one update.',
+  'counter', [], function(){
+  return [{value: updateQueue.getStatistics().batches}];
+});
+
+//returns the number of sequences with changes being applied, the number of changes waiting and the number of updates and changes since startup
+function getUpdateQueueStatistics(){
+  return updateQueue.getStatistics();
 }
 
 //Constructs and returns an object representing a Collection Entry object on a Sequence using the parameters passed.
@@ -133,20 +369,26 @@ function createCollectionEntry(collectionId, order){
   };
 }
 
-//Takes in an array of collection entries and removes any entries for the collection ids matching the passed in ID.
+//Takes in an array of collection entries and returns a new array with the collection ids matching the passed in ID removed from each entry.
+//Entries left with no collection ids are not included. The array and entries passed are not modified.
 function removeCollectionEntry(collectionEntries, collectionIdToRemove){
-  for(var entryIndex =0; entryIndex<collectionEntries.length; entryIndex++){
-    var collectionEntry = collectionEntries[entryIndex];
+  var remainingEntries = [];
+  for(var collectionEntry of collectionEntries){
     //remove from the ids array on the entry
-    var idofCollectionIdsEntry = collectionEntry.collection_ids.indexOf(collectionIdToRemove);
-    if(idofCollectionIdsEntry!==-1){
-      collectionEntry.collection_ids.splice(idofCollectionIdsEntry, 1);
-    }
+    var remainingCollectionIds = collectionEntry.collection_ids.filter(function(collectionId){
+      return collectionId!==collectionIdToRemove;
+    });
     //check if there are no other id entries on this entry, if there are none then we remove the entry itself
-    if(collectionEntry.collection_ids.length === 0){
-      collectionEntries.splice(entryIndex, 1);
+    if(remainingCollectionIds.length === 0){
+      continue;
+    }
+    if(remainingCollectionIds.length === collectionEntry.collection_ids.length){
+      remainingEntries.push(collectionEntry);
+      continue;
     }
+    remainingEntries.push(Object.assign({}, collectionEntry, {collection_ids: remainingCollectionIds}));
   }
+  return remainingEntries;
 }
 
 //Retuns an array of Collection IDs that are present on the Collection Sequence Collection Entries passed.
@@ -14,7 +14,9 @@
  * limitations under the License.
  */
 var policyApiHelper = require('../../helpers/policyApiHelpers.js');
+var policyApiCache = require('./policyApiCache.js');
 var logger = require('../../helpers/loggingHelper.js');
+var jsonBodyHelper = require('../../helpers/jsonBodyHelper.js');
 
 //exporting constant values used in condition fields for use elsewhere.
 var conditionValues = {
@@ -43,6 +45,9 @@ module.exports = {
   update: update
 };
 
+//object types whose cached entries may be changed by a write to a Condition (Conditions are returned on Collections and in Sequence details)
+var invalidatedOnWrite = [policyApiCache.objectTypes.CONDITION, policyApiCache.objectTypes.COLLECTION, policyApiCache.objectTypes.COLLECTION_SEQUENCE];
+
 //returns a params object with common parameters for Collection. Takes in a project ID and uses that in the params.
 var getDefaultParams = function(projectId){
   return {
@@ -56,7 +61,8 @@ function update(projectId, condition){
   updateParams.id = condition.id;
   updateParams.name = condition.name;
   updateParams.additional = condition.additional;
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/update", updateParams),
+    projectId, invalidatedOnWrite);
 }
 
 //create a condition using passed information. Returns a promise.
@@ -65,7 +71,8 @@ function create(projectId, condition){
   createConditionParams.name = condition.name;
   createConditionParams.notes = condition.notes;
   createConditionParams.additional = condition.additional;
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createConditionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/create", createConditionParams),
+    projectId, invalidatedOnWrite);
 }
 
 //get a condition with the specified ID. Returns a promise.
@@ -79,7 +86,9 @@ function get(projectId, conditionId, includeChildren){
   else {
     getConditionParams.additional.include_children = false;
   }
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getConditionParams);
+  return policyApiCache.retrieve(projectId, policyApiCache.objectTypes.CONDITION, conditionId + ':' + (includeChildren ? 'children' : ''), function(){
+    return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getConditionParams);
+  });
 }
 
 //gets the first condition whose Notes field matches the value passed.
@@ -90,7 +99,9 @@ function getSingleConditionByNotes(projectId, notesValue){
       notes: notesValue
     }
   };
-  return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getConditionParams);
+  return policyApiCache.retrieve(projectId, policyApiCache.objectTypes.CONDITION, 'notes:' + notesValue, function(){
+    return policyApiHelper.HttpHelper.genericPolicyAPIGetItemRequest("classification/retrieve", getConditionParams);
+  });
 }
 
 //deletes a condition (and its children) with the specified ID. Returns a promise.
@@ -98,7 +109,8 @@ function deleteCondition(projectId, conditionId){
   var deleteConditionParams = getDefaultParams(projectId);
   deleteConditionParams.id = conditionId;
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteConditionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteConditionParams),
+    projectId, invalidatedOnWrite);
 }
 
 //deletes all conditions for the IDs passed. Returns a promise.
@@ -106,7 +118,8 @@ function deleteAll(projectId, conditionIds){
   var deleteConditionParams = getDefaultParams(projectId);
   deleteConditionParams.id = conditionIds;
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteConditionParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("classification/delete", deleteConditionParams),
+    projectId, invalidatedOnWrite);
 }
 
 //Returns an object that represents a Policy Condition with a root condition referring to Action that will always match any document evaluated against it. Additional conditions should be added as children of the root.
@@ -224,15 +237,15 @@ function checkConditionHasChildrenProperty(conditionToCheck){
     return false;
   }
   if(!conditionToCheck.hasOwnProperty('additional')){
-    logger.error("Policy condition passed has no 'additional' property: "+JSON.stringify(conditionToCheck));
+    logger.error("Policy condition passed has no 'additional' property: "+jsonBodyHelper.stringify(conditionToCheck));
     return false;
   }
   if(conditionToCheck.additional.type !== 'boolean'){
-    logger.error("Policy condition passed is not of type 'boolean': "+JSON.stringify(conditionToCheck));
+    logger.error("Policy condition passed is not of type 'boolean': "+jsonBodyHelper.stringify(conditionToCheck));
     return false;
   }
   if(!conditionToCheck.additional.hasOwnProperty('children')){
-    logger.error("Policy condition passed has no 'additional.children' property: "+JSON.stringify(conditionToCheck));
+    logger.error("Policy condition passed has no 'additional.children' property: "+jsonBodyHelper.stringify(conditionToCheck));
     return false;
   }
   return true;
@@ -263,7 +276,7 @@ function getConditionByIdFromBooleanCondition(conditionObject, idToFind){
   
   for(var childCondition of conditionObject.additional.children){
     if(childCondition === null || childCondition.additional===undefined || childCondition.additional===null){
-      logger.warn(function(){return "Child condition is not valid. It will be ignored. Root condition: "+JSON.stringify(conditionObject);});
+      logger.warn(function(){return "Child condition is not valid. It will be ignored. Root condition: "+jsonBodyHelper.stringify(conditionObject);});
       continue;
     }
     //Rule fragment condition should be ignored
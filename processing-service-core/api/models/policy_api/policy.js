@@ -14,9 +14,8 @@
  * limitations under the License.
  */
 var Q = require('q');
-var NodeCache = require( "node-cache" );
-var appConfig = require('../../helpers/dataProcessingServiceConfigHelper.js');
 var policyHttpHelper = require('../../helpers/policyHttpHelper.js');
+var policyApiCache = require('./policyApiCache.js');
 var errorResponseHelper = require('../errorResponse.js');
 
 module.exports = {
@@ -36,18 +35,14 @@ var getDefaultParams = function(projectId){
   };
 };
 
-//setting up caches
-var policyCache = new NodeCache({
-  stdTTL: appConfig.cacheDuration
-});
-var buildCacheKey = function(projectId, typeId){
-  return projectId + typeId;
-};
+//Policies are cached in the shared Policy API cache. Sequence details include Policies so writes also invalidate cached Sequences.
+var cacheType = policyApiCache.objectTypes.POLICY;
+var invalidatedOnWrite = [policyApiCache.objectTypes.COLLECTION_SEQUENCE];
 
 //get a policy with the specified ID. Returns a promise.
 function get(projectId, policyId){
   //if this Policy is already in the cache then return it (wrapped in a promise)
-  var cachedPolicy = policyCache.get(buildCacheKey(projectId, policyId));
+  var cachedPolicy = policyApiCache.get(projectId, cacheType, policyId);
   if(cachedPolicy!==undefined){
     return Q(cachedPolicy);
   }
@@ -56,7 +51,7 @@ function get(projectId, policyId){
   
   var getPolicyPromise = policyHttpHelper.genericPolicyAPIGetItemRequest("policy/retrieve", getPolicyParams);
   getPolicyPromise.then(function(result){
-    policyCache.set(buildCacheKey(projectId, policyId), result);
+    policyApiCache.set(projectId, cacheType, policyId, result);
   });
   return getPolicyPromise;
 }
@@ -69,7 +64,7 @@ function getPoliciesByIds(projectId, params){
   var policiesFromCache = [];
   //see if we have any of these Policies already in the cache to avoid requesting them again
   for(var policyId of params.ids){
-    var policyFromCache = policyCache.get(buildCacheKey(projectId, policyId));
+    var policyFromCache = policyApiCache.get(projectId, cacheType, policyId);
     if(policyFromCache===undefined){
       idsToRequest.push(policyId);
     }
@@ -93,7 +88,7 @@ function getPoliciesByIds(projectId, params){
   .then(function(returnedPolicies){
     //add these retrieved entries to the cache
     for(var returnedPolicy of returnedPolicies.results){
-      policyCache.set(buildCacheKey(projectId, returnedPolicy.id), returnedPolicy);
+      policyApiCache.set(projectId, cacheType, returnedPolicy.id, returnedPolicy);
     }
     //add those that were already in the cache to the results
     returnedPolicies.totalhits += policiesFromCache.length;
@@ -117,11 +112,12 @@ function create(projectId, policy){
     policy_type_id: policy.typeId,
     priority: policy.priority
   };
-  var createPromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/create", createPolicyParams);
-  createPromise.then(function(result){
-    policyCache.set(buildCacheKey(projectId, result.id), result);
+  var createPromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/create", createPolicyParams)
+  .then(function(result){
+    policyApiCache.set(projectId, cacheType, result.id, result);
+    return result;
   });
-  return createPromise;
+  return policyApiCache.invalidateAfter(createPromise, projectId, invalidatedOnWrite);
 }
 
 //update a policy with the specified object passed
@@ -135,39 +131,42 @@ function update(projectId, policy){
     policy_type_id: policy.typeId,
     priority: policy.priority
   };
-  var updatePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/update", updatePolicyParams);
-  //update the entry on the cache
-  updatePromise.then(function(result){
-    policyCache.set(buildCacheKey(projectId, policy.id), result);
+  //update the entry on the cache, removing it if the update failed as a failed update may still have been applied
+  var updatePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/update", updatePolicyParams)
+  .then(function(result){
+    policyApiCache.set(projectId, cacheType, policy.id, result);
+    return result;
+  }, function(errorResponse){
+    policyApiCache.del(projectId, cacheType, policy.id);
+    throw errorResponse;
   });
-  
-  return updatePromise;
+  return policyApiCache.invalidateAfter(updatePromise, projectId, invalidatedOnWrite);
 }
 //delete a policy with specified ID. Returns a promise.
 function deletePolicy(projectId, policyId){
   var deletePolicyParams = getDefaultParams(projectId);
   deletePolicyParams.id = policyId;
 
-  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyParams);
-  deletePromise.then(function(result){
-    policyCache.del(buildCacheKey(projectId, policyId));
+  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyParams)
+  .fin(function(){
+    policyApiCache.del(projectId, cacheType, policyId);
   });
-  return deletePromise;
+  return policyApiCache.invalidateAfter(deletePromise, projectId, invalidatedOnWrite);
 }
 //delete all Policies passed in. Returns a promise.
 function deleteAll(projectId, policyIds){
   var deletePolicyParams = getDefaultParams(projectId);
   deletePolicyParams.id = policyIds;
 
-  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyParams);
-  deletePromise.then(function(result){
+  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyParams)
+  .fin(function(){
     for(var policyId of policyIds){
-      policyCache.del(buildCacheKey(projectId, policyId));
+      policyApiCache.del(projectId, cacheType, policyId);
     }
-  })
-  .fail(function(errorResponse){
+  });
+  deletePromise.fail(function(errorResponse){
     errorResponseHelper.writeErrorToLog(errorResponse);
   })
   .done();
-  return deletePromise;
+  return policyApiCache.invalidateAfter(deletePromise, projectId, invalidatedOnWrite);
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//cache shared by the Policy API models for objects retrieved from Policy API. Entries are keyed by project, object type and a key
+//chosen by the model (usually the ID of the object plus any options used to retrieve it).
+//Each project and object type has a generation number that is part of the key of every entry. Invalidating an object type for a project
+//increments its generation so that all existing entries for it are no longer returned (they are left to expire). This allows writes that
+//affect many entries, e.g. adding a child condition that changes every retrieved form of its Collection, to invalidate cheaply.
+//Entries are tracked by the cache manager against the memory budget shared by all caches, with each object type reported as a separate cache.
+//Cached values are deep frozen and handed out without being copied. Callers must not modify objects returned from the Policy API models,
+//copying the parts they need to change instead.
+//When running as a cluster, invalidations and removals are also applied by the other workers.
+var Q = require('q');
+var NodeCache = require( "node-cache" );
+var appConfig = require('../../helpers/dataProcessingServiceConfigHelper.js');
+var cacheManager = require('../../libs/cacheManager.js');
+var logger = require('../../helpers/loggingHelper.js');
+var workerCluster = require('../../libs/workerCluster.js');
+
+module.exports = {
+  del: del,
+  get: get,
+  getGeneration: getGeneration,
+  getStatistics: getStatistics,
+  invalidate: invalidate,
+  invalidateAfter: invalidateAfter,
+  objectTypes: {
+    COLLECTION: 'collection',
+    COLLECTION_SEQUENCE: 'collection_sequence',
+    CONDITION: 'condition',
+    POLICY: 'policy',
+    POLICY_TYPE: 'policy_type',
+    WORKFLOW: 'workflow'
+  },
+  retrieve: retrieve,
+  set: set
+};
+
+var policyApiCache = new NodeCache({
+  stdTTL: appConfig.cacheDuration,
+  useClones: false
+});
+
+//cache manager registrations, keyed on object type
+var managedCaches = {};
+var evictEntry = function(cacheKey){
+  policyApiCache.del(cacheKey);
+};
+for(var objectTypeName of Object.keys(module.exports.objectTypes)){
+  var objectType = module.exports.objectTypes[objectTypeName];
+  managedCaches[objectType] = cacheManager.register('policyApi.' + objectType, evictEntry);
+}
+
+//the object type is the first part of every cache key
+var getManagedCacheForKey = function(cacheKey){
+  return managedCaches[cacheKey.substring(0, cacheKey.indexOf(':'))];
+};
+var onEntryRemoved = function(cacheKey){
+  getManagedCacheForKey(cacheKey).removed(cacheKey);
+};
+policyApiCache.on('del', onEntryRemoved);
+policyApiCache.on('expired', onEntryRemoved);
+
+//current generation for each project and object type, keyed on project ID and object type
+var generations = {};
+
+var buildGenerationKey = function(projectId, objectType){
+  return projectId + ':' + objectType;
+};
+
+var buildCacheKey = function(projectId, objectType, generation, key){
+  return objectType + ':' + projectId + ':' + generation + ':' + key;
+};
+
+//freezes the value passed and all plain objects and arrays reachable from it. Other objects (e.g. BigNumber values) are left as they are.
+var deepFreeze = function(value){
+  if(value===null || typeof(value)!=='object' || Object.isFrozen(value)){
+    return value;
+  }
+  var prototype = Object.getPrototypeOf(value);
+  if(!Array.isArray(value) && prototype!==Object.prototype && prototype!==null){
+    return value;
+  }
+  Object.freeze(value);
+  for(var propertyName of Object.keys(value)){
+    deepFreeze(value[propertyName]);
+  }
+  return value;
+};
+
+//returns the current generation for the project and object type. Pass this to 'set' when caching the result of a retrieve that was
+//started before the value is set so that the result is not cached if the object type was invalidated while the retrieve was in progress.
+function getGeneration(projectId, objectType){
+  var generation = generations[buildGenerationKey(projectId, objectType)];
+  return generation === undefined ? 0 : generation;
+}
+
+//returns the cached value for the key or undefined if there is no entry.
+function get(projectId, objectType, key){
+  var cacheKey = buildCacheKey(projectId, objectType, getGeneration(projectId, objectType), key);
+  var value = policyApiCache.get(cacheKey);
+  managedCaches[objectType].read(cacheKey, value!==undefined);
+  return value;
+}
+
+//caches a value against the key, freezing it. If a generation is passed and the object type has been invalidated since that generation then the value is not cached.
+function set(projectId, objectType, key, value, generation){
+  //always freezing so that callers see the same behaviour whether or not the value ends up cached
+  deepFreeze(value);
+  var currentGeneration = getGeneration(projectId, objectType);
+  if(generation!==undefined && generation!==currentGeneration){
+    logger.debug(function(){return "Not caching "+objectType+" with key: "+key+" as it was invalidated during retrieval.";});
+    return;
+  }
+  var cacheKey = buildCacheKey(projectId, objectType, currentGeneration, key);
+  policyApiCache.set(cacheKey, value);
+  if(!managedCaches[objectType].added(cacheKey, value)){
+    logger.debug(function(){return "Not caching "+objectType+" with key: "+key+" as it is larger than the cache budget.";});
+  }
+}
+
+var deleteEntry = function(projectId, objectType, key){
+  policyApiCache.del(buildCacheKey(projectId, objectType, getGeneration(projectId, objectType), key));
+};
+
+var invalidateObjectTypes = function(projectId, objectTypes){
+  for(var objectType of objectTypes){
+    var generationKey = buildGenerationKey(projectId, objectType);
+    generations[generationKey] = getGeneration(projectId, objectType) + 1;
+  }
+};
+
+workerCluster.onBroadcast('policyApiCache', function(message){
+  if(message.objectTypes!==undefined){
+    invalidateObjectTypes(message.projectId, message.objectTypes);
+  }
+  else {
+    deleteEntry(message.projectId, message.objectType, message.key);
+  }
+});
+
+//removes the entry for the key.
+function del(projectId, objectType, key){
+  deleteEntry(projectId, objectType, key);
+  workerCluster.broadcast('policyApiCache', {projectId: projectId, objectType: objectType, key: key});
+}
+
+//invalidates all cached entries for the object types passed on a project.
+function invalidate(projectId, objectTypes){
+  invalidateObjectTypes(projectId, objectTypes);
+  workerCluster.broadcast('policyApiCache', {projectId: projectId, objectTypes: objectTypes});
+}
+
+//invalidates the object types passed on a project once the promise passed completes, whether it succeeds or fails (a failed write may
+//still have been applied). Returns a promise that resolves or rejects with the outcome of the promise passed, after the invalidation.
+function invalidateAfter(writePromise, projectId, objectTypes){
+  return writePromise.then(function(result){
+    invalidate(projectId, objectTypes);
+    return result;
+  }, function(errorResponse){
+    invalidate(projectId, objectTypes);
+    throw errorResponse;
+  });
+}
+
+//returns a promise resolving with the cached value for the key if there is one, otherwise calls the retrieve function passed, which
+//should return a promise, and caches the result it resolves with. Null and undefined results are not cached.
+function retrieve(projectId, objectType, key, retrieveFunction){
+  var cachedValue = get(projectId, objectType, key);
+  if(cachedValue!==undefined){
+    return Q(cachedValue);
+  }
+  var generation = getGeneration(projectId, objectType);
+  return retrieveFunction()
+  .then(function(result){
+    if(result!==null && result!==undefined){
+      set(projectId, objectType, key, result, generation);
+    }
+    return result;
+  });
+}
+
+//returns the NodeCache statistics (hits, misses, number of keys) for the cache. Per object type sizes and hit ratios are available from the cache manager.
+function getStatistics(){
+  return policyApiCache.getStats();
+}
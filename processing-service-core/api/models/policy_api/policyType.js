@@ -15,9 +15,8 @@
  */
 //methods for interacting with Policy Types via Policy API
 var Q = require('q');
-var NodeCache = require( "node-cache" );
-var appConfig = require('../../helpers/dataProcessingServiceConfigHelper.js');
 var policyHttpHelper = require('../../helpers/policyHttpHelper.js');
+var policyApiCache = require('./policyApiCache.js');
 var promiseHelper = require('../../helpers/httpPromiseHelper.js');
 var pagingHelper = require('../../helpers/pagingHelper.js');
 var apiErrorFactory = require('../errors/apiErrorFactory.js');
@@ -34,14 +33,9 @@ module.exports = {
 
 var defaultNoMatchMessage = "Unable to find Policy Type with ID: ";
 
-//setting up caches
-var policyTypeCache = new NodeCache({
-  stdTTL: appConfig.cacheDuration
-});
-
-var buildCacheKey = function(projectId, typeId){
-  return projectId + typeId;
-};
+//Policy Types are cached in the shared Policy API cache. Sequence details may include Policy Types so writes also invalidate cached Sequences.
+var cacheType = policyApiCache.objectTypes.POLICY_TYPE;
+var invalidatedOnWrite = [policyApiCache.objectTypes.COLLECTION_SEQUENCE];
 
 //returns a params object with common parameters for Policy Type. Takes in a project ID and uses that in the params.
 var getDefaultParams = function(projectId){
@@ -61,11 +55,12 @@ function create(projectId, policyType){
     definition: policyType.definition,
     short_name: policyType.internal_name
   };
-  var createPromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/create", createPolicyTypeParams);
-  createPromise.then(function(result){
-    policyTypeCache.set(buildCacheKey(projectId, result.id), result);
+  var createPromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/create", createPolicyTypeParams)
+  .then(function(result){
+    policyApiCache.set(projectId, cacheType, result.id, result);
+    return result;
   });
-  return createPromise;
+  return policyApiCache.invalidateAfter(createPromise, projectId, invalidatedOnWrite);
 }
 
 function update(projectId, policyType){
@@ -78,26 +73,31 @@ function update(projectId, policyType){
     definition: policyType.definition,
     short_name: policyType.internal_name
   };
-  var updatePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/update", updatePolicyTypeParams);
-  updatePromise.then(function(result){
-    policyTypeCache.set(buildCacheKey(projectId, result.id), result);
+  //a failed update may still have been applied so the cached Policy Type is removed
+  var updatePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/update", updatePolicyTypeParams)
+  .then(function(result){
+    policyApiCache.set(projectId, cacheType, result.id, result);
+    return result;
+  }, function(errorResponse){
+    policyApiCache.del(projectId, cacheType, policyType.id);
+    throw errorResponse;
   });
-  return updatePromise;
+  return policyApiCache.invalidateAfter(updatePromise, projectId, invalidatedOnWrite);
 }
 
 function deleteType(projectId, policyTypeId){
   var deletePolicyTypeParams = getDefaultParams(projectId);
   deletePolicyTypeParams.id = policyTypeId;
-  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyTypeParams);
-  deletePromise.then(function(result){
-    policyTypeCache.del(buildCacheKey(projectId, policyTypeId), result);
+  var deletePromise = policyHttpHelper.genericPolicyAPIPostItemRequest("policy/delete", deletePolicyTypeParams)
+  .fin(function(){
+    policyApiCache.del(projectId, cacheType, policyTypeId);
   });
-  return deletePromise;
+  return policyApiCache.invalidateAfter(deletePromise, projectId, invalidatedOnWrite);
 }
 
 function get(projectId, policyTypeId){
   //if this type is already in the cache then return it (wrapped in a promise)
-  var cachedType = policyTypeCache.get(buildCacheKey(projectId, policyTypeId));
+  var cachedType = policyApiCache.get(projectId, cacheType, policyTypeId);
   if(cachedType!==undefined){
     return Q(cachedType);
   }
@@ -107,7 +107,7 @@ function get(projectId, policyTypeId){
   
   var getTypePromise = policyHttpHelper.genericPolicyAPIGetItemRequest("policy/retrieve", getPolicyTypeParams);
   getTypePromise.then(function(returnedPolicyType){
-    policyTypeCache.set(buildCacheKey(projectId, policyTypeId), returnedPolicyType);
+    policyApiCache.set(projectId, cacheType, policyTypeId, returnedPolicyType);
   });
   return getTypePromise;
 }
@@ -156,7 +156,7 @@ function getTypes(projectId, pageNum, pageSize){
   getTypesPromise.then(function(returnedPolicyTypes){
     //add these retrieved entries to the cache
     for(var returnedType of returnedPolicyTypes.results){
-      policyTypeCache.set(buildCacheKey(projectId, returnedType.id), returnedType);
+      policyApiCache.set(projectId, cacheType, returnedType.id, returnedType);
     }
   });  
   return getTypesPromise;
@@ -170,7 +170,7 @@ function getTypesByIds(projectId, params){
   
   //see if we have any of these Policy Types already in the cache to avoid requesting them again
   for(var typeId of params.ids){
-    var typeFromCache = policyTypeCache.get(buildCacheKey(projectId, typeId));
+    var typeFromCache = policyApiCache.get(projectId, cacheType, typeId);
     if(typeFromCache===undefined){
       idsToRequest.push(typeId);
     }
@@ -192,7 +192,7 @@ function getTypesByIds(projectId, params){
   .then(function(returnedTypes){
     //add these retrieved entries to the cache
     for(var returnedType of returnedTypes.results){
-      policyTypeCache.set(buildCacheKey(projectId, returnedType.id), returnedType);
+      policyApiCache.set(projectId, cacheType, returnedType.id, returnedType);
     }
     //add those that were already in the cache to the results
     returnedTypes.totalhits += typesFromCache.length;
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//index of the Processing Rules (Collection Sequences) on each Workflow, keyed on project and Workflow ID, holding the priority (entry order)
+//of each Rule so that checking whether a Rule is on a Workflow does not require the Workflow and all of its sequence entries.
+//A Workflow is indexed when it is read and the index is then kept current by the Workflow model as entries are inserted, removed and
+//reordered. To avoid indexing a Workflow read from before a write, a Workflow is only indexed if no write to it was in progress or has
+//completed since the read started. A failed write, or a write that may have changed the entries in a way the index was not told about,
+//removes the Workflow from the index. Indexed Workflows expire after the cache duration, as retrieved Workflows do, so that changes made
+//other than through this service are picked up. When running as a cluster, each completed write also removes the Workflow from the index
+//of the other workers. The writes to a Workflow are only tracked while it is indexed or being written to, reads of Workflows that are not
+//tracked are compared against the last change to any Workflow that stopped being tracked.
+var NodeCache = require('node-cache');
+var appConfig = require('../../helpers/dataProcessingServiceConfigHelper.js');
+var cacheManager = require('../../libs/cacheManager.js');
+var workerCluster = require('../../libs/workerCluster.js');
+
+module.exports = {
+  entryInserted: entryInserted,
+  entryOrderUpdated: entryOrderUpdated,
+  entryRemoved: entryRemoved,
+  getRulePriority: getRulePriority,
+  indexWorkflow: indexWorkflow,
+  startRead: startRead,
+  trackWrite: trackWrite
+};
+
+//each entry holds the priorities of the Rules on a Workflow, keyed on Rule ID
+var indexedWorkflows = new NodeCache({
+  stdTTL: appConfig.cacheDuration,
+  useClones: false
+});
+var managedCache = cacheManager.register('ruleMembershipIndex', function(indexKey){
+  indexedWorkflows.del(indexKey);
+});
+
+//number of writes in progress and the number of the last change made to each Workflow that is indexed or being written to, keyed the
+//same as the index. Changes are numbered in the order they are made, across all Workflows.
+var writeStates = new Map();
+var lastChangeNumber = 0;
+//the number of the last change made to any Workflow whose write state has been removed
+var lastForgottenChangeNumber = 0;
+
+var buildIndexKey = function(project_id, workflowId){
+  return project_id + ':' + workflowId;
+};
+
+var getWriteState = function(indexKey){
+  var writeState = writeStates.get(indexKey);
+  if(writeState===undefined){
+    writeState = {
+      lastChange: 0,
+      writesInProgress: 0
+    };
+    writeStates.set(indexKey, writeState);
+  }
+  return writeState;
+};
+
+//records a change to the Workflow, so that reads started before it are not indexed
+var recordChange = function(indexKey){
+  getWriteState(indexKey).lastChange = ++lastChangeNumber;
+};
+
+//returns the indexed priorities for the Workflow without recording a read
+var peekPriorities = function(indexKey){
+  return indexedWorkflows.get(indexKey);
+};
+
+//removes the write state of the Workflow if it is no longer needed, when no write is in progress and the Workflow is not indexed. Reads
+//started before its last change are then prevented from indexing by the last forgotten change number.
+var releaseWriteState = function(indexKey){
+  var writeState = writeStates.get(indexKey);
+  if(writeState===undefined || writeState.writesInProgress!==0 || peekPriorities(indexKey)!==undefined){
+    return;
+  }
+  writeStates.delete(indexKey);
+  lastForgottenChangeNumber = Math.max(lastForgottenChangeNumber, writeState.lastChange);
+};
+
+var onEntryRemoved = function(indexKey){
+  managedCache.removed(indexKey);
+  releaseWriteState(indexKey);
+};
+indexedWorkflows.on('del', onEntryRemoved);
+indexedWorkflows.on('expired', onEntryRemoved);
+
+//a write by another worker is treated as a change that the index was not told about
+workerCluster.onBroadcast('ruleMembershipIndex', function(message){
+  recordChange(message.indexKey);
+  indexedWorkflows.del(message.indexKey);
+  releaseWriteState(message.indexKey);
+});
+
+//records a change to the priorities of an indexed Workflow so that the size tracked for it stays current
+var prioritiesChanged = function(indexKey, priorities){
+  managedCache.added(indexKey, priorities);
+};
+
+//returns the priority of the Rule on the Workflow, null if the Workflow is indexed and the Rule is not on it or undefined if the Workflow
+//is not indexed.
+function getRulePriority(project_id, workflowId, ruleId){
+  var indexKey = buildIndexKey(project_id, workflowId);
+  var priorities = indexedWorkflows.get(indexKey);
+  managedCache.read(indexKey, priorities!==undefined);
+  if(priorities===undefined){
+    return undefined;
+  }
+  var priority = priorities[ruleId];
+  return priority===undefined ? null : priority;
+}
+
+//returns a token to pass to 'indexWorkflow' with the Workflow once read. Should be called before the read starts.
+function startRead(project_id, workflowId){
+  return {
+    indexKey: buildIndexKey(project_id, workflowId),
+    startedAfterChange: lastChangeNumber
+  };
+}
+
+//indexes the Rules on the Workflow passed if it is not already indexed and the Workflow has not been written to since the read started.
+function indexWorkflow(readToken, workflow){
+  var writeState = writeStates.get(readToken.indexKey);
+  if(writeState===undefined){
+    if(lastForgottenChangeNumber > readToken.startedAfterChange){
+      return;
+    }
+  }
+  else if(writeState.writesInProgress!==0 || writeState.lastChange > readToken.startedAfterChange){
+    return;
+  }
+  if(peekPriorities(readToken.indexKey)!==undefined){
+    return;
+  }
+  var priorities = Object.create(null);
+  if(workflow!==null && workflow!==undefined && workflow.additional!==null && workflow.additional!==undefined &&
+    Array.isArray(workflow.additional.sequence_entries)){
+    for(var entry of workflow.additional.sequence_entries){
+      priorities[entry.collection_sequence_id] = entry.order;
+    }
+  }
+  indexedWorkflows.set(readToken.indexKey, priorities);
+  managedCache.added(readToken.indexKey, priorities);
+}
+
+//records that an entry for the Rule was inserted into the Workflow with the order passed, entries with the same or a greater order having
+//been moved down one.
+function entryInserted(project_id, workflowId, ruleId, order, shiftedExisting){
+  var indexKey = buildIndexKey(project_id, workflowId);
+  recordChange(indexKey);
+  var priorities = peekPriorities(indexKey);
+  if(priorities===undefined){
+    releaseWriteState(indexKey);
+    return;
+  }
+  if(shiftedExisting){
+    for(var indexedRuleId of Object.keys(priorities)){
+      if(priorities[indexedRuleId] >= order){
+        priorities[indexedRuleId]++;
+      }
+    }
+  }
+  priorities[ruleId] = order;
+  prioritiesChanged(indexKey, priorities);
+}
+
+//records that the entry for the Rule was removed from the Workflow.
+function entryRemoved(project_id, workflowId, ruleId){
+  var indexKey = buildIndexKey(project_id, workflowId);
+  recordChange(indexKey);
+  var priorities = peekPriorities(indexKey);
+  if(priorities===undefined){
+    releaseWriteState(indexKey);
+    return;
+  }
+  delete priorities[ruleId];
+  prioritiesChanged(indexKey, priorities);
+}
+
+//records that the order of the entry for the Rule on the Workflow was changed.
+function entryOrderUpdated(project_id, workflowId, ruleId, order){
+  var indexKey = buildIndexKey(project_id, workflowId);
+  recordChange(indexKey);
+  var priorities = peekPriorities(indexKey);
+  if(priorities===undefined || priorities[ruleId]===undefined){
+    releaseWriteState(indexKey);
+    return;
+  }
+  priorities[ruleId] = order;
+  prioritiesChanged(indexKey, priorities);
+}
+
+//tracks a write to the Workflow, which should have been started immediately before this call, so that Workflows read while it is in
+//progress are not indexed. The Workflow is removed from the index if the write fails or, when it succeeds, if 'entriesMaintained' is not
+//true (the write may have changed the entries without the index being told). Returns a promise resolved or rejected with the outcome of the write.
+function trackWrite(project_id, workflowId, writePromise, entriesMaintained){
+  var indexKey = buildIndexKey(project_id, workflowId);
+  var writeState = getWriteState(indexKey);
+  writeState.writesInProgress++;
+  var writeCompleted = function(succeeded){
+    writeState.writesInProgress--;
+    writeState.lastChange = ++lastChangeNumber;
+    if(!succeeded || entriesMaintained!==true){
+      indexedWorkflows.del(indexKey);
+    }
+    workerCluster.broadcast('ruleMembershipIndex', {indexKey: indexKey});
+    releaseWriteState(indexKey);
+  };
+  return writePromise.then(function(result){
+    writeCompleted(true);
+    return result;
+  }, function(errorResponse){
+    writeCompleted(false);
+    throw errorResponse;
+  });
+}
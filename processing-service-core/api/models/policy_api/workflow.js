@@ -16,6 +16,8 @@
 var Q = require('q');
 var logger = require('../../helpers/loggingHelper.js');
 var policyApiHelper = require('../../helpers/policyApiHelpers.js');
+var policyApiCache = require('./policyApiCache.js');
+var ruleMembershipIndex = require('./ruleMembershipIndex.js');
 var promiseHelper = require('../../helpers/httpPromiseHelper.js');
 var pagingHelper = require('../../helpers/pagingHelper.js');
 var apiErrorFactory = require('../errors/apiErrorFactory.js');
@@ -27,7 +29,11 @@ module.exports = {
   getWorkflowEntriesByWorkflowId: getWorkflowEntriesByWorkflowId,
   getWorkflowEntriesByWorkflowIdAndCollectionSequenceId: getWorkflowEntriesByWorkflowIdAndCollectionSequenceId,
   getWorkflows: getWorkflows,
+  getIndexedRulePriority: getIndexedRulePriority,
+  getRulePriorityOnWorkflow: getRulePriorityOnWorkflow,
   getWorkflowById: getWorkflowById,
+  getWorkflowForUpdate: getWorkflowForUpdate,
+  getWorkflowForUpdateById: getWorkflowForUpdateById,
   getWorkflowsWithCollectionSequenceId: getWorkflowsWithCollectionSequenceId,
   insertCollectionSequenceIntoWorkflowEntries: insertCollectionSequenceIntoWorkflowEntries,
   removeAllSequencesFromWorkflowEntries: removeAllSequencesFromWorkflowEntries,
@@ -38,6 +44,9 @@ module.exports = {
   validateWorkflowExists: validateWorkflowExists
 };
 
+//object types whose cached entries may be changed by a write to a Workflow
+var invalidatedOnWrite = [policyApiCache.objectTypes.WORKFLOW];
+
 //returns a params object with common parameters for a Workflow. Takes in a project ID and uses that in the params.
 var getDefaultWorkflowParams = function(projectId){
   return {
@@ -61,10 +70,12 @@ function create(project_id, newWorkflow){
   createParams.notes = newWorkflow.notes;
   createParams.name = newWorkflow.name;
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/create", createParams);
+  return policyApiCache.invalidateAfter(policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/create", createParams),
+    project_id, invalidatedOnWrite);
 }
 
 //Updates a Workflow using the specified definition object passed. Returns a promise that resolves with the updated Workflow.
+//Any changes to the sequence entries passed should have been made using the entry functions below so that the Rule membership index is current.
 function update(project_id, updatedWorkflow){
   var updateParams = getDefaultWorkflowParams(project_id);
   updateParams.additional = updatedWorkflow.additional;
@@ -73,7 +84,8 @@ function update(project_id, updatedWorkflow){
   updateParams.name = updatedWorkflow.name;
   updateParams.notes = updatedWorkflow.notes;
     
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/update", updateParams);
+  return trackWorkflowWrite(project_id, updatedWorkflow,
+    policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/update", updateParams));
 }
 
 //Deletes a Workflow with the specified ID. Returns a promise.
@@ -81,11 +93,71 @@ function deleteWorkflowById(project_id, workflowId){
   var deleteParams = getDefaultWorkflowParams(project_id);
   deleteParams.id = workflowId;
   
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/delete", deleteParams);
+  return policyApiCache.invalidateAfter(ruleMembershipIndex.trackWrite(project_id, workflowId,
+    policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/delete", deleteParams), false),
+    project_id, invalidatedOnWrite);
 }
 
-//Returns a promise to retrieve a Workflow by it's ID. Returns a promise.
+//tracks a write of the Workflow passed for the Rule membership index and invalidates cached Workflows once it completes. The index is kept
+//if the sequence entries were passed, as they are maintained by the entry functions below, otherwise the write may have changed them.
+var trackWorkflowWrite = function(project_id, workflow, writePromise){
+  var entriesMaintained = workflow.additional!==null && workflow.additional!==undefined &&
+    Array.isArray(workflow.additional.sequence_entries);
+  return policyApiCache.invalidateAfter(ruleMembershipIndex.trackWrite(project_id, workflow.id, writePromise, entriesMaintained),
+    project_id, invalidatedOnWrite);
+};
+
+//Returns a promise to retrieve a Workflow by it's ID. Returns a promise. The Rules on the Workflow are added to the Rule membership index.
 function getWorkflowById(project_id, workflowId){
+  var indexReadToken = ruleMembershipIndex.startRead(project_id, workflowId);
+  return policyApiCache.retrieve(project_id, policyApiCache.objectTypes.WORKFLOW, workflowId, function(){
+    return retrieveWorkflowById(project_id, workflowId);
+  })
+  .then(function(retrievedWorkflow){
+    ruleMembershipIndex.indexWorkflow(indexReadToken, retrievedWorkflow);
+    return retrievedWorkflow;
+  });
+}
+
+//returns the priority of the Collection Sequence on the Workflow from the Rule membership index, without contacting Policy API. Returns
+//null if the Workflow is indexed and the Collection Sequence is not on it, undefined if the Workflow is not indexed (it is indexed when read).
+function getIndexedRulePriority(project_id, workflowId, collectionSequenceId){
+  return ruleMembershipIndex.getRulePriority(project_id, workflowId, collectionSequenceId);
+}
+
+//returns the priority of the Collection Sequence on the retrieved Workflow passed or undefined if it is not on the Workflow. Uses the Rule
+//membership index where possible rather than searching the sequence entries of the Workflow.
+function getRulePriorityOnWorkflow(project_id, workflow, collectionSequenceId){
+  var indexedPriority = getIndexedRulePriority(project_id, workflow.id, collectionSequenceId);
+  if(indexedPriority!==undefined){
+    return indexedPriority===null ? undefined : indexedPriority;
+  }
+  if(workflow.additional===null || workflow.additional===undefined || !Array.isArray(workflow.additional.sequence_entries)){
+    return undefined;
+  }
+  for(var entry of workflow.additional.sequence_entries){
+    //compared as strings as the index is, IDs from requests and from Policy API may differ in type
+    if(String(entry.collection_sequence_id)===String(collectionSequenceId)){
+      return entry.order;
+    }
+  }
+  return undefined;
+}
+
+//Returns a promise resolving with a copy of the Workflow with the ID passed, for a read-modify-write of the Workflow using the workflow entry
+//functions below and 'updateWorkflow'. The Workflow is read from Policy API rather than the cache, and not joined to a read already in flight,
+//so that Rules added or removed by another worker or client since the Workflow was cached are not reverted by the update.
+function getWorkflowForUpdateById(project_id, workflowId){
+  var indexReadToken = ruleMembershipIndex.startRead(project_id, workflowId);
+  return mapWorkflowNotFound(retrieveWorkflowById(project_id, workflowId, {noCoalesce: true}), workflowId)
+  .then(function(retrievedWorkflow){
+    ruleMembershipIndex.indexWorkflow(indexReadToken, retrievedWorkflow);
+    return getWorkflowForUpdate(retrievedWorkflow);
+  });
+}
+
+//retrieves a Workflow by it's ID from Policy API. Returns a promise. 'getOptions' is optional and passed on to the GET request.
+function retrieveWorkflowById(project_id, workflowId, getOptions){
   var deferredGet = Q.defer();
   var getParams = getDefaultWorkflowParams(project_id);
   getParams.id = workflowId;
@@ -105,7 +177,7 @@ function getWorkflowById(project_id, workflowId){
   };
   
   policyApiHelper.HttpHelper.policyAPIGetRequest("workflow/retrieve", getParams, 
-    promiseHelper.handlePotentialSuccess(deferredGet, workflowExtract), promiseHelper.handleFailure(deferredGet));
+    promiseHelper.handlePotentialSuccess(deferredGet, workflowExtract), promiseHelper.handleFailure(deferredGet), getOptions);
   return deferredGet.promise;
 }
 
@@ -176,7 +248,8 @@ function getWorkflowEntries(project_id, additional, pageNum, pageSize){
   return policyApiHelper.HttpHelper.genericPolicyAPIGetItemsRequest("workflow/retrieve", getWorkflowEntriesParams);
 }
 
-//updates a Workflow. Returns a promise.
+//updates a Workflow. Returns a promise. Any changes to the sequence entries on the Workflow should have been made using the entry functions
+//below so that the Rule membership index is current.
 function updateWorkflow(project_id, updatedWorkflow){
   var deferredUpdate = Q.defer();
   var updateParams = getDefaultWorkflowParams(project_id);
@@ -186,14 +259,16 @@ function updateWorkflow(project_id, updatedWorkflow){
   updateParams.name = updatedWorkflow.name;  
   
   //call API to add collection sequence to workflow.
-  return policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/update", updateParams);
+  return trackWorkflowWrite(project_id, updatedWorkflow,
+    policyApiHelper.HttpHelper.genericPolicyAPIPostItemRequest("workflow/update", updateParams));
 }
 
-//adds an entry to the specified workflow for the given collection sequence ID. Returns the inserted entry.
+//adds an entry to the specified workflow for the given collection sequence ID. Returns the inserted entry. The Workflow should then be updated.
+//project_id - the project of the workflow
 //workflow - the workflow object to update with the new entry
 //collectionSequenceId - Id of the collection sequence to add as an entry
 //order - Optional. The order to set on the entry. If none provided then the order will be set to the highest order of the entries on the Workflow + 1.
-function insertCollectionSequenceIntoWorkflowEntries(workflow, collectionSequenceId, order){
+function insertCollectionSequenceIntoWorkflowEntries(project_id, workflow, collectionSequenceId, order){
   var newEntry = {
     collection_sequence_id: collectionSequenceId,
     sequence_workflow_id: workflow.id
@@ -220,13 +295,16 @@ function insertCollectionSequenceIntoWorkflowEntries(workflow, collectionSequenc
   }
   //add to the list of entries
   workflow.additional.sequence_entries.push(newEntry);
+  ruleMembershipIndex.entryInserted(project_id, workflow.id, collectionSequenceId, newEntry.order, order!==null && order!==undefined);
   return newEntry;
 }
 
 //removes an entry from specified workflow object matching given collection sequence ID. Returns the removed entry or null if no matching entry found.
+//The Workflow should then be updated.
+//project_id - the project of the workflow
 //workflow - the workflow object to update.
 //collectionSequenceId - the Id of the collection sequence on the entry to be removed.
-function removeCollectionSequenceFromWorkflowEntries(workflow, collectionSequenceId){
+function removeCollectionSequenceFromWorkflowEntries(project_id, workflow, collectionSequenceId){
   //find the entry
   
   var removedEntry = null;
@@ -234,6 +312,7 @@ function removeCollectionSequenceFromWorkflowEntries(workflow, collectionSequenc
     if(workflow.additional.sequence_entries[index].collection_sequence_id===collectionSequenceId){
       //remove the entry at this position from the entries array
       removedEntry = workflow.additional.sequence_entries.splice(index, 1);
+      ruleMembershipIndex.entryRemoved(project_id, workflow.id, collectionSequenceId);
       break;
     }
   }
@@ -241,12 +320,27 @@ function removeCollectionSequenceFromWorkflowEntries(workflow, collectionSequenc
 }
 
 //updates the 'order' property of the entry on the workflow object passed, identified by the collection sequence ID argument passed.
-function updateOrderOnWorkflowEntries(workflow, colSeqId, newOrder){
+//The Workflow should then be updated.
+function updateOrderOnWorkflowEntries(project_id, workflow, colSeqId, newOrder){
   for(var entry of workflow.additional.sequence_entries){
     if(entry.collection_sequence_id===colSeqId){
       entry.order = newOrder;
     }
   }
+  ruleMembershipIndex.entryOrderUpdated(project_id, workflow.id, colSeqId, newOrder);
+}
+
+//returns a copy of the retrieved workflow passed that can be modified by the workflow entry methods above. Workflows returned by this model
+//are shared and frozen so must be copied before their entries are changed.
+function getWorkflowForUpdate(workflow){
+  var workflowCopy = Object.assign({}, workflow);
+  workflowCopy.additional = Object.assign({}, workflow.additional);
+  if(Array.isArray(workflow.additional.sequence_entries)){
+    workflowCopy.additional.sequence_entries = workflow.additional.sequence_entries.map(function(entry){
+      return Object.assign({}, entry);
+    });
+  }
+  return workflowCopy;
 }
 
 //removes all entries from a workflow object.
@@ -254,21 +348,19 @@ function removeAllSequencesFromWorkflowEntries(workflow){
   workflow.additional.sequence_entries = [];
 }
 
-//Retuns a promise to check that a given Policy Workflow exists. Resolved result will be the retrieved Policy Workflow.
-function validateWorkflowExists(projectId, workflowId){
-  var validatedWorkflowPromise = Q.defer();
-  getWorkflowById(projectId, workflowId)
-  .then(function(retrievedWorkflow){
-    validatedWorkflowPromise.resolve(retrievedWorkflow);
-  })
-  .fail(function(errorResponse){
+//returns a promise that rejects with a not found error if the retrieve of the Workflow passed failed because there is no Workflow with the ID
+//passed, otherwise resolving or rejecting with the outcome of the retrieve.
+var mapWorkflowNotFound = function(retrievePromise, workflowId){
+  return retrievePromise.fail(function(errorResponse){
     //throwing a more helpful error here if indication is that the Workflow ID was wrong.
     if(errorResponse.response && errorResponse.response.reason === "Could not find a match for the SequenceWorkflow requested."){
-      validatedWorkflowPromise.reject(apiErrorFactory.createNotFoundError("Unable to find Workflow with ID: "+workflowId));
+      throw apiErrorFactory.createNotFoundError("Unable to find Workflow with ID: "+workflowId);
     }
-    else{
-      validatedWorkflowPromise.reject(errorResponse);
-    }
-  }).done();
-  return validatedWorkflowPromise.promise;
+    throw errorResponse;
+  });
+};
+
+//Retuns a promise to check that a given Policy Workflow exists. Resolved result will be the retrieved Policy Workflow.
+function validateWorkflowExists(projectId, workflowId){
+  return mapWorkflowNotFound(getWorkflowById(projectId, workflowId), workflowId);
 }
\ No newline at end of file
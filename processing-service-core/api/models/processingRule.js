@@ -23,7 +23,6 @@ var actionModel = require('./action.js');
 var apiErrorFactory = require('./errors/apiErrorFactory.js');
 var httpHelper = require('../helpers/httpPromiseHelper.js');
 var policyToProcessingHelper = require('../helpers/policyApiToProcessingApiHelper.js');
-var ruleObjectsHelper = require('../helpers/processingObjectsHelper.js').rules;
 
 //Retrieves a list of rules on a Workflow. Returns a promise.
 module.exports.getRules = function(getRulesParams, responseToWriteTo, errorCallback){
@@ -41,21 +40,26 @@ module.exports.getRules = function(getRulesParams, responseToWriteTo, errorCallb
   
   getEntriesPromise.then(function(workflowEntries){
     logger.debug("Retrieved workflow entries to build processing rules. Workflow ID: "+getRulesParams.workflowId);
-    //an array of promises will be used to handle when all the col seq. retrieves have completed.
-      var colSeqRetrievePromises = [];
-      totalHits = workflowEntries.totalhits;
-      if(workflowEntries.results===null || workflowEntries.results===undefined || workflowEntries.results.length ===0 ){
-        logger.debug("No entries present on the workflow ID: "+getRulesParams.workflowId);
-        return colSeqRetrievePromises;
-      }      
-      for(var sequenceEntry of workflowEntries.results){
-        var colSeqId = sequenceEntry.additional.collection_sequence_id;        
-        colSeqRetrievePromises.push(colSeqModel.get(getRulesParams.project_id, colSeqId));
-        colSeqIdAndPriority[colSeqId] = sequenceEntry.additional.order;
+    totalHits = workflowEntries.totalhits;
+    if(workflowEntries.results===null || workflowEntries.results===undefined || workflowEntries.results.length ===0 ){
+      logger.debug("No entries present on the workflow ID: "+getRulesParams.workflowId);
+      return [];
+    }
+    //retrieving all the col. seqs. on the page together rather than one request per entry
+    var colSeqIds = [];
+    for(var sequenceEntry of workflowEntries.results){
+      var colSeqId = sequenceEntry.additional.collection_sequence_id;
+      colSeqIds.push(colSeqId);
+      colSeqIdAndPriority[colSeqId] = sequenceEntry.additional.order;
+    }
+    return colSeqModel.getByIds(getRulesParams.project_id, colSeqIds)
+    .then(function(retrievedColSeqs){
+      if(retrievedColSeqs.results.length!==colSeqIds.length){
+        logger.warn("Some entries on the workflow ID: "+getRulesParams.workflowId+" refer to Rules that could not be retrieved.");
       }
-      return colSeqRetrievePromises;
+      return retrievedColSeqs.results;
+    });
   })
-  .all()
   .then(function(colSeqs){
     //if no rules were returned there is a chance the workflow id passed doesn't exist. Validate that the workflow exists (we didn't do this at the start as it would return all the sequence entry information also without any paging and in a case where the Workflow exists we can avoid this performance impact)
     if(colSeqs.length===0){
@@ -98,18 +102,17 @@ module.exports.createRule = function(createRuleParams){
     throw new Error("Must pass an object of properties to use in creating the rule.");
   }
   
-  //retrieve the workflow to get its details so an update can be performed
+  //check the workflow exists before creating anything for the rule
   var validateWorkflowPromise = workflowModel.validateWorkflowExists(createRuleParams.project_id, createRuleParams.workflowId);
-  var workflow;
+  var newCollectionSequence;
   
   //hold the created rule to build up and return in response
   var createdRule = {};  
 
   var deferredCreateRule = Q.defer();
-  validateWorkflowPromise.then(function(retrievedWorkflow){
+  validateWorkflowPromise.then(function(){
     logger.debug("Verified that workflow exists when creating processing rule. ID: "+createRuleParams.workflowId);
-    workflow = retrievedWorkflow;
-    //having checked workflow exists and retrieved it, create a col seq. to represent the Rule.
+    //having checked workflow exists, create a col seq. to represent the Rule.
     var collectionSequenceToCreate = {
       name: createRuleParams.name,
       description: createRuleParams.description,
@@ -117,10 +120,15 @@ module.exports.createRule = function(createRuleParams){
     };
     return colSeqModel.create(createRuleParams.project_id, collectionSequenceToCreate);
   })
-  .then(function(newCollectionSequence){
+  .then(function(createdCollectionSequence){
     logger.debug("Created collection sequence to use in processing rule for workflow with ID: "+createRuleParams.workflowId);
+    newCollectionSequence = createdCollectionSequence;
+    //read the current workflow to add the entry to, so that rules added or removed since it was cached are not reverted
+    return workflowModel.getWorkflowForUpdateById(createRuleParams.project_id, createRuleParams.workflowId);
+  })
+  .then(function(workflow){
     //add the newly created collection sequence as an entry in the workflow
-    var newEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(workflow, newCollectionSequence.id, 
+    var newEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(createRuleParams.project_id, workflow, newCollectionSequence.id, 
       createRuleParams.priority);  
     createdRule = policyToProcessingHelper.buildRuleFromCollectionSequenceAndOrder(newCollectionSequence, newEntry.order);
     
@@ -157,16 +165,11 @@ module.exports.deleteRule = function(deleteRuleParams){
   
   var deferredDeleteRule = Q.defer();
   
-  //going to store the workflow the sequence is a part of for use after it is retrieved.
-  var workflow = null;
-  
   Q.all([validatedSequencePromise, validatedWorkflowPromise]).spread(function(retrievedSeq, workflowResult){
     logger.debug("Verified Workflow and Processing Rule exist before deleting.");
-    workflow = workflowResult;
     
-    //get priority from the Workflow result to verify that this processing rule is on the specified workflow (sequence_entries should be on the Workflow)
-    var rulesMap = ruleObjectsHelper.getRulePrioritiesFromPolicyWorkflow(workflow);
-    rulePriority = rulesMap[deleteRuleParams.id];
+    //get priority to verify that this processing rule is on the specified workflow
+    var rulePriority = workflowModel.getRulePriorityOnWorkflow(deleteRuleParams.project_id, workflowResult, deleteRuleParams.id);
     if(rulePriority===undefined){      
       throw apiErrorFactory.createNotFoundError("Processing Rule ID: "+ deleteRuleParams.id + " not found on Workflow with ID: "+deleteRuleParams.workflowId);
     }  
@@ -174,9 +177,13 @@ module.exports.deleteRule = function(deleteRuleParams){
     //delete any Actions that are under the Rule.    
     return actionModel.deleteActionsUsingFullSeq(deleteRuleParams.project_id, retrievedSeq);
   })
-  .then(function(){    
+  .then(function(){
+    //read the current workflow to remove the entry from, so that rules added or removed since it was cached are not reverted
+    return workflowModel.getWorkflowForUpdateById(deleteRuleParams.project_id, deleteRuleParams.workflowId);
+  })
+  .then(function(workflow){
     //remove collection sequence entry from the Workflow
-    workflowModel.removeCollectionSequenceFromWorkflowEntries(workflow, deleteRuleParams.id);
+    workflowModel.removeCollectionSequenceFromWorkflowEntries(deleteRuleParams.project_id, workflow, deleteRuleParams.id);
     return workflowModel.updateWorkflow(deleteRuleParams.project_id, workflow); 
   })
   .then(function(){
@@ -244,27 +251,29 @@ module.exports.updateRule = function(updateRuleParams){
   }
   
   var updatedRule = null;
-  var existingWorkflow = null;
   
   var deferredUpdateRule = Q.defer();
   validationModel.validateWorkflowAndSeqForRule(updateRuleParams)
   .then(function(validationResult){
     logger.debug('Validated that workflow and rule exist before updating rule with ID: '+updateRuleParams.id);
-    existingWorkflow = validationResult.workflow;
     var updateCollectionSequence = {
       id: updateRuleParams.id,
       name: updateRuleParams.name,
       description: updateRuleParams.description,
       enabled: updateRuleParams.enabled
     };
-    
-    return colSeqModel.update(updateRuleParams.project_id, updateCollectionSequence, colSeqModel.defaults.updateBehaviour.add);
+    //queued with any changes to the entries of the sequence so that the details and entries do not overwrite each other
+    return colSeqModel.updateDetails(updateRuleParams.project_id, updateCollectionSequence);
   })
   .then(function(updatedCollectionSequence){
     logger.debug('Collection sequence updated as part of updating rule with ID: '+updateRuleParams.id);
     updatedRule = policyToProcessingHelper.buildRuleFromCollectionSequence(updatedCollectionSequence);
+    //read the current workflow to reorder the entry on, so that rules added or removed since it was cached are not reverted
+    return workflowModel.getWorkflowForUpdateById(updateRuleParams.project_id, updateRuleParams.workflowId);
+  })
+  .then(function(existingWorkflow){
     //update the order field on workflow entry for this sequence using the priority passed
-    workflowModel.updateOrderOnWorkflowEntries(existingWorkflow, updateRuleParams.id, 
+    workflowModel.updateOrderOnWorkflowEntries(updateRuleParams.project_id, existingWorkflow, updateRuleParams.id, 
       updateRuleParams.priority);
       
     //use the additional information retrieved to update the Workflow
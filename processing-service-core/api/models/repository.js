@@ -17,8 +17,10 @@
 
 var Q = require('q');
 var logger = require('../helpers/loggingHelper.js');
+var configSetOutcomeHelper = require('../helpers/configSetOutcomeHelper.js');
 var repositoryConfigStoreModel = require("./db/repositoryConfigStore.js");
 var tenantConfigModel = require("./tenant.js");
+var effectiveConfigCache = require("./db/effectiveConfigCache.js");
 var apiErrorFactory = require('./errors/apiErrorFactory.js');
 var apiErrorTypes = require('./errors/apiErrorTypes.js');
 var ApiError = require('./errors/apiError.js');
@@ -29,6 +31,7 @@ module.exports = {
     setRepositoryConfigs: setRepositoryConfigs,
     deleteRepositoryConfig: deleteRepositoryConfig,
     deleteRepositoryConfigs: deleteRepositoryConfigs,
+    exportEffectiveRepositoryConfigs: exportEffectiveRepositoryConfigs,
     getEffectiveRepositoryConfig: getEffectiveRepositoryConfig,
     getEffectiveRepositoryConfigs: getEffectiveRepositoryConfigs,
     getRepositoryConfig: getRepositoryConfig,
@@ -77,19 +80,20 @@ function setRepositoryConfig(tenantId, repositoryId, key, value) {
  * @param {String} repositoryConfigs RepositoryConfigs The json string representation key-value pair map of custom repository 
  * configuration.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of create/update.
+ * All the configs are validated and written in a single statement. The promise is resolved with the outcome for each config, CREATED,
+ * UPDATED or NOT_FOUND where no matching global config exists for the key, the key not being written.
  **/
 function setRepositoryConfigs(tenantId, repositoryId, repositoryConfigs) {
     var repositoryConfig = Q.defer();
-    var promiseArray = [];
-
-    for (var i = 0; i < repositoryConfigs.length; i++) {
-        var config = repositoryConfigs[i];
-        promiseArray.push(repositoryConfigStoreModel.setRepositoryConfig(tenantId, repositoryId, config.key, config.value));
-    }
-    Q.all(promiseArray)
-        .then(function (results) {
-            logger.debug("Created repository specific config for tenant " + tenantId + " and repository " + repositoryId);
-            repositoryConfig.resolve();
+    repositoryConfigStoreModel.setRepositoryConfigs(tenantId, repositoryId, repositoryConfigs)
+        .then(function (setOutcomes) {
+            var notFoundKeys = configSetOutcomeHelper.getNotFoundKeys(setOutcomes);
+            if (notFoundKeys.length > 0) {
+                logger.debug("Failed to find the keys " + notFoundKeys.join(", ") + " with valid scope in the global config table for tenant "
+                    + tenantId + " and repository " + repositoryId);
+            }
+            logger.debug("Set repository specific configs for tenant " + tenantId + " and repository " + repositoryId);
+            repositoryConfig.resolve(setOutcomes);
         })
         .fail(function (errorResponse) {
             logger.debug("Unable to create tenant specific config for tenant " + tenantId + " and repository " + repositoryId);
@@ -136,19 +140,10 @@ function deleteRepositoryConfig(tenantId, repositoryId, key) {
  **/
 function deleteRepositoryConfigs(tenantId, repositoryId) {
     var repositoryConfig = Q.defer();
-    var deletionPromises = [];
-    repositoryConfigStoreModel.getRepositoryConfigs(tenantId, repositoryId)
-        .then(function (repositoryConfigs) {
-            for (var repositoryConfigsIndex = 0; repositoryConfigsIndex < repositoryConfigs.length; repositoryConfigsIndex++) {
-                var repositoryConfigEntry = repositoryConfigs[repositoryConfigsIndex];
-                deletionPromises.push(repositoryConfigStoreModel.deleteRepositoryConfig(tenantId, repositoryId,
-                    repositoryConfigEntry.key));
-            }
-            logger.debug("Successfully deleted repository specific config for tenant " + tenantId + " and repository " + repositoryId);
-            return deletionPromises;
-        })
-        .all()
-        .then(function () {
+    repositoryConfigStoreModel.deleteRepositoryConfigs(tenantId, repositoryId)
+        .then(function (deletedCount) {
+            logger.debug("Successfully deleted " + deletedCount + " repository specific configs for tenant " + tenantId + " and repository "
+                + repositoryId);
             repositoryConfig.resolve();
         })
         .fail(function (errorResponse) {
@@ -170,6 +165,10 @@ function deleteRepositoryConfigs(tenantId, repositoryId) {
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
 function getEffectiveRepositoryConfig(tenantId, repositoryId, key) {
+    var cachedConfig = effectiveConfigCache.getEffectiveConfig(tenantId, repositoryId, key);
+    if (cachedConfig !== undefined) {
+        return Q(cachedConfig);
+    }
     var repositoryConfig = Q.defer();
     var effectiveConfig = {};
     logger.debug("Retrieving effective repository config for tenant " + tenantId + ", and repository " + repositoryId
@@ -212,62 +211,87 @@ function getEffectiveRepositoryConfig(tenantId, repositoryId, key) {
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
 function getEffectiveRepositoryConfigs(tenantId, repositoryId) {
-
     var repositoryConfig = Q.defer();
-    var repositoryConfigCallComplete = Q.defer();
     logger.debug("Retrieving effective repository config for tenant " + tenantId + " and repository " + repositoryId);
-    var configurations = [];
-    repositoryConfigStoreModel.getRepositoryConfigs(tenantId, repositoryId)
-        .then(function (repositoryConfigurations) {
-            for (var repositoryConfigurationIndex = 0; repositoryConfigurationIndex < repositoryConfigurations.length;
-                repositoryConfigurationIndex++) {
-                var repositoryConfigEntry = repositoryConfigurations[repositoryConfigurationIndex];
-                var builtrepositoryConfig = {
-                    key: repositoryConfigEntry.key,
-                    value: repositoryConfigEntry.value,
-                    valueType: "CUSTOM"
-                };
-                configurations.push(builtrepositoryConfig);
-            }
-            repositoryConfigCallComplete.resolve();
+    // repository, tenant and global precedence is resolved by the store in a single query, the result is cached until a config changes
+    effectiveConfigCache.retrieveEffectiveConfigs(tenantId, repositoryId, function () {
+        return repositoryConfigStoreModel.getEffectiveRepositoryConfigs(tenantId, repositoryId);
+    })
+        .then(function (configurations) {
+            repositoryConfig.resolve(configurations);
         })
         .fail(function (errorResponse) {
-            logger.debug("Ending processing of request as there has been a problem retrieving the information requested from the"
-                + " store");
-            repositoryConfigCallComplete.reject();
+            logger.debug("Unable to retrieve effective repository config for tenant " + tenantId + " and repository " + repositoryId);
             repositoryConfig.reject(errorResponse);
-            return repositoryConfig.promise;
         })
         .done();
+    return repositoryConfig.promise;
+}
 
-    /** 
-     * Using a second promise that doesn't leave this method to ensure that the repository specific config call considers also the tenant 
-     * configs before calling the for global configs.
-     */
-    repositoryConfigCallComplete.promise
-        .then(function () {
-            return tenantConfigModel.getEffectiveTenantConfigs(tenantId);
-        })
-        .then(function (configs) {
-            for (var configIndex = 0; configIndex < configs.length; configIndex++) {
-                var configEntry = configs[configIndex];
-                if (containsKey(configurations, configEntry.key) === false) {
-                    configurations.push(configEntry);
-                }
-            }
-            repositoryConfig.resolve(configurations);
-        })
-        .fail(function (errorResponse) {
-            /** Taking no action if errorResponse is undefined as that will happen in a case where an error occured during the call for
-             tenant specific configs.*/
-            if (errorResponse !== undefined) {
-                logger.debug("Unable to retrieve effective tenant config for tenant " + tenantId);
-                repositoryConfig.reject(errorResponse);
-            }
-        })
-        .done();
+// number of repositories whose effective configs are resolved by each query when exporting the effective configs of many repositories
+var exportPageSize = 100;
 
-    return repositoryConfig.promise;
+/**
+ * Export effective repository specific configs.
+ * Resolves the effective configs of many repositories of a tenant a page of repositories at a time, passing each page to the function
+ * provided before the next is read so that only one page is held in memory. The cache of effective configs is not used or filled.
+ *
+ * @param {String} tenantId String The ID tenant.
+ * @param {Array} repositoryIds Array The IDs of the repositories to export, in the order to export them (duplicates are ignored), or
+ * undefined to export every repository of the tenant that has repository specific configs, in order of repository ID.
+ * @param {Function} onRepositories Function called with each page, an array of objects with the repository ID and its effective configs.
+ * May return a promise to delay reading the next page until it is resolved.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved once every page has been passed on or rejected with the
+ * first failure.
+ **/
+function exportEffectiveRepositoryConfigs(tenantId, repositoryIds, onRepositories) {
+    var getNextRepositoryIds;
+    if (repositoryIds === undefined) {
+        var lastRepositoryId = null;
+        var allRead = false;
+        getNextRepositoryIds = function () {
+            if (allRead) {
+                return Q([]);
+            }
+            return repositoryConfigStoreModel.getRepositoryIdsPage(tenantId, lastRepositoryId, exportPageSize)
+                .then(function (pageRepositoryIds) {
+                    allRead = pageRepositoryIds.length < exportPageSize;
+                    if (pageRepositoryIds.length > 0) {
+                        lastRepositoryId = pageRepositoryIds[pageRepositoryIds.length - 1];
+                    }
+                    return pageRepositoryIds;
+                });
+        };
+    }
+    else {
+        var uniqueRepositoryIds = Array.from(new Set(repositoryIds));
+        var nextRepositoryIndex = 0;
+        getNextRepositoryIds = function () {
+            var pageRepositoryIds = uniqueRepositoryIds.slice(nextRepositoryIndex, nextRepositoryIndex + exportPageSize);
+            nextRepositoryIndex += pageRepositoryIds.length;
+            return Q(pageRepositoryIds);
+        };
+    }
+    var exportNextPage = function () {
+        return getNextRepositoryIds()
+            .then(function (pageRepositoryIds) {
+                if (pageRepositoryIds.length === 0) {
+                    return;
+                }
+                return repositoryConfigStoreModel.getEffectiveRepositoryConfigsForRepositories(tenantId, pageRepositoryIds)
+                    .then(function (effectiveConfigsByRepository) {
+                        return onRepositories(pageRepositoryIds.map(function (repositoryId) {
+                            return {
+                                repositoryId: repositoryId,
+                                configs: effectiveConfigsByRepository.get(repositoryId)
+                            };
+                        }));
+                    })
+                    .then(exportNextPage);
+            });
+    };
+    logger.debug("Exporting effective repository configs for tenant " + tenantId);
+    return exportNextPage();
 }
 
 /**
@@ -297,17 +321,19 @@ function getRepositoryConfig(tenantId, repositoryId, key) {
 
 /**
  * Retrieve repository specific configs as map of key-value pairs.
- * Returns all repository specific configs as a list.
+ * Returns all repository specific configs as a list ordered by key, or a page of them if a limit is passed.
  *
  * @param {String} tenantId String The ID of the tenant.
  * @param {String} repositoryId String The ID of the repository.
+ * @param {String} afterKey String Optional. Only configs with a key after this key are returned.
+ * @param {Number} limit Number Optional. The maximum number of configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
-function getRepositoryConfigs(tenantId, repositoryId) {
+function getRepositoryConfigs(tenantId, repositoryId, afterKey, limit) {
     var repositoryConfig = Q.defer();
     var configurations = [];
     logger.debug("Retrieving repository specific config for tenant " + tenantId + " and repository " + repositoryId);
-    repositoryConfigStoreModel.getRepositoryConfigs(tenantId, repositoryId)
+    repositoryConfigStoreModel.getRepositoryConfigs(tenantId, repositoryId, afterKey, limit)
         .then(function (repositoryConfigResult) {
             for (var i = 0; i < repositoryConfigResult.length; i++) {
                 var repositoryConfigEntry = repositoryConfigResult[i];
@@ -326,19 +352,3 @@ function getRepositoryConfigs(tenantId, repositoryId) {
         .done();
     return repositoryConfig.promise;
 }
-
-/**
- * Convenience method to identify if a config object within an array contains a key matching the key provide.
- * 
- * @param {Array} configArray The array of configuration objects to be used.
- * @param {String} key The key to match against.
- * @returns {Boolean} If an element in the array's key matched or not.
- */
-function containsKey(configArray, key) {
-    for (var i = 0; i < configArray.length; i++) {
-        if (configArray[i].key === key) {
-            return true;
-        }
-    }
-    return false;
-}
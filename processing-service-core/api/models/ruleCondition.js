@@ -15,6 +15,7 @@
  */
 var Q = require('q');
 var logger = require('../helpers/loggingHelper.js');
+var jsonBodyHelper = require('../helpers/jsonBodyHelper.js');
 var colSeqModel = require('./policy_api/collectionSequence.js');
 var polWorkflowModel = require('./policy_api/workflow.js');
 var collectionModel = require('./policy_api/collection.js');
@@ -82,8 +83,8 @@ function create(createParams){
     createParams.workflowId);
     
   Q.all([validatedSequencePromise, validatedWorkflowPromise]).spread(function(retrievedSeq, retrievedWorkflow){
-    logger.debug(function(){return "Retrieved Workflow: "+JSON.stringify(retrievedWorkflow);});
-    logger.debug(function(){return "Retrieved Collection Sequence: "+JSON.stringify(retrievedSeq);});
+    logger.debug(function(){return "Retrieved Workflow: "+jsonBodyHelper.stringify(retrievedWorkflow);});
+    logger.debug(function(){return "Retrieved Collection Sequence: "+jsonBodyHelper.stringify(retrievedSeq);});
     
     //get the Rule Root condition if it is available on the retrieved Sequence
     var ruleCondition = conditionModel.getRuleConditionFromDetailedCollectionSequence(retrievedSeq);
@@ -94,7 +95,7 @@ function create(createParams){
     return getRuleRootCondition(createParams.project_id, createParams.ruleId);
   })
   .then(function(ruleCondition){
-    logger.debug(function(){return "Retrieved Rule Root Condition: "+JSON.stringify(ruleCondition);});
+    logger.debug(function(){return "Retrieved Rule Root Condition: "+jsonBodyHelper.stringify(ruleCondition);});
     var ruleParentConditionId = ruleCondition.id;
     
     //update caller condition object with 'type' property for Policy API
@@ -105,7 +106,7 @@ function create(createParams){
     return conditionModel.create(createParams.project_id, createParams.condition);
   })
   .then(function(createdCondition){
-    logger.debug(function(){return "Created condition under the Rule with ID: " + createParams.ruleId + ". Condition: " +JSON.stringify(createdCondition);});
+    logger.debug(function(){return "Created condition under the Rule with ID: " + createParams.ruleId + ". Condition: " +jsonBodyHelper.stringify(createdCondition);});
     deferredCreateRuleCondition.resolve(policyToProcessingHelper.buildConditionFromPolicyCondition(createdCondition));
   })
   .fail(function(errorResponse){
@@ -149,8 +150,8 @@ function validateAndGetRootCondition(projectId, workflowId, ruleId){
   var validatedWorkflowPromise = polWorkflowModel.validateWorkflowExists(projectId,
     workflowId);
   Q.all([validatedSequencePromise, validatedWorkflowPromise]).spread(function(retrievedSeq, retrievedWorkflow){
-    logger.debug(function(){return "Retrieved Workflow: "+JSON.stringify(retrievedWorkflow);});
-    logger.debug(function(){return "Retrieved Collection Sequence: "+JSON.stringify(retrievedSeq);});
+    logger.debug(function(){return "Retrieved Workflow: "+jsonBodyHelper.stringify(retrievedWorkflow);});
+    logger.debug(function(){return "Retrieved Collection Sequence: "+jsonBodyHelper.stringify(retrievedSeq);});
     //retrieve the 'isFragment' Root condition for the Rule by its Notes field.
     return getRuleRootCondition(projectId, ruleId);
   })
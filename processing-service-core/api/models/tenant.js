@@ -17,8 +17,10 @@
 
 var Q = require('q');
 var logger = require('../helpers/loggingHelper.js');
+var configSetOutcomeHelper = require('../helpers/configSetOutcomeHelper.js');
 var tenantConfigStoreModel = require("./db/tenantConfigStore.js");
 var globalConfigStoreModel = require("./db/globalConfigStore.js");
+var effectiveConfigCache = require("./db/effectiveConfigCache.js");
 var apiErrorFactory = require('./errors/apiErrorFactory.js');
 var apiErrorTypes = require('./errors/apiErrorTypes.js');
 var ApiError = require('./errors/apiError.js');
@@ -70,19 +72,19 @@ function setTenantConfig(tenantId, key, value) {
  * @param {String} tenantId  String The ID of the tenant.
  * @param {String} tenantConfigs TenantConfigs The json string representation key-value pair map of custom tenant configuration.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of create/update.
+ * All the configs are validated and written in a single statement. The promise is resolved with the outcome for each config, CREATED,
+ * UPDATED or NOT_FOUND where no matching global config exists for the key, the key not being written.
  **/
 function setTenantConfigs(tenantId, tenantConfigs) {
     var tenantConfig = Q.defer();
-    var promiseArray = [];
-
-    for (var i = 0; i < tenantConfigs.length; i++) {
-        var config = tenantConfigs[i];
-        promiseArray.push(tenantConfigStoreModel.setTenantConfig(tenantId, config.key, config.value));
-    }
-    Q.all(promiseArray)
-            .then(function (results) {
-                logger.debug("Created tenant specific config for tenant " + tenantId);
-                tenantConfig.resolve();
+    tenantConfigStoreModel.setTenantConfigs(tenantId, tenantConfigs)
+            .then(function (setOutcomes) {
+                var notFoundKeys = configSetOutcomeHelper.getNotFoundKeys(setOutcomes);
+                if (notFoundKeys.length > 0) {
+                    logger.debug("No global config exists to override for keys " + notFoundKeys.join(", ") + " for tenant " + tenantId);
+                }
+                logger.debug("Set tenant specific configs for tenant " + tenantId);
+                tenantConfig.resolve(setOutcomes);
             })
             .fail(function (errorResponse) {
                 logger.debug("Unable to create tenant specific config for tenant " + tenantId);
@@ -118,29 +120,23 @@ function deleteTenantConfig(tenantId, key) {
 
 /**
  * Delete tenant specific configs for the provided tenantId.
- * Deletes all tenant specific configuration for tenant that has been provided.
+ * Deletes all tenant specific configuration for tenant that has been provided in a single statement, and optionally the repository
+ * specific configuration of all the tenant's repositories in the same transaction.
  *
  * @param {String} tenantId String The ID of the tenant.
+ * @param {Boolean} cascadeToRepositories Boolean True if the repository specific configs of the tenant should also be deleted.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of deletion.
  **/
-function deleteTenantConfigs(tenantId) {
+function deleteTenantConfigs(tenantId, cascadeToRepositories) {
     var tenantConfig = Q.defer();
-    var deletionPromises = [];
-    tenantConfigStoreModel.getTenantConfigs(tenantId)
-            .then(function (tenantConfigs) {
-                for (var tenantConfigsIndex = 0; tenantConfigsIndex < tenantConfigs.length; tenantConfigsIndex++) {
-                    var tenantConfigEntry = tenantConfigs[tenantConfigsIndex]
-                    deletionPromises.push(tenantConfigStoreModel.deleteTenantConfig(tenantId, tenantConfigEntry.key));
-                }
-                logger.debug("Successfully deleted tenant specific config for tenant " + tenantId);
-                return deletionPromises;
-            })
-            .all()
-            .then(function(){
+    tenantConfigStoreModel.deleteTenantConfigs(tenantId, cascadeToRepositories)
+            .then(function (deleteResult) {
+                logger.debug("Successfully deleted " + deleteResult.tenantConfigs + " tenant specific configs and "
+                    + deleteResult.repositoryConfigs + " repository specific configs for tenant " + tenantId);
                 tenantConfig.resolve();
             })
             .fail(function (errorResponse) {
-                logger.debug("Unable to remove tenant specific config for tenant {}", tenantId);
+                logger.debug("Unable to remove tenant specific config for tenant " + tenantId);
                 tenantConfig.reject(errorResponse);
             })
             .done();
@@ -156,6 +152,10 @@ function deleteTenantConfigs(tenantId) {
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
 function getEffectiveTenantConfig(tenantId, key) {
+    var cachedConfig = effectiveConfigCache.getEffectiveConfig(tenantId, undefined, key);
+    if (cachedConfig !== undefined) {
+        return Q(cachedConfig);
+    }
     var tenantConfig = Q.defer();
     var effectiveConfig = {};
     logger.debug("Retrieving effective tenant config for tenant " + tenantId + " with key " + key);
@@ -195,6 +195,18 @@ function getEffectiveTenantConfig(tenantId, key) {
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
 function getEffectiveTenantConfigs(tenantId) {
+    return effectiveConfigCache.retrieveEffectiveConfigs(tenantId, undefined, function () {
+        return resolveEffectiveTenantConfigs(tenantId);
+    });
+}
+
+/**
+ * Resolves the effective tenant configs from the tenant specific and global configs in the database.
+ *
+ * @param {String} tenantId String The ID tenant.
+ * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
+ **/
+function resolveEffectiveTenantConfigs(tenantId) {
 
     var tenantConfig = Q.defer();
     var tenantConfigCallComplete = Q.defer();
@@ -282,16 +294,18 @@ function getTenantConfig(tenantId, key) {
 
 /**
  * Retrieve tenant specific configs as map of key-value pairs.
- * Returns all tenant specific configs as a list.
+ * Returns all tenant specific configs as a list ordered by key, or a page of them if a limit is passed.
  *
  * @param {String} tenantId String The ID of the tenant.
+ * @param {String} afterKey String Optional. Only configs with a key after this key are returned.
+ * @param {Number} limit Number Optional. The maximum number of configs to return.
  * @returns {*|d.promise|Function|promise|a|h} a promise that will be resolved or rejected based on result of retrieval.
  **/
-function getTenantConfigs(tenantId) {
+function getTenantConfigs(tenantId, afterKey, limit) {
     var tenantConfig = Q.defer();
     var configurations = [];
     logger.debug("Retrieving tenant specific config for tenant " + tenantId);
-    tenantConfigStoreModel.getTenantConfigs(tenantId)
+    tenantConfigStoreModel.getTenantConfigs(tenantId, afterKey, limit)
             .then(function (tenantConfigResult) {
                 for (var i = 0; i < tenantConfigResult.length; i++) {
                     var tenantConfigEntry = tenantConfigResult[i];
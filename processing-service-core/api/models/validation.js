@@ -23,7 +23,6 @@ var conditionModel = require('./policy_api/condition.js');
 var workflowModel = require('./policy_api/workflow.js');
 //HELPERS
 var policyToProcessingHelper = require('../helpers/policyApiToProcessingApiHelper.js');
-var ruleObjectsHelper = require('../helpers/processingObjectsHelper.js').rules;
 //ERRORS
 var apiErrorFactory = require('./errors/apiErrorFactory.js');
 
@@ -34,34 +33,59 @@ module.exports = {
 };
 var defaultNoMatchMessage = "Could not retrieve Processing Rule with ID: ";
 
-//Searches for a specified Col Seq on a specified Workflow and returns the Col Seq, Workflow and Processing Rule representation
+//Searches for a specified Col Seq on a specified Workflow and returns the Col Seq, Workflow and Processing Rule representation.
+//The Workflow and Col Seq are retrieved concurrently and then checked together, errors are reported in the order Workflow, Rule not on Workflow, Col Seq.
+//If 'allDetails' is set on the params then the Col Seq is retrieved with its children and the full response is also returned as 'collectionSequenceDetails'.
+//If 'allowCachedMembership' is set on the params and the Rule membership index shows that the Rule is on the Workflow then the Workflow is not
+//retrieved and 'workflow' is not set on the result. Only set this where the caller does not use the Workflow.
 function validateWorkflowAndSeqForRule(getParams){
   var deferredGet = Q.defer();  
-  var retrievedProcessingRule;
-  var associatedWorkflow;
-  var rulePriority;
+  var allDetails = getParams.allDetails === true;
   
-  workflowModel.validateWorkflowExists(getParams.project_id, getParams.workflowId)
-  .then(function(retrievedWorkflow){
-    logger.debug(function(){return "Retrieved Workflow with ID: "+getParams.workflowId+" when retrieving Processing Rule ID: "+getParams.id;});
-    associatedWorkflow = retrievedWorkflow;
-    
-    //get priority from the Workflow result (sequence_entries should be on the Workflow)
-    var rulesMap = ruleObjectsHelper.getRulePrioritiesFromPolicyWorkflow(retrievedWorkflow);
-    rulePriority = rulesMap[getParams.id];
-    if(rulePriority===undefined){      
-      throw apiErrorFactory.createNotFoundError("Processing Rule ID: "+ getParams.id + " not found on Workflow with ID: "+getParams.workflowId);
-    }    
-    
-    return colSeqModel.validateSequenceExists(getParams.project_id, getParams.id, false, defaultNoMatchMessage + getParams.id);
-  })
-  .then(function(retrievedColSeq){    
-    retrievedProcessingRule = policyToProcessingHelper.buildRuleFromCollectionSequenceAndOrder(retrievedColSeq, rulePriority);
-    deferredGet.resolve({
-      processingRule: retrievedProcessingRule,
-      collectionSequence: retrievedColSeq,
-      workflow: associatedWorkflow
-    });
+  var rulePriority = getParams.allowCachedMembership === true ?
+    workflowModel.getIndexedRulePriority(getParams.project_id, getParams.workflowId, getParams.id) : undefined;
+  var workflowPromise;
+  //a Rule not found on an indexed Workflow is checked against the Workflow so that a missing Workflow is reported as such
+  if(rulePriority===undefined || rulePriority===null){
+    workflowPromise = workflowModel.validateWorkflowExists(getParams.project_id, getParams.workflowId);
+  }
+  else {
+    logger.debug(function(){return "Using indexed membership of Processing Rule ID: "+getParams.id+" on Workflow ID: "+getParams.workflowId;});
+    workflowPromise = Q(undefined);
+  }
+  var sequencePromise = colSeqModel.validateSequenceExists(getParams.project_id, getParams.id, allDetails, defaultNoMatchMessage + getParams.id);
+  
+  Q.allSettled([workflowPromise, sequencePromise])
+  .spread(function(workflowOutcome, sequenceOutcome){
+    if(workflowOutcome.state === 'rejected'){
+      throw workflowOutcome.reason;
+    }
+    var retrievedWorkflow = workflowOutcome.value;
+    if(retrievedWorkflow!==undefined){
+      logger.debug(function(){return "Retrieved Workflow with ID: "+getParams.workflowId+" when retrieving Processing Rule ID: "+getParams.id;});
+      //get priority of the Rule on the Workflow, reading the Workflow indexed its Rules
+      rulePriority = workflowModel.getRulePriorityOnWorkflow(getParams.project_id, retrievedWorkflow, getParams.id);
+      if(rulePriority===undefined){      
+        throw apiErrorFactory.createNotFoundError("Processing Rule ID: "+ getParams.id + " not found on Workflow with ID: "+getParams.workflowId);
+      }
+    }
+    if(sequenceOutcome.state === 'rejected'){
+      throw sequenceOutcome.reason;
+    }
+    var retrievedColSeq = sequenceOutcome.value;
+    var validateResult = {
+      workflow: retrievedWorkflow
+    };
+    if(allDetails){
+      //'include_children' version of sequence is structured differently, the sequence itself is on the 'additional' property
+      validateResult.collectionSequenceDetails = retrievedColSeq;
+      validateResult.collectionSequence = retrievedColSeq.additional.collection_sequences[0];
+    }
+    else {
+      validateResult.collectionSequence = retrievedColSeq;
+    }
+    validateResult.processingRule = policyToProcessingHelper.buildRuleFromCollectionSequenceAndOrder(validateResult.collectionSequence, rulePriority);
+    deferredGet.resolve(validateResult);
   })
   .fail(function(errorResponse){
     deferredGet.reject(errorResponse);
@@ -75,6 +99,7 @@ function validateWorkflowSeqAndAction(validateParams, retrieveConditionsOnAction
   var deferredValidate = Q.defer();  
   
   var validateWorkflowAndSequenceParams = {
+    allowCachedMembership: validateParams.allowCachedMembership,
     id: validateParams.ruleId,
     project_id: validateParams.project_id,
     workflowId: validateParams.workflowId
@@ -129,6 +154,7 @@ function validateWorkflowSeqAndActionForCondition(validateParams){
   
   var validateWorkflowSeqAndActionParams = {
     actionId: validateParams.actionId,
+    allowCachedMembership: validateParams.allowCachedMembership,
     id: validateParams.ruleId,
     project_id: validateParams.project_id,
     ruleId: validateParams.ruleId,
@@ -14,14 +14,27 @@
  * limitations under the License.
  */
 'use strict';
+var cluster = require('cluster');
+var appConfig = require('./api/helpers/dataProcessingServiceConfigHelper.js');
+var workerCluster = require('./api/libs/workerCluster.js');
+
+//when started directly with more than one worker configured this process only manages the workers, each of which runs the service below
+if(require.main===module && cluster.isMaster && appConfig.workers > 1){
+  workerCluster.startMaster();
+  return;
+}
+
 var SwaggerExpress = require('swagger-express-mw');
 var app = require('express')();
 var adminApp = require('express')();
 var logger = require('./api/helpers/loggingHelper.js');
-var appConfig = require('./api/helpers/dataProcessingServiceConfigHelper.js');
 var swaggerHelper = require('./api/helpers/swaggerHelper.js');
 var requestProcessing = require('./api/libs/requestProcessing.js');
 var adminController = require('./api/controllers/admin.js');
+var metrics = require('./api/libs/metrics.js');
+var healthProbes = require('./api/libs/healthProbes.js');
+var jsonMiddleware = require('./api/libs/jsonMiddleware.js');
+var errorResponseHelper = require('./api/models/errorResponse.js');
 
 module.exports = app; // for testing
 
@@ -55,6 +68,13 @@ var logErrorToConsole = function(err, statusCode, statusMessage){
 SwaggerExpress.create(config, function(err, swaggerExpress) { 
   if (err) { throw err; }
   
+  //record request durations and attribute work done for each request to it, added first so that it covers all other processing
+  app.use(metrics.trackRequest);
+  
+  //read request bodies and write responses as JSON keeping the precision of 64-bit integers, before the swagger middleware reads the body
+  app.use(jsonMiddleware.writeJsonResponses);
+  app.use(jsonMiddleware.parseJsonRequestBody);
+  
   //log all non 2xx JSON responses, need access to response message so overriding the res.json method with an implementation to call the logger
   //then proceed as normal
   app.use(function(req, res, next){
@@ -118,14 +138,25 @@ SwaggerExpress.create(config, function(err, swaggerExpress) {
     if(err.status !== undefined && err.status !== null) {
       res.status(err.status)
     }
+    errorResponseHelper.setRetryAfterHeader(err, res);
     res.json({message: outputErrorMessage});
   });
   
   app.listen(config.serverPort);
   logger.info('Service listening on port: '+config.serverPort);
   
-  //create healtcheck app
-  adminApp.use('/healthcheck', adminController.healthCheck);
-  adminApp.listen(config.serverAdminPort);
-  logger.info('Service listening on port: ' + config.serverAdminPort);
+  if(cluster.isWorker){
+    //the admin port is served by the master process, which requests the health and metrics of this worker
+    workerCluster.startWorker();
+  }
+  else {
+    //create healtcheck app
+    adminApp.use('/healthcheck', adminController.healthCheck);
+    adminApp.use('/metrics', adminController.metrics);
+    adminApp.listen(config.serverAdminPort);
+    logger.info('Service listening on port: ' + config.serverAdminPort);
+    //check dependencies in the background so that healthcheck requests are answered from the most recent results. When running as a
+    //cluster the master checks them instead, once for all workers.
+    healthProbes.start();
+  }
 });
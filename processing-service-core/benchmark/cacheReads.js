@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//Compares the allocation and garbage collection cost of the cache reads made when building a page of 100 Actions from cached Policies and
+//Policy Types, using a NodeCache that clones on every read against the frozen, uncloned entries of the Policy API cache.
+//Usage: node --expose-gc benchmark/cacheReads.js [pages] [settingsSizeBytes]
+var NodeCache = require('node-cache');
+var perfHooks = require('perf_hooks');
+
+process.env.CAF_LOG_LEVEL = process.env.CAF_LOG_LEVEL || 'ERROR';
+var policyApiCache = require('../api/models/policy_api/policyApiCache.js');
+var policyToProcessingHelper = require('../api/helpers/policyApiToProcessingApiHelper.js');
+
+var pages = parseInt(process.argv[2] || 200, 10);
+var settingsSize = parseInt(process.argv[3] || 4096, 10);
+var pageSize = 100;
+var typeCount = 5;
+var projectId = 'benchmark';
+
+//builds a Policy with details of roughly the requested serialized size
+var buildPolicy = function(policyId){
+  var details = {fields: []};
+  var fieldIndex = 0;
+  while(JSON.stringify(details).length < settingsSize){
+    details.fields.push({name: 'FIELD_' + fieldIndex, value: 'value of field ' + fieldIndex, enabled: fieldIndex % 2 === 0});
+    fieldIndex++;
+  }
+  return {
+    id: policyId,
+    name: 'Policy ' + policyId,
+    type: 'policy',
+    additional: {
+      details: details,
+      policy_type_id: 1000 + (policyId % typeCount)
+    }
+  };
+};
+
+var buildPolicyType = function(typeId){
+  return {
+    id: typeId,
+    name: 'Type ' + typeId,
+    type: 'policy_type',
+    additional: {
+      short_name: 'BenchmarkType' + typeId,
+      definition: buildPolicy(typeId).additional.details
+    }
+  };
+};
+
+var cloningCache = new NodeCache({});
+for(var policyId = 0; policyId < pageSize; policyId++){
+  cloningCache.set('policy' + policyId, buildPolicy(policyId));
+  policyApiCache.set(projectId, policyApiCache.objectTypes.POLICY, policyId, buildPolicy(policyId));
+}
+for(var typeIndex = 0; typeIndex < typeCount; typeIndex++){
+  cloningCache.set('type' + (1000 + typeIndex), buildPolicyType(1000 + typeIndex));
+  policyApiCache.set(projectId, policyApiCache.objectTypes.POLICY_TYPE, 1000 + typeIndex, buildPolicyType(1000 + typeIndex));
+}
+
+//builds a page of Actions from the Policies and Policy Types returned by the get function passed, as action.getActions does on cache hits.
+var buildPage = function(getPolicy, getType){
+  var actions = [];
+  for(var policyId = 0; policyId < pageSize; policyId++){
+    var policy = getPolicy(policyId);
+    var action = policyToProcessingHelper.buildActionFromPolicy(policy, {id: policyId});
+    policyToProcessingHelper.buildActionFromPolicyType(getType(policy.additional.policy_type_id), action);
+    actions.push(action);
+  }
+  return actions;
+};
+
+var scenarios = {
+  cloning: function(){
+    return buildPage(function(policyId){
+      return cloningCache.get('policy' + policyId);
+    }, function(typeId){
+      return cloningCache.get('type' + typeId);
+    });
+  },
+  frozen: function(){
+    return buildPage(function(policyId){
+      return policyApiCache.get(projectId, policyApiCache.objectTypes.POLICY, policyId);
+    }, function(typeId){
+      return policyApiCache.get(projectId, policyApiCache.objectTypes.POLICY_TYPE, typeId);
+    });
+  }
+};
+
+var gcStatistics = {count: 0, durationMs: 0};
+var gcObserver = new perfHooks.PerformanceObserver(function(list){
+  for(var entry of list.getEntries()){
+    gcStatistics.count++;
+    gcStatistics.durationMs += entry.duration;
+  }
+});
+gcObserver.observe({entryTypes: ['gc']});
+
+var runGc = function(){
+  if(typeof(global.gc)==='function'){
+    global.gc();
+  }
+};
+
+//runs the scenario for the configured number of pages. Allocation is estimated from heap growth with collection forced before and after,
+//while the retained pages are held so that they are counted.
+var runScenario = function(name, buildPageFunction){
+  runGc();
+  var heapBefore = process.memoryUsage().heapUsed;
+  var start = process.hrtime();
+  var heldPages = [];
+  var allocatedBytes = 0;
+  for(var page = 0; page < pages; page++){
+    heldPages.push(buildPageFunction());
+    //measure and release in batches so that the held pages do not exhaust the heap
+    if(heldPages.length === 20 || page === pages - 1){
+      allocatedBytes += process.memoryUsage().heapUsed - heapBefore;
+      heldPages = [];
+      runGc();
+      heapBefore = process.memoryUsage().heapUsed;
+    }
+  }
+  var elapsed = process.hrtime(start);
+  return {
+    scenario: name,
+    pages: pages,
+    msPerPage: ((elapsed[0] * 1000 + elapsed[1] / 1e6) / pages).toFixed(3),
+    approxBytesAllocatedPerPage: Math.round(allocatedBytes / pages)
+  };
+};
+
+var results = [];
+for(var scenarioName of Object.keys(scenarios)){
+  //warm up before measuring
+  for(var warmUp = 0; warmUp < 20; warmUp++){
+    scenarios[scenarioName]();
+  }
+  results.push(runScenario(scenarioName, scenarios[scenarioName]));
+}
+
+//separate run without forced collections to count the collections the scenario causes by itself
+setImmediate(function(){
+  var gcResults = {};
+  var scenarioNames = Object.keys(scenarios);
+  var runNext = function(index){
+    if(index === scenarioNames.length){
+      for(var result of results){
+        result.gcCount = gcResults[result.scenario].count;
+        result.gcMs = gcResults[result.scenario].durationMs.toFixed(2);
+      }
+      gcObserver.disconnect();
+      if(typeof(global.gc)!=='function'){
+        console.log('Run with --expose-gc for more accurate allocation figures.');
+      }
+      console.log(JSON.stringify(results, null, 2));
+      return;
+    }
+    var gcCountBefore = gcStatistics.count;
+    var gcDurationBefore = gcStatistics.durationMs;
+    for(var page = 0; page < pages; page++){
+      scenarios[scenarioNames[index]]();
+    }
+    //gc entries are delivered asynchronously
+    setTimeout(function(){
+      gcResults[scenarioNames[index]] = {
+        count: gcStatistics.count - gcCountBefore,
+        durationMs: gcStatistics.durationMs - gcDurationBefore
+      };
+      runGc();
+      setTimeout(function(){ runNext(index + 1); }, 50);
+    }, 50);
+  };
+  runGc();
+  setTimeout(function(){ runNext(0); }, 50);
+});
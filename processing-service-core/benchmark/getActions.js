@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//Compares the number of Policy API round trips and the latency of listing Actions on a Rule using the chained retrieves
+//(sequence, collections, policies, types) against the single retrieve of the sequence with its children.
+//A stub Policy API is started locally that responds after a fixed delay to simulate network latency.
+//Usage: node benchmark/getActions.js [actionCount] [iterations] [latencyMs]
+var http = require('http');
+var url = require('url');
+var querystring = require('querystring');
+
+var actionCount = parseInt(process.argv[2] || 50, 10);
+var iterations = parseInt(process.argv[3] || 20, 10);
+var latencyMs = parseInt(process.argv[4] || 5, 10);
+var stubPort = 19000 + Math.floor(Math.random() * 1000);
+
+process.env.CAF_PROCESSING_SERVICE_POLICY_API_HOST = 'localhost';
+process.env.CAF_PROCESSING_SERVICE_POLICY_API_PORT = stubPort;
+process.env.CAF_LOG_LEVEL = process.env.CAF_LOG_LEVEL || 'ERROR';
+
+var Q = require('q');
+var appConfig = require('../api/helpers/dataProcessingServiceConfigHelper.js');
+var actionModel = require('../api/models/action.js');
+
+var workflowId = 1;
+var ruleId = 2;
+var typeIdBase = 100000;
+var typeCount = 3;
+
+//building the Policy API objects that the stub will return
+var stubData = (function(){
+  var sequence = {
+    id: ruleId,
+    name: 'Benchmark Rule',
+    description: 'Rule used for benchmarking',
+    type: 'collection_sequence',
+    additional: {
+      collection_count: actionCount,
+      collection_sequence_entries: [],
+      evaluation_enabled: true
+    }
+  };
+  var collections = {};
+  var policies = {};
+  var types = {};
+  for(var typeIndex = 0; typeIndex < typeCount; typeIndex++){
+    types[typeIdBase + typeIndex] = {
+      id: typeIdBase + typeIndex,
+      name: 'Type ' + typeIndex,
+      type: 'policy_type',
+      additional: {
+        short_name: 'BenchmarkType' + typeIndex,
+        definition: {}
+      }
+    };
+  }
+  for(var actionIndex = 0; actionIndex < actionCount; actionIndex++){
+    var collectionId = 1000 + actionIndex;
+    var policyId = 5000 + actionIndex;
+    sequence.additional.collection_sequence_entries.push({
+      collection_ids: [collectionId],
+      order: actionIndex + 1,
+      stop_on_match: false
+    });
+    collections[collectionId] = {
+      id: collectionId,
+      name: 'Action ' + actionIndex,
+      description: 'Action used for benchmarking',
+      type: 'collection',
+      additional: {
+        policy_ids: [policyId]
+      }
+    };
+    policies[policyId] = {
+      id: policyId,
+      name: 'Policy ' + actionIndex,
+      type: 'policy',
+      additional: {
+        details: {setting: actionIndex},
+        policy_type_id: typeIdBase + (actionIndex % typeCount)
+      }
+    };
+  }
+  return {
+    collections: collections,
+    policies: policies,
+    sequence: sequence,
+    types: types
+  };
+})();
+
+var toArray = function(value){
+  return Array.isArray(value) ? value : [value];
+};
+
+var pickByIds = function(itemsMap, ids){
+  var results = [];
+  for(var id of toArray(ids)){
+    if(itemsMap[id]!==undefined){
+      results.push(itemsMap[id]);
+    }
+  }
+  return results;
+};
+
+var objectValues = function(itemsMap){
+  return Object.keys(itemsMap).map(function(key){ return itemsMap[key]; });
+};
+
+var buildStubResponse = function(apiPath, params){
+  var additional = params.additional ? JSON.parse(params.additional) : {};
+  var results;
+  if(apiPath.endsWith('workflow/retrieve')){
+    results = [{
+      id: workflowId,
+      name: 'Benchmark Workflow',
+      type: 'sequence_workflow',
+      additional: {
+        sequence_entries: [{collection_sequence_id: ruleId, order: 100}]
+      }
+    }];
+  }
+  else if(params.type === 'collection_sequence'){
+    if(additional.include_children){
+      results = [{
+        id: ruleId,
+        type: 'collection_sequence',
+        additional: {
+          collection_sequences: [stubData.sequence],
+          collections: objectValues(stubData.collections),
+          policies: objectValues(stubData.policies),
+          policy_types: objectValues(stubData.types)
+        }
+      }];
+    }
+    else {
+      results = [stubData.sequence];
+    }
+  }
+  else if(params.type === 'collection'){
+    results = pickByIds(stubData.collections, params.id);
+  }
+  else if(params.type === 'policy'){
+    results = pickByIds(stubData.policies, params.id);
+  }
+  else if(params.type === 'policy_type'){
+    results = pickByIds(stubData.types, params.id);
+  }
+  else {
+    results = [];
+  }
+  return {
+    totalhits: results.length,
+    results: results
+  };
+};
+
+var stubRequestCount = 0;
+var stubServer = http.createServer(function(request, response){
+  stubRequestCount++;
+  var parsedUrl = url.parse(request.url);
+  var params = querystring.parse(parsedUrl.query);
+  setTimeout(function(){
+    response.writeHead(200, {'Content-Type': 'application/json'});
+    response.end(JSON.stringify(buildStubResponse(parsedUrl.pathname, params)));
+  }, latencyMs);
+});
+
+//runs the requested number of iterations of listing actions, using a different project ID each time so the Policy and Policy Type caches do not hide round trips.
+function runScenario(name, useFullSequence){
+  appConfig.actionsFromFullSequence = useFullSequence;
+  var durations = [];
+  var requestsBefore = stubRequestCount;
+  var iterationChain = Q();
+  for(var iteration = 0; iteration < iterations; iteration++){
+    iterationChain = iterationChain.then(runIteration.bind(null, name + iteration, durations));
+  }
+  return iterationChain.then(function(){
+    durations.sort(function(a, b){ return a - b; });
+    var total = durations.reduce(function(sum, duration){ return sum + duration; }, 0);
+    return {
+      scenario: name,
+      roundTripsPerList: (stubRequestCount - requestsBefore) / iterations,
+      meanMs: (total / iterations).toFixed(2),
+      p95Ms: durations[Math.min(durations.length - 1, Math.floor(durations.length * 0.95))].toFixed(2)
+    };
+  });
+}
+
+function runIteration(projectId, durations){
+  var start = process.hrtime();
+  return actionModel.getActions({
+    pageNum: 1,
+    pageSize: actionCount,
+    project_id: projectId,
+    ruleId: ruleId,
+    workflowId: workflowId
+  })
+  .then(function(result){
+    var elapsed = process.hrtime(start);
+    durations.push(elapsed[0] * 1000 + elapsed[1] / 1e6);
+    if(result.actions.length !== actionCount || result.actions[0].typeInternalName === undefined){
+      throw new Error('Unexpected result listing actions: ' + JSON.stringify(result));
+    }
+  });
+}
+
+stubServer.listen(stubPort, function(){
+  console.log('Listing ' + actionCount + ' Actions, ' + iterations + ' iterations, ' + latencyMs + 'ms simulated Policy API latency');
+  var results = [];
+  runScenario('chained', false)
+  .then(function(result){
+    results.push(result);
+    return runScenario('fullSequence', true);
+  })
+  .then(function(result){
+    results.push(result);
+    console.log(JSON.stringify(results, null, 2));
+  })
+  .fail(function(error){
+    console.error(error);
+    process.exitCode = 1;
+  })
+  .fin(function(){
+    stubServer.close();
+    process.exit();
+  })
+  .done();
+});
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//Compares request throughput of an HTTP server doing the JSON work of the service for each request (parse a request body, format log
+//lines for the Policy API calls made and write a page of 100 Actions) with the global JSON object replaced by json-bigint, as previously,
+//against native JSON with BigNumber support only at the request and response bodies. Each approach runs in its own process as replacing
+//the global JSON object affects the whole process. Run with and without a 64-bit ID in the bodies.
+//Usage: node benchmark/jsonThroughput.js [requests] [concurrency]
+var childProcess = require('child_process');
+var http = require('http');
+
+var requestCount = parseInt(process.argv[2] || 2000, 10);
+var concurrency = parseInt(process.argv[3] || 20, 10);
+var approachArgument = process.argv[4];
+var largeIdArgument = process.argv[5];
+
+//request body in the form of an Action create with settings
+var buildRequestBody = function(includeLargeId){
+  var settings = {fields: []};
+  for(var fieldIndex = 0; fieldIndex < 20; fieldIndex++){
+    settings.fields.push({name: 'FIELD_' + fieldIndex, value: 'value of field ' + fieldIndex, enabled: fieldIndex % 2 === 0});
+  }
+  var body = JSON.stringify({
+    name: 'Action',
+    description: 'Action created in benchmark',
+    order: 100,
+    typeId: includeLargeId ? '__LARGE_ID__' : 1001,
+    settings: settings
+  });
+  return includeLargeId ? body.replace('"__LARGE_ID__"', '9007199254740993123') : body;
+};
+
+//a page of Actions as returned by the service, with a 64-bit ID on the first Action if requested
+var buildResponsePage = function(requestBody, bigNumberId){
+  var actions = [];
+  for(var actionIndex = 0; actionIndex < 100; actionIndex++){
+    actions.push({
+      id: actionIndex === 0 && bigNumberId !== undefined ? bigNumberId : 5000 + actionIndex,
+      name: requestBody.name + ' ' + actionIndex,
+      description: requestBody.description,
+      order: requestBody.order + actionIndex,
+      typeId: requestBody.typeId,
+      settings: requestBody.settings
+    });
+  }
+  return {actions: actions, totalHits: 100};
+};
+
+//the log lines formatted for the Policy API calls made for a request
+var formatLogLines = function(requestBody){
+  var logLength = 0;
+  for(var callIndex = 0; callIndex < 4; callIndex++){
+    logLength += JSON.stringify({
+      host: 'localhost',
+      port: 8080,
+      path: '/corepolicy/policy/retrieve?project_id=Default&id=' + (5000 + callIndex),
+      method: 'GET',
+      body: requestBody.settings
+    }).length;
+  }
+  return logLength;
+};
+
+var approaches = {
+  //request body concatenated as strings and parsed, response written and log lines formatted by json-bigint as the global JSON object
+  globalJsonBig: function(){
+    global.JSON = require('json-bigint');
+    return function(request, response){
+      var requestBody = '';
+      request.setEncoding('utf8');
+      request.on('data', function(chunk){ requestBody += chunk; });
+      request.on('end', function(){
+        var parsedBody = JSON.parse(requestBody);
+        formatLogLines(parsedBody);
+        response.setHeader('Content-Type', 'application/json');
+        response.end(JSON.stringify(buildResponsePage(parsedBody, typeof(parsedBody.typeId)==='object' ? parsedBody.typeId : undefined)));
+      });
+    };
+  },
+  //request body collected and parsed and response written by the JSON body helper, log lines formatted natively
+  targeted: function(){
+    var jsonBodyHelper = require('../api/helpers/jsonBodyHelper.js');
+    return function(request, response){
+      var bodyCollector = jsonBodyHelper.createBodyCollector();
+      request.on('data', function(chunk){ bodyCollector.add(chunk); });
+      request.on('end', function(){
+        var parsedBody = jsonBodyHelper.parse(bodyCollector.getBody(), bodyCollector.mayContainLargeNumbers());
+        formatLogLines(parsedBody);
+        response.setHeader('Content-Type', 'application/json');
+        response.end(jsonBodyHelper.stringify(buildResponsePage(parsedBody, typeof(parsedBody.typeId)==='object' ? parsedBody.typeId : undefined)));
+      });
+    };
+  }
+};
+
+//runs the approach in this process, reporting requests per second to the parent
+var runApproach = function(approachName, includeLargeId){
+  var server = http.createServer(approaches[approachName]());
+  server.listen(0, '127.0.0.1', function(){
+    var agent = new http.Agent({keepAlive: true, maxSockets: concurrency});
+    var requestBody = buildRequestBody(includeLargeId);
+    var sent = 0;
+    var completed = 0;
+    var responseBytes = 0;
+    var start;
+    var sendRequest = function(){
+      if(sent === requestCount){
+        return;
+      }
+      sent++;
+      var clientRequest = http.request({
+        agent: agent,
+        host: '127.0.0.1',
+        port: server.address().port,
+        method: 'POST',
+        path: '/actions',
+        headers: {'Content-Type': 'application/json', 'Content-Length': Buffer.byteLength(requestBody)}
+      }, function(clientResponse){
+        clientResponse.on('data', function(chunk){ responseBytes += chunk.length; });
+        clientResponse.on('end', function(){
+          completed++;
+          if(completed === requestCount){
+            var elapsed = process.hrtime(start);
+            var seconds = elapsed[0] + elapsed[1] / 1e9;
+            process.send({
+              approach: approachName,
+              largeId: includeLargeId,
+              requestsPerSecond: Math.round(requestCount / seconds),
+              responseBytesPerRequest: Math.round(responseBytes / requestCount)
+            });
+            agent.destroy();
+            server.close();
+            return;
+          }
+          sendRequest();
+        });
+      });
+      clientRequest.end(requestBody);
+    };
+    start = process.hrtime();
+    for(var started = 0; started < concurrency; started++){
+      sendRequest();
+    }
+  });
+};
+
+if(approachArgument !== undefined){
+  runApproach(approachArgument, largeIdArgument === 'true');
+}
+else {
+  var runs = [];
+  for(var includeLargeId of [false, true]){
+    for(var approachName of Object.keys(approaches)){
+      runs.push([approachName, String(includeLargeId)]);
+    }
+  }
+  var results = [];
+  var runNext = function(runIndex){
+    if(runIndex === runs.length){
+      console.log(JSON.stringify(results, null, 2));
+      return;
+    }
+    var child = childProcess.fork(__filename, [requestCount, concurrency].concat(runs[runIndex]));
+    child.on('message', function(result){
+      results.push(result);
+    });
+    child.on('exit', function(){
+      runNext(runIndex + 1);
+    });
+  };
+  runNext(0);
+}
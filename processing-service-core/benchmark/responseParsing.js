@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//Compares reading and parsing Policy API responses by concatenating string chunks and parsing with json-bigint against collecting Buffer
+//chunks, scanning them for large numbers as they arrive and parsing with the native parser. Bodies are built in the shape of
+//a Collection Sequence retrieved with 'include_children' (as returned for getAllDetails) and fed in 64KB chunks.
+//Each size is run with small IDs only and with one 64-bit ID, which requires the long numbers to be marked before the native parse.
+//Usage: node benchmark/responseParsing.js [iterations] [sizesInMB, comma separated]
+var JSONbig = require('json-bigint');
+var jsonBodyHelper = require('../api/helpers/jsonBodyHelper.js');
+
+var iterations = parseInt(process.argv[2] || 10, 10);
+var sizesInMB = (process.argv[3] || '1,5,10').split(',').map(Number);
+var chunkSize = 64 * 1024;
+
+//builds a condition tree of boolean conditions with string and number children, as found on Collections
+var buildCondition = function(conditionId, depth){
+  var condition = {
+    id: conditionId,
+    name: 'Condition ' + conditionId,
+    type: 'condition',
+    additional: {
+      type: depth === 0 ? 'string' : 'boolean',
+      notes: 'Condition used to match documents for processing rule evaluation',
+      include_descendants: false,
+      order: conditionId % 10
+    }
+  };
+  if(depth === 0){
+    condition.additional.field = 'CONTENT_TYPE';
+    condition.additional.operator = 'is';
+    condition.additional.value = 'application/pdf' + conditionId;
+    return condition;
+  }
+  condition.additional.operator = 'and';
+  condition.additional.children = [];
+  for(var childIndex = 0; childIndex < 3; childIndex++){
+    condition.additional.children.push(buildCondition(conditionId * 4 + childIndex + 1, depth - 1));
+  }
+  return condition;
+};
+
+//builds a Collection Sequence with children of approximately the size in bytes requested. The last Collection is given a 64-bit ID if requested.
+var buildSequenceWithChildren = function(targetBytes, includeLargeId){
+  var entries = [];
+  var sequence = {
+    id: 101,
+    name: 'Processing Rule',
+    type: 'collection_sequence',
+    additional: {
+      collection_sequences: [{
+        id: 101,
+        name: 'Processing Rule',
+        type: 'collection_sequence',
+        additional: {
+          collection_sequence_entries: entries,
+          default_collection_id: null,
+          evaluation_enabled: true,
+          full_condition_evaluation: false
+        }
+      }]
+    }
+  };
+  var collectionId = 1;
+  var entrySize = JSON.stringify(buildEntry(collectionId)).length;
+  while(entries.length * entrySize < targetBytes){
+    entries.push(buildEntry(collectionId++));
+  }
+  if(includeLargeId){
+    entries[entries.length - 1].collections[0].id = '__LARGE_ID__';
+  }
+  var body = JSON.stringify(sequence);
+  return includeLargeId ? body.replace('"__LARGE_ID__"', '9007199254740993123') : body;
+};
+
+function buildEntry(collectionId){
+  return {
+    order: collectionId * 100,
+    stop_on_match: false,
+    collections: [{
+      id: collectionId,
+      name: 'Action ' + collectionId,
+      type: 'collection',
+      additional: {
+        description: 'Collection representing an Action on the processing rule',
+        policy_ids: [collectionId * 3, collectionId * 3 + 1],
+        condition: buildCondition(collectionId * 1000, 2)
+      }
+    }]
+  };
+}
+
+var splitIntoChunks = function(body){
+  var bodyBuffer = Buffer.from(body, 'utf8');
+  var chunks = [];
+  for(var offset = 0; offset < bodyBuffer.length; offset += chunkSize){
+    chunks.push(bodyBuffer.slice(offset, Math.min(offset + chunkSize, bodyBuffer.length)));
+  }
+  return chunks;
+};
+
+var approaches = {
+  //the previous approach, response encoding set to utf8 so chunks arrive as strings
+  stringConcatenation: function(chunks){
+    var responseBody = '';
+    for(var chunk of chunks){
+      responseBody += chunk.toString('utf8');
+    }
+    return JSONbig.parse(responseBody);
+  },
+  bufferCollection: function(chunks){
+    var bodyCollector = jsonBodyHelper.createBodyCollector();
+    for(var chunk of chunks){
+      bodyCollector.add(chunk);
+    }
+    return jsonBodyHelper.parse(bodyCollector.getBody(), bodyCollector.mayContainLargeNumbers());
+  }
+};
+
+var measure = function(approach, chunks){
+  var start = process.hrtime();
+  for(var iteration = 0; iteration < iterations; iteration++){
+    approach(chunks);
+  }
+  var elapsed = process.hrtime(start);
+  return ((elapsed[0] * 1000 + elapsed[1] / 1e6) / iterations).toFixed(1);
+};
+
+var results = [];
+for(var sizeInMB of sizesInMB){
+  for(var includeLargeId of [false, true]){
+    var chunks = splitIntoChunks(buildSequenceWithChildren(sizeInMB * 1024 * 1024, includeLargeId));
+    var result = {
+      sizeMB: sizeInMB,
+      largeId: includeLargeId
+    };
+    for(var approachName of Object.keys(approaches)){
+      //warm up before measuring
+      approaches[approachName](chunks);
+      result[approachName + 'Ms'] = measure(approaches[approachName], chunks);
+    }
+    results.push(result);
+  }
+}
+console.log(JSON.stringify(results, null, 2));
@@ -37,6 +37,11 @@ function assertFunction(expression, message){
 function equalFunction(actual, expected, message){
   assertLibrary.equal(actual, expected, getActualAndExpectedText(actual, expected, message));
 }
+//expects the function passed to throw an error matching the expected error (a constructor, RegExp or validation function).
+function throwsFunction(block, expectedError, message){
+  assertLibrary.throws(block, expectedError, message);
+}
 module.exports.assert = assertFunction;
 module.exports.equal = equalFunction;
-module.exports.fail = failFunction;
\ No newline at end of file
+module.exports.fail = failFunction;
+module.exports.throws = throwsFunction;
\ No newline at end of file
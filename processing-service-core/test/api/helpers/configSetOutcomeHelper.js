@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for configSetOutcomeHelper.js in helpers
+var assert = require("./assertHelper.js");
+
+var configSetOutcomeHelper = require('../../../api/helpers/configSetOutcomeHelper.js');
+var outcomes = configSetOutcomeHelper.outcomes;
+
+describe('helpers - configSetOutcomeHelper', function(){
+  describe('buildSetOutcomes', function(){
+    it('Should return created, updated and not found outcomes in the order the configs were passed.', function(done){
+      var configs = [{key: 'created', value: '1'}, {key: 'missing', value: '2'}, {key: 'updated', value: '3'}];
+      var writtenRows = [{key: 'updated', created: false}, {key: 'created', created: true}];
+      var setOutcomes = configSetOutcomeHelper.buildSetOutcomes(configs, writtenRows);
+
+      assert.equal(setOutcomes.length, 3, "Expecting an outcome for each config passed.");
+      assert.equal(setOutcomes[0].key, 'created', "Expecting the first outcome to be for the first config.");
+      assert.equal(setOutcomes[0].outcome, outcomes.created, "Expecting a config written as a new row to be created.");
+      assert.equal(setOutcomes[1].key, 'missing', "Expecting the second outcome to be for the second config.");
+      assert.equal(setOutcomes[1].outcome, outcomes.notFound, "Expecting a config without a written row to be not found.");
+      assert.equal(setOutcomes[2].key, 'updated', "Expecting the third outcome to be for the third config.");
+      assert.equal(setOutcomes[2].outcome, outcomes.updated, "Expecting a config written over an existing row to be updated.");
+      done();
+    });
+
+    it('Should return an outcome for each config passed with the same key.', function(done){
+      var configs = [{key: 'repeated', value: '1'}, {key: 'repeated', value: '2'}];
+      var setOutcomes = configSetOutcomeHelper.buildSetOutcomes(configs, [{key: 'repeated', created: true}]);
+
+      assert.equal(setOutcomes.length, 2, "Expecting an outcome for each config passed.");
+      assert.equal(setOutcomes[0].outcome, outcomes.created, "Expecting the first config with the key to have the outcome of the key.");
+      assert.equal(setOutcomes[1].outcome, outcomes.created, "Expecting the second config with the key to have the outcome of the key.");
+      done();
+    });
+
+    it('Should return no outcomes when no configs are passed.', function(done){
+      assert.equal(configSetOutcomeHelper.buildSetOutcomes([], []).length, 0, "Expecting no outcomes.");
+      done();
+    });
+  });
+
+  describe('getNotFoundKeys', function(){
+    it('Should return the distinct keys that were not found.', function(done){
+      var notFoundKeys = configSetOutcomeHelper.getNotFoundKeys([
+        {key: 'a', outcome: outcomes.notFound},
+        {key: 'b', outcome: outcomes.created},
+        {key: 'c', outcome: outcomes.updated},
+        {key: 'a', outcome: outcomes.notFound},
+        {key: 'd', outcome: outcomes.notFound}
+      ]);
+      assert.equal(notFoundKeys.join(), 'a,d', "Expecting each key not found once, in the order first returned.");
+      done();
+    });
+
+    it('Should return no keys when every config was written.', function(done){
+      var notFoundKeys = configSetOutcomeHelper.getNotFoundKeys([
+        {key: 'a', outcome: outcomes.created},
+        {key: 'b', outcome: outcomes.updated}
+      ]);
+      assert.equal(notFoundKeys.length, 0, "Expecting no keys not found.");
+      done();
+    });
+  });
+
+  describe('getStatusCode', function(){
+    it('Should return 200 when every config was created or updated.', function(done){
+      assert.equal(configSetOutcomeHelper.getStatusCode([
+        {key: 'a', outcome: outcomes.created},
+        {key: 'b', outcome: outcomes.updated}
+      ]), 200, "Expecting status 200.");
+      done();
+    });
+
+    it('Should return 200 when no configs were set.', function(done){
+      assert.equal(configSetOutcomeHelper.getStatusCode([]), 200, "Expecting status 200 for an empty set.");
+      done();
+    });
+
+    it('Should return 207 when any config was not found.', function(done){
+      assert.equal(configSetOutcomeHelper.getStatusCode([
+        {key: 'a', outcome: outcomes.created},
+        {key: 'b', outcome: outcomes.notFound}
+      ]), 207, "Expecting status 207 (Multi-Status).");
+      done();
+    });
+  });
+});
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for jsonBodyHelper.js in helpers
+var assert = require("./assertHelper.js");
+var BigNumber = require('bignumber.js');
+
+var jsonBodyHelper = require('../../../api/helpers/jsonBodyHelper.js');
+
+//2^63 - 1 and -2^63, beyond the 2^53 that a double holds exactly
+var maxLong = '9223372036854775807';
+var minLong = '-9223372036854775808';
+
+//returns the marker the helper writes BigNumber objects with, read from the native serializer's output while the helper serializes one
+var getBigNumberMarker = function(){
+  var nativeStringify = JSON.stringify;
+  var nativeOutput;
+  JSON.stringify = function(){
+    nativeOutput = nativeStringify.apply(JSON, arguments);
+    return nativeOutput;
+  };
+  try {
+    jsonBodyHelper.stringify(new BigNumber(maxLong));
+  }
+  finally {
+    JSON.stringify = nativeStringify;
+  }
+  var markerMatch = /^"(.*)9223372036854775807"$/.exec(nativeOutput);
+  assert(markerMatch!==null, "Expecting the BigNumber to have been written as a marked string.");
+  return markerMatch[1];
+};
+
+//returns a body collector with the body passed added in chunks of the size passed
+var collectBody = function(body, chunkSize){
+  var bodyCollector = jsonBodyHelper.createBodyCollector();
+  var bodyBuffer = Buffer.from(body, 'utf8');
+  for(var chunkStart = 0; chunkStart < bodyBuffer.length; chunkStart += chunkSize){
+    bodyCollector.add(bodyBuffer.slice(chunkStart, chunkStart + chunkSize));
+  }
+  return bodyCollector;
+};
+
+describe('helpers - jsonBodyHelper', function(){
+  describe('parse', function(){
+    it('Should parse numbers above 2^53 as BigNumber objects holding the exact value.', function(done){
+      var parsed = jsonBodyHelper.parse('{"id":' + maxLong + ',"ids":[' + minLong + ',1],"nested":{"id":' + maxLong + '}}');
+
+      assert(parsed.id instanceof BigNumber, "Expecting the long number to be a BigNumber.");
+      assert.equal(parsed.id.toString(), maxLong, "Expecting the BigNumber to hold the exact value.");
+      assert.equal(parsed.ids[0].toString(), minLong, "Expecting the negative long number in the array to hold the exact value.");
+      assert.equal(parsed.ids[1], 1, "Expecting the short number to be a native number.");
+      assert.equal(parsed.nested.id.toString(), maxLong, "Expecting the nested long number to hold the exact value.");
+      done();
+    });
+
+    it('Should parse numbers that a double holds exactly as native numbers.', function(done){
+      var parsed = jsonBodyHelper.parse('{"id":9007199254740,"negative":-12345,"decimal":1.5}');
+
+      assert.equal(typeof(parsed.id), 'number', "Expecting the number to be a native number.");
+      assert.equal(parsed.id, 9007199254740, "Expecting the number to hold its value.");
+      assert.equal(parsed.negative, -12345, "Expecting the negative number to hold its value.");
+      assert.equal(parsed.decimal, 1.5, "Expecting the decimal number to hold its value.");
+      done();
+    });
+
+    it('Should leave long runs of digits inside strings as strings.', function(done){
+      var parsed = jsonBodyHelper.parse('{"name":"' + maxLong + '","escaped":"a\\"' + maxLong + '","id":' + maxLong + '}');
+
+      assert.equal(parsed.name, maxLong, "Expecting the string of digits to stay a string.");
+      assert.equal(parsed.escaped, 'a"' + maxLong, "Expecting the string with an escaped quote to stay a string.");
+      assert.equal(parsed.id.toString(), maxLong, "Expecting the long number to be a BigNumber.");
+      done();
+    });
+
+    it('Should parse the same value whether or not the body collector flagged long numbers.', function(done){
+      var body = '{"id":' + maxLong + ',"name":"rule"}';
+      var bodyCollector = collectBody(body, 3);
+
+      assert(bodyCollector.mayContainLargeNumbers(), "Expecting the long number split across chunks to be flagged.");
+      assert.equal(bodyCollector.getBody(), body, "Expecting the chunks to be joined into the body.");
+      assert.equal(jsonBodyHelper.parse(bodyCollector.getBody(), bodyCollector.mayContainLargeNumbers()).id.toString(), maxLong,
+        "Expecting the long number to hold the exact value.");
+      assert(!collectBody('{"id":1234,"name":"rule"}', 3).mayContainLargeNumbers(), "Expecting a body of short numbers not to be flagged.");
+      done();
+    });
+
+    it('Should not turn a string containing the marker into a BigNumber.', function(done){
+      var marker = getBigNumberMarker();
+      var forgedString = marker + '123';
+      var parsed = jsonBodyHelper.parse('{"forged":"' + forgedString + '","id":' + maxLong + '}');
+
+      assert.equal(parsed.forged, forgedString, "Expecting the string containing the marker to stay a string.");
+      assert(parsed.id instanceof BigNumber, "Expecting the long number to be a BigNumber.");
+      assert.equal(parsed.id.toString(), maxLong, "Expecting the BigNumber to hold the exact value.");
+      done();
+    });
+  });
+
+  describe('stringify', function(){
+    it('Should write BigNumber objects as numbers.', function(done){
+      var serialized = jsonBodyHelper.stringify({id: new BigNumber(maxLong), ids: [new BigNumber(minLong), 1], name: 'rule'});
+
+      assert.equal(serialized, '{"id":' + maxLong + ',"ids":[' + minLong + ',1],"name":"rule"}',
+        "Expecting the BigNumber objects to be written as numbers.");
+      done();
+    });
+
+    it('Should write a string containing the marker as the string, alongside BigNumber objects.', function(done){
+      var marker = getBigNumberMarker();
+      var forgedString = marker + '123';
+      var serialized = jsonBodyHelper.stringify({forged: forgedString, id: new BigNumber(maxLong)});
+
+      assert.equal(serialized, JSON.stringify({forged: forgedString}).slice(0, -1) + ',"id":' + maxLong + '}',
+        "Expecting the string to be written unchanged and the BigNumber as a number.");
+      done();
+    });
+  });
+
+  describe('round trip', function(){
+    it('Should write the body it parsed with the exact values of numbers above 2^53.', function(done){
+      var body = '{"id":' + maxLong + ',"entries":[{"order":1,"collection_sequence_id":' + minLong + '}],"name":"' + maxLong + '"}';
+
+      assert.equal(jsonBodyHelper.stringify(jsonBodyHelper.parse(body)), body, "Expecting the body to be written unchanged.");
+      done();
+    });
+
+    it('Should write the body it parsed unchanged when it contains strings with the marker.', function(done){
+      var marker = getBigNumberMarker();
+      var body = '{"forged":"' + marker + '1","id":' + maxLong + ',"other":"' + marker + maxLong + '"}';
+
+      assert.equal(jsonBodyHelper.stringify(jsonBodyHelper.parse(body)), body, "Expecting the body to be written unchanged.");
+      done();
+    });
+  });
+});
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for cacheManager.js in libs
+var assert = require("../helpers/assertHelper.js");
+
+var appConfig = require('../../../api/helpers/dataProcessingServiceConfigHelper.js');
+var cacheManager = require('../../../api/libs/cacheManager.js');
+
+//each entry added by these tests has a single character key and an eight character string value, estimated as
+//(1 + 10 serialized characters) * 2 bytes
+var entrySize = 22;
+var entryValue = '12345678';
+
+describe('libs - cacheManager', function(){
+  var originalBudget = appConfig.cacheMaxBytes;
+  //caches are registered for the lifetime of the process so each test registers caches under names of its own
+  var testIndex = 0;
+  //the caches registered by the current test, with the keys added to each so they can be removed once the test completes
+  var testCaches;
+
+  //registers a cache for the current test, recording the keys the manager evicts from it
+  var registerCache = function(){
+    var testCache = {
+      evictedKeys: [],
+      keys: {},
+      name: 'test-cache-' + testIndex + '-' + testCaches.length
+    };
+    var tracker = cacheManager.register(testCache.name, function(key){
+      testCache.evictedKeys.push(key);
+      delete testCache.keys[key];
+    });
+    testCache.add = function(key, value){
+      testCache.keys[key] = true;
+      return tracker.added(key, value===undefined ? entryValue : value);
+    };
+    testCache.read = tracker.read;
+    testCache.remove = function(key){
+      delete testCache.keys[key];
+      tracker.removed(key);
+    };
+    testCache.getStatistics = function(){
+      return cacheManager.getStatistics().caches[testCache.name];
+    };
+    testCaches.push(testCache);
+    return testCache;
+  };
+
+  beforeEach(function(){
+    testIndex++;
+    testCaches = [];
+    appConfig.cacheMaxBytes = entrySize * 3;
+  });
+
+  afterEach(function(){
+    testCaches.forEach(function(testCache){
+      Object.keys(testCache.keys).forEach(testCache.remove);
+    });
+    appConfig.cacheMaxBytes = originalBudget;
+  });
+
+  describe('added', function(){
+    it('Should evict the least recently used entry when an entry takes the caches over the budget.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('b');
+      cache.add('c');
+      assert.equal(cache.evictedKeys.length, 0, "Expecting no entries to be evicted while within the budget.");
+
+      cache.add('d');
+
+      assert.equal(cache.evictedKeys.join(), 'a', "Expecting the least recently added entry to be evicted.");
+      var statistics = cache.getStatistics();
+      assert.equal(statistics.entries, 3, "Expecting three entries to be held.");
+      assert.equal(statistics.bytes, entrySize * 3, "Expecting the size of three entries to be held.");
+      assert.equal(statistics.evictions, 1, "Expecting one eviction to be counted.");
+      done();
+    });
+
+    it('Should evict the least recently used entries across all registered caches.', function(done){
+      var firstCache = registerCache();
+      var secondCache = registerCache();
+      firstCache.add('a');
+      secondCache.add('b');
+      secondCache.add('c');
+
+      firstCache.add('d');
+      secondCache.add('e');
+
+      assert.equal(firstCache.evictedKeys.join(), 'a', "Expecting the oldest entry to be evicted from the first cache.");
+      assert.equal(secondCache.evictedKeys.join(), 'b', "Expecting the next oldest entry to be evicted from the second cache.");
+      assert.equal(cacheManager.getStatistics().totalBytes, entrySize * 3, "Expecting the total size to be within the budget.");
+      done();
+    });
+
+    it('Should evict as many entries as needed for a larger entry to fit.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('b');
+      cache.add('c');
+
+      //(1 + 21 serialized characters) * 2 bytes, the size of two entries
+      assert(cache.add('d', '1234567890123456789'), "Expecting the entry to be kept.");
+
+      assert.equal(cache.evictedKeys.join(), 'a,b', "Expecting the two least recently used entries to be evicted.");
+      assert.equal(cache.getStatistics().bytes, entrySize * 3, "Expecting the size held to be within the budget.");
+      done();
+    });
+
+    it('Should not keep an entry larger than the budget, leaving the other entries cached.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('b');
+
+      var kept = cache.add('c', new Array(entrySize * 3).join('x'));
+
+      assert(!kept, "Expecting the entry to be reported as not kept.");
+      assert.equal(cache.evictedKeys.join(), 'c', "Expecting only the entry too large for the budget to be evicted.");
+      assert.equal(cache.getStatistics().entries, 2, "Expecting the other entries to be held.");
+      done();
+    });
+
+    it('Should replace the size of an entry that is added again for the same key.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('a');
+      cache.add('a');
+
+      var statistics = cache.getStatistics();
+      assert.equal(statistics.entries, 1, "Expecting one entry to be held.");
+      assert.equal(statistics.bytes, entrySize, "Expecting the size of one entry to be held.");
+      done();
+    });
+
+    it('Should not evict entries when the budget is 0.', function(done){
+      appConfig.cacheMaxBytes = 0;
+      var cache = registerCache();
+      ['a', 'b', 'c', 'd', 'e'].forEach(function(key){
+        cache.add(key);
+      });
+
+      assert.equal(cache.evictedKeys.length, 0, "Expecting no entries to be evicted.");
+      assert.equal(cache.getStatistics().entries, 5, "Expecting all entries to be held.");
+      done();
+    });
+  });
+
+  describe('read', function(){
+    it('Should make an entry that was read the most recently used.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('b');
+      cache.add('c');
+      cache.read('a', true);
+
+      cache.add('d');
+
+      assert.equal(cache.evictedKeys.join(), 'b', "Expecting the least recently used entry to be evicted rather than the one read.");
+      done();
+    });
+
+    it('Should count hits and misses.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.read('a', true);
+      cache.read('a', true);
+      cache.read('a', true);
+      cache.read('b', false);
+
+      var statistics = cache.getStatistics();
+      assert.equal(statistics.hits, 3, "Expecting three hits.");
+      assert.equal(statistics.misses, 1, "Expecting one miss.");
+      assert.equal(statistics.hitRatio, 0.75, "Expecting the hit ratio to be the share of reads that were hits.");
+      done();
+    });
+  });
+
+  describe('removed', function(){
+    it('Should stop tracking an entry removed by its cache, freeing its size from the budget.', function(done){
+      var cache = registerCache();
+      cache.add('a');
+      cache.add('b');
+      cache.add('c');
+      cache.remove('a');
+
+      cache.add('d');
+
+      assert.equal(cache.evictedKeys.length, 0, "Expecting no entries to be evicted as the removed entry freed space.");
+      assert.equal(cache.getStatistics().entries, 3, "Expecting three entries to be held.");
+      done();
+    });
+  });
+
+  describe('register', function(){
+    it('Should throw if a cache is already registered with the name.', function(done){
+      var cache = registerCache();
+      assert.throws(function(){
+        cacheManager.register(cache.name, function(){});
+      }, /already registered/);
+      done();
+    });
+  });
+});
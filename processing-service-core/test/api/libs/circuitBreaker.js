@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for circuitBreaker.js in libs
+var assert = require("../helpers/assertHelper.js");
+
+var circuitBreaker = require('../../../api/libs/circuitBreaker.js');
+
+describe('libs - circuitBreaker', function(){
+  //the circuit breaker reads the time from Date.now, which is replaced so the tests control when the reset timeout passes
+  var realDateNow = Date.now;
+  var now;
+  var breaker;
+
+  beforeEach(function(){
+    now = 1000000;
+    Date.now = function(){
+      return now;
+    };
+    breaker = circuitBreaker.createCircuitBreaker('test', 3, 5000);
+  });
+
+  afterEach(function(){
+    Date.now = realDateNow;
+  });
+
+  //makes the number of calls passed, recording each as failed
+  var failCalls = function(numberOfCalls){
+    for(var callIndex = 0; callIndex < numberOfCalls; callIndex++){
+      assert(breaker.tryAcquire(), "Expecting the call to be allowed.");
+      breaker.recordFailure();
+    }
+  };
+
+  describe('closed', function(){
+    it('Should allow calls and stay closed while consecutive failures are below the threshold.', function(done){
+      failCalls(2);
+      assert.equal(breaker.getState(), circuitBreaker.closed, "Expecting the circuit to be closed.");
+      assert(breaker.tryAcquire(), "Expecting a call to be allowed.");
+      breaker.recordSuccess();
+      failCalls(2);
+      assert.equal(breaker.getState(), circuitBreaker.closed,
+        "Expecting the circuit to stay closed as a success reset the count of consecutive failures.");
+      done();
+    });
+
+    it('Should open once consecutive failures reach the threshold.', function(done){
+      failCalls(3);
+      assert.equal(breaker.getState(), circuitBreaker.open, "Expecting the circuit to be open.");
+      assert.equal(breaker.getStatistics().opened, 1, "Expecting the circuit to have opened once.");
+      done();
+    });
+  });
+
+  describe('open', function(){
+    it('Should refuse calls until the reset timeout has passed.', function(done){
+      failCalls(3);
+      now += 4999;
+      assert(!breaker.tryAcquire(), "Expecting the call to be refused while the circuit is open.");
+      assert.equal(breaker.getStatistics().rejected, 1, "Expecting the refused call to be counted.");
+      assert.equal(breaker.getRetryAfterSeconds(), 1, "Expecting a retry after of at least 1 second.");
+      done();
+    });
+
+    it('Should not be closed by calls started before it opened that then succeed.', function(done){
+      failCalls(3);
+      breaker.recordSuccess();
+      assert.equal(breaker.getState(), circuitBreaker.open, "Expecting the circuit to stay open.");
+      done();
+    });
+
+    it('Should report the seconds remaining until a probe call is allowed.', function(done){
+      failCalls(3);
+      now += 1500;
+      assert.equal(breaker.getRetryAfterSeconds(), 4, "Expecting the remaining 3.5 seconds to be rounded up.");
+      done();
+    });
+  });
+
+  describe('half open', function(){
+    it('Should allow a single probe call once the reset timeout has passed.', function(done){
+      failCalls(3);
+      now += 5000;
+      assert(breaker.tryAcquire(), "Expecting the probe call to be allowed.");
+      assert.equal(breaker.getState(), circuitBreaker.halfOpen, "Expecting the circuit to be half open.");
+      assert(!breaker.tryAcquire(), "Expecting a second call to be refused while the probe is in progress.");
+      done();
+    });
+
+    it('Should close when the probe call succeeds.', function(done){
+      failCalls(3);
+      now += 5000;
+      assert(breaker.tryAcquire(), "Expecting the probe call to be allowed.");
+      breaker.recordSuccess();
+      assert.equal(breaker.getState(), circuitBreaker.closed, "Expecting the circuit to be closed.");
+      assert(breaker.tryAcquire(), "Expecting calls to be allowed.");
+      assert.equal(breaker.getStatistics().consecutiveFailures, 0, "Expecting the count of consecutive failures to be reset.");
+      done();
+    });
+
+    it('Should open again when the probe call fails, refusing calls for another reset timeout.', function(done){
+      failCalls(3);
+      now += 5000;
+      assert(breaker.tryAcquire(), "Expecting the probe call to be allowed.");
+      breaker.recordFailure();
+      assert.equal(breaker.getState(), circuitBreaker.open, "Expecting the circuit to be open.");
+      assert.equal(breaker.getStatistics().opened, 2, "Expecting the circuit to have opened twice.");
+      now += 4999;
+      assert(!breaker.tryAcquire(), "Expecting calls to be refused until the reset timeout has passed again.");
+      now += 1;
+      assert(breaker.tryAcquire(), "Expecting another probe call to be allowed.");
+      done();
+    });
+
+    it('Should allow another probe call if the probe has not completed within the reset timeout.', function(done){
+      failCalls(3);
+      now += 5000;
+      assert(breaker.tryAcquire(), "Expecting the probe call to be allowed.");
+      now += 5000;
+      assert(breaker.tryAcquire(), "Expecting another probe call to be allowed.");
+      assert.equal(breaker.getState(), circuitBreaker.halfOpen, "Expecting the circuit to stay half open.");
+      done();
+    });
+  });
+});
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for keyedBatchQueue.js in libs
+var assert = require("../helpers/assertHelper.js");
+var Q = require('q');
+
+var keyedBatchQueue = require('../../../api/libs/keyedBatchQueue.js');
+
+describe('libs - keyedBatchQueue', function(){
+  //the batches processed by the queue under test, each recording the key and items it was called with and the deferred that completes it
+  var batches;
+  var queue;
+
+  beforeEach(function(){
+    batches = [];
+    queue = keyedBatchQueue.createKeyedBatchQueue(function(key, items){
+      var batch = {
+        key: key,
+        items: items,
+        deferred: Q.defer()
+      };
+      batches.push(batch);
+      return batch.deferred.promise;
+    });
+  });
+
+  //returns a promise resolved with the batch at the index passed once the queue has started it
+  var waitForBatch = function(batchIndex){
+    var deferred = Q.defer();
+    var check = function(){
+      if(batches.length > batchIndex){
+        deferred.resolve(batches[batchIndex]);
+        return;
+      }
+      setImmediate(check);
+    };
+    check();
+    return deferred.promise;
+  };
+
+  //returns a promise resolved once the queue passed has no keys with a batch running
+  var waitForNoActiveKeys = function(queueToWait){
+    var deferred = Q.defer();
+    var check = function(){
+      if(queueToWait.getStatistics().activeKeys===0){
+        deferred.resolve();
+        return;
+      }
+      setImmediate(check);
+    };
+    check();
+    return deferred.promise;
+  };
+
+  //resolves the batch passed with a value for each item of the item doubled
+  var completeBatch = function(batch){
+    batch.deferred.resolve(batch.items.map(function(item){
+      return {value: item * 2};
+    }));
+  };
+
+  describe('enqueue', function(){
+    it('Should process the items queued for a key while a batch is running together as the next batch.', function(done){
+      var firstPromise = queue.enqueue('a', 1);
+      var waitingPromises = [queue.enqueue('a', 2), queue.enqueue('a', 3)];
+      assert.equal(batches.length, 1, "Expecting only the first item to have started a batch.");
+      assert.equal(queue.getStatistics().waiting, 2, "Expecting two items to be waiting.");
+
+      completeBatch(batches[0]);
+      firstPromise.then(function(value){
+        assert.equal(value, 2, "Expecting the first item to resolve with its value.");
+        return waitForBatch(1);
+      })
+      .then(function(secondBatch){
+        assert.equal(secondBatch.items.join(), '2,3', "Expecting the waiting items to be processed together in the order queued.");
+        completeBatch(secondBatch);
+        return Q.allSettled(waitingPromises);
+      })
+      .then(function(results){
+        assert.equal(results[0].value, 4, "Expecting the second item to resolve with its value.");
+        assert.equal(results[1].value, 6, "Expecting the third item to resolve with its value.");
+        return waitForNoActiveKeys(queue);
+      })
+      .then(function(){
+        var statistics = queue.getStatistics();
+        assert.equal(statistics.batches, 2, "Expecting two batches to have been processed.");
+        assert.equal(statistics.items, 3, "Expecting three items to have been processed.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should process the items of different keys independently.', function(done){
+      var firstPromise = queue.enqueue('a', 1);
+      var secondPromise = queue.enqueue('b', 2);
+      assert.equal(batches.length, 2, "Expecting a batch to have started for each key.");
+      assert.equal(queue.getStatistics().activeKeys, 2, "Expecting two active keys.");
+
+      var firstResolved = false;
+      firstPromise.then(function(){
+        firstResolved = true;
+      });
+      completeBatch(batches[1]);
+      secondPromise.then(function(value){
+        assert.equal(value, 4, "Expecting the item of the second key to resolve while the first key's batch is running.");
+        assert(!firstResolved, "Expecting the item of the first key to still be pending.");
+        completeBatch(batches[0]);
+        return firstPromise;
+      })
+      .then(function(value){
+        assert.equal(value, 2, "Expecting the item of the first key to resolve with its value.");
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should resolve or reject each item of a batch with its own outcome.', function(done){
+      var blockingPromise = queue.enqueue('a', 0);
+      var promises = [queue.enqueue('a', 1), queue.enqueue('a', 2), queue.enqueue('a', 3)];
+      completeBatch(batches[0]);
+      blockingPromise.then(function(){
+        return waitForBatch(1);
+      })
+      .then(function(secondBatch){
+        secondBatch.deferred.resolve([{value: 'first'}, {error: 'second failed'}, {value: 'third'}]);
+        return Q.allSettled(promises);
+      })
+      .then(function(results){
+        assert.equal(results[0].state, 'fulfilled', "Expecting the first item to resolve.");
+        assert.equal(results[0].value, 'first', "Expecting the first item to resolve with its value.");
+        assert.equal(results[1].state, 'rejected', "Expecting the second item to reject.");
+        assert.equal(results[1].reason, 'second failed', "Expecting the second item to reject with its error.");
+        assert.equal(results[2].state, 'fulfilled', "Expecting the third item to resolve.");
+        assert.equal(results[2].value, 'third', "Expecting the third item to resolve with its value.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should reject every item of a batch that fails and go on to process the items waiting for the key.', function(done){
+      var batchError = {statusCode: 500, response: 'failed'};
+      var blockingPromise = queue.enqueue('a', 0);
+      var failedPromises = [queue.enqueue('a', 1), queue.enqueue('a', 2)];
+      completeBatch(batches[0]);
+      var laterPromise;
+      blockingPromise.then(function(){
+        return waitForBatch(1);
+      })
+      .then(function(secondBatch){
+        laterPromise = queue.enqueue('a', 3);
+        secondBatch.deferred.reject(batchError);
+        return Q.allSettled(failedPromises);
+      })
+      .then(function(results){
+        results.forEach(function(result){
+          assert.equal(result.state, 'rejected', "Expecting every item of the failed batch to reject.");
+          assert.equal(result.reason, batchError, "Expecting every item of the failed batch to reject with the batch error.");
+        });
+        return waitForBatch(2);
+      })
+      .then(function(thirdBatch){
+        assert.equal(thirdBatch.items.join(), '3', "Expecting the item queued while the failed batch ran to be processed in a new batch.");
+        completeBatch(thirdBatch);
+        return laterPromise;
+      })
+      .then(function(value){
+        assert.equal(value, 6, "Expecting the item queued after the failed batch to resolve with its value.");
+        return waitForNoActiveKeys(queue);
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should reject every item of a batch if processing the batch throws.', function(done){
+      var error = new Error("processing failed");
+      var throwingQueue = keyedBatchQueue.createKeyedBatchQueue(function(){
+        throw error;
+      });
+      Q.allSettled([throwingQueue.enqueue('a', 1), throwingQueue.enqueue('a', 2)])
+      .then(function(results){
+        results.forEach(function(result){
+          assert.equal(result.state, 'rejected', "Expecting every item to reject.");
+          assert.equal(result.reason, error, "Expecting every item to reject with the error thrown.");
+        });
+        return waitForNoActiveKeys(throwingQueue);
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should reject every item of a batch that does not return an outcome for each item.', function(done){
+      var blockingPromise = queue.enqueue('a', 0);
+      var promises = [queue.enqueue('a', 1), queue.enqueue('a', 2)];
+      completeBatch(batches[0]);
+      blockingPromise.then(function(){
+        return waitForBatch(1);
+      })
+      .then(function(secondBatch){
+        secondBatch.deferred.resolve([{value: 'first'}]);
+        return Q.allSettled(promises);
+      })
+      .then(function(results){
+        results.forEach(function(result){
+          assert.equal(result.state, 'rejected', "Expecting every item to reject.");
+          assert(/did not return an outcome for each item/.test(result.reason.message),
+            "Expecting every item to reject with an error describing the missing outcomes.");
+        });
+        return waitForNoActiveKeys(queue);
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+  });
+});
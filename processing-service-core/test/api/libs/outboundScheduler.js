@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for outboundScheduler.js in libs
+var assert = require("../helpers/assertHelper.js");
+
+var outboundScheduler = require('../../../api/libs/outboundScheduler.js');
+
+//schedules a call that records its name in 'started' when it starts and keeps the function to complete it in 'inProgress'
+var scheduleCall = function(scheduler, className, key, name, started, inProgress){
+  scheduler.schedule(className, key, function(done){
+    started.push(name);
+    inProgress.push(done);
+  });
+};
+
+//completes the calls in progress one at a time until none are left, starting the waiting calls in the order the scheduler chooses
+var completeAllCalls = function(inProgress){
+  while(inProgress.length > 0){
+    inProgress.shift()();
+  }
+};
+
+describe('libs - outboundScheduler', function(){
+  describe('schedule', function(){
+    it('Should start calls immediately while below the limit of calls in progress.', function(done){
+      var scheduler = outboundScheduler.createScheduler(2, {read: 1});
+      var started = [];
+      var inProgress = [];
+      scheduleCall(scheduler, 'read', 'a', 'first', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'second', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'third', started, inProgress);
+
+      assert.equal(started.join(), 'first,second', "Expecting only the calls within the limit to have started.");
+      assert.equal(scheduler.getStatistics().inProgress, 2, "Expecting two calls in progress.");
+      assert.equal(scheduler.getStatistics().waiting.read, 1, "Expecting one call waiting.");
+
+      inProgress.shift()();
+      assert.equal(started.join(), 'first,second,third', "Expecting the waiting call to start when a call completed.");
+      done();
+    });
+
+    it('Should only release the slot of a call once when its completion function is called more than once.', function(done){
+      var scheduler = outboundScheduler.createScheduler(1, {read: 1});
+      var started = [];
+      var inProgress = [];
+      scheduleCall(scheduler, 'read', 'a', 'first', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'second', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'third', started, inProgress);
+      var completeFirst = inProgress.shift();
+
+      completeFirst();
+      completeFirst();
+
+      assert.equal(started.join(), 'first,second', "Expecting only one waiting call to start.");
+      assert.equal(scheduler.getStatistics().inProgress, 1, "Expecting one call in progress.");
+      done();
+    });
+
+    it('Should take waiting calls from the classes in proportion to their weights.', function(done){
+      var scheduler = outboundScheduler.createScheduler(1, {read: 4, write: 1});
+      var started = [];
+      var inProgress = [];
+      scheduleCall(scheduler, 'read', 'a', 'blocking', started, inProgress);
+      for(var callIndex = 0; callIndex < 10; callIndex++){
+        scheduleCall(scheduler, 'read', 'a', 'read', started, inProgress);
+        scheduleCall(scheduler, 'write', 'a', 'write', started, inProgress);
+      }
+
+      completeAllCalls(inProgress);
+
+      var waitedCalls = started.slice(1);
+      assert.equal(waitedCalls.slice(0, 5).filter(function(name){ return name==='write'; }).length, 1,
+        "Expecting one write to be taken for every four reads while both classes have calls waiting.");
+      assert.equal(waitedCalls.slice(5, 10).filter(function(name){ return name==='write'; }).length, 1,
+        "Expecting one write to be taken for every four reads while both classes have calls waiting.");
+      assert.equal(waitedCalls.slice(10).join(), 'read,read,write,write,write,write,write,write,write,write',
+        "Expecting the remaining writes to be taken once no reads were waiting.");
+      done();
+    });
+
+    it('Should take waiting calls of a class from each key in turn.', function(done){
+      var scheduler = outboundScheduler.createScheduler(1, {read: 1});
+      var started = [];
+      var inProgress = [];
+      scheduleCall(scheduler, 'read', 'a', 'blocking', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'a1', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'a2', started, inProgress);
+      scheduleCall(scheduler, 'read', 'a', 'a3', started, inProgress);
+      scheduleCall(scheduler, 'read', 'b', 'b1', started, inProgress);
+      scheduleCall(scheduler, 'read', 'c', 'c1', started, inProgress);
+      scheduleCall(scheduler, 'read', 'b', 'b2', started, inProgress);
+
+      completeAllCalls(inProgress);
+
+      assert.equal(started.join(), 'blocking,a1,b1,c1,a2,b2,a3',
+        "Expecting each key with calls waiting to be served in turn, in the order they started waiting.");
+      done();
+    });
+
+    it('Should throw if the class was not passed when the scheduler was created.', function(done){
+      var scheduler = outboundScheduler.createScheduler(1, {read: 1});
+      var started = [];
+      assert.throws(function(){
+        scheduler.schedule('unknown', 'a', function(){
+          started.push('unknown');
+        });
+      }, /Unknown scheduler class: unknown/);
+      assert.equal(started.length, 0, "Expecting the call of the unknown class not to have started.");
+      assert.equal(scheduler.getStatistics().inProgress, 0, "Expecting no calls in progress.");
+      done();
+    });
+  });
+
+  describe('createScheduler', function(){
+    it('Should throw if a class weight is not a positive integer.', function(done){
+      assert.throws(function(){
+        outboundScheduler.createScheduler(1, {read: 0});
+      }, /must be a positive integer/);
+      assert.throws(function(){
+        outboundScheduler.createScheduler(1, {read: 1.5});
+      }, /must be a positive integer/);
+      done();
+    });
+  });
+});
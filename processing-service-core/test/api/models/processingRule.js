@@ -110,6 +110,10 @@ describe('models - processingRule', function(){
         var getWorkflowByIdStub = this.stub(workflowModel, "getWorkflowById",
           processingRuleStubs.getWorkflowByIDStubFunction(test_project_id, test_workflowId)
         );
+        //the workflow is read again, uncached, before it is updated
+        var getWorkflowForUpdateStub = this.stub(workflowModel, "getWorkflowForUpdateById",
+          processingRuleStubs.getWorkflowByIDStubFunction(test_project_id, test_workflowId)
+        );
         var expectedWorkflow = JSON.parse(JSON.stringify(workflows[1].results[0]));
         //remove the entry with this collection sequence ID
         var entriesIndex = expectedWorkflow.additional.sequence_entries.length;
@@ -141,6 +145,7 @@ describe('models - processingRule', function(){
           assert(responseToWriteTo.json.calledOnce, "Expecting json method on response to have been called once.");
           assert(getWorkflowByColSeqStub.calledOnce, "Expecting get workflow by Col Seq method to have been called once.");
           assert(getWorkflowByIdStub.calledOnce, "Expecting get workflow by ID method to have been called once.");
+          assert(getWorkflowForUpdateStub.calledOnce, "Expecting get workflow for update method to have been called once.");
           assert(updateWorkflowStub.calledOnce, "Expecting update workflow method to have been called once.");
           assert(deleteColSeqStub.calledOnce, "Expecting delete col seq. method to have been called once.");
           assert.equal(responseToWriteTo.statusCode, 200, "Expecting status code to be 200.");
@@ -226,6 +231,10 @@ describe('models - processingRule', function(){
         var getWorkflowByIdStub = this.stub(workflowModel, "getWorkflowById", 
           processingRuleStubs.getWorkflowByIDStubFunction(test_project_id, test_workflowId)
         );
+        //the workflow is read again, uncached, before the entry is added
+        var getWorkflowForUpdateStub = this.stub(workflowModel, "getWorkflowForUpdateById", 
+          processingRuleStubs.getWorkflowByIDStubFunction(test_project_id, test_workflowId)
+        );
         //set id counter to one more than the id of entries on the workflow
         var createdSequencesCounter = 6;
         var createColSeqStub = this.stub(colSeqModel, "create",
@@ -238,7 +247,7 @@ describe('models - processingRule', function(){
         };
         var test_expectedWorkflow = JSON.parse(JSON.stringify(workflows[test_workflowId].results[0]));
         //expecting an additional sequence entry added for the new Col Seq.
-        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_expectedWorkflow, expectedColSeq.id);
+        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_project_id, test_expectedWorkflow, expectedColSeq.id);
                 
         var updateWorkflowStub = this.stub(workflowModel, "updateWorkflow", 
           processingRuleStubs.updateWorkflowStubFunction(test_project_id, test_expectedWorkflow)
@@ -256,6 +265,7 @@ describe('models - processingRule', function(){
           assert(responseToWriteTo.json.calledOnce, "Expecting json method on response to have been called once.");
           assert(createColSeqStub.calledOnce, "Expecting create col seq. method to have been called once.");
           assert(getWorkflowByIdStub.calledOnce, "Expecting get workflow ID method to have been called once.");
+          assert(getWorkflowForUpdateStub.calledOnce, "Expecting get workflow for update method to have been called once.");
           assert(updateWorkflowStub.calledOnce, "Expecting update workflow method to have been called once.");
           assert.equal(responseToWriteTo.statusCode, 200, "Expecting status code to be 200.");
           
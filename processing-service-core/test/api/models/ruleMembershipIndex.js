@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017-2018 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+//unit tests for ruleMembershipIndex.js in models
+var assert = require("../helpers/assertHelper.js");
+var Q = require('q');
+
+var ruleMembershipIndex = require('../../../api/models/policy_api/ruleMembershipIndex.js');
+
+describe('models - ruleMembershipIndex', function(){
+  var projectId = 'ruleMembershipIndexTest';
+  //the index is shared by all tests so each test uses a Workflow ID of its own
+  var nextWorkflowId = 1;
+  var workflowId;
+
+  beforeEach(function(){
+    workflowId = nextWorkflowId++;
+  });
+
+  //returns a Workflow as read from Policy API with an entry for each of the Rule IDs passed, in order starting from 1
+  var buildWorkflow = function(ruleIds){
+    return {
+      id: workflowId,
+      additional: {
+        sequence_entries: ruleIds.map(function(ruleId, ruleIndex){
+          return {collection_sequence_id: ruleId, order: ruleIndex + 1};
+        })
+      }
+    };
+  };
+
+  //reads and indexes the Workflow with an entry for each of the Rule IDs passed
+  var indexRules = function(ruleIds){
+    ruleMembershipIndex.indexWorkflow(ruleMembershipIndex.startRead(projectId, workflowId), buildWorkflow(ruleIds));
+  };
+
+  describe('getRulePriority', function(){
+    it('Should return undefined for a Workflow that has not been indexed.', function(done){
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+        "Expecting no priority for a Workflow not indexed.");
+      done();
+    });
+
+    it('Should return the priority of a Rule on an indexed Workflow.', function(done){
+      indexRules([10, 20]);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 1, "Expecting the order of the first entry.");
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 20), 2, "Expecting the order of the second entry.");
+      done();
+    });
+
+    it('Should return null for a Rule not on an indexed Workflow.', function(done){
+      indexRules([10]);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 30), null,
+        "Expecting null for a Rule the indexed Workflow does not have an entry for.");
+      done();
+    });
+
+    it('Should return null for any Rule on an indexed Workflow without sequence entries.', function(done){
+      ruleMembershipIndex.indexWorkflow(ruleMembershipIndex.startRead(projectId, workflowId), {id: workflowId, additional: {}});
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), null,
+        "Expecting a Workflow without entries to be indexed as having no Rules.");
+      done();
+    });
+
+    it('Should not return the priorities of another project.', function(done){
+      indexRules([10]);
+      assert.equal(ruleMembershipIndex.getRulePriority('otherProject', workflowId, 10), undefined,
+        "Expecting the Workflow of another project with the same ID not to be indexed.");
+      done();
+    });
+  });
+
+  describe('entry changes', function(){
+    it('Should keep an indexed Workflow current as entries are inserted, reordered and removed.', function(done){
+      indexRules([10, 20]);
+      ruleMembershipIndex.entryInserted(projectId, workflowId, 30, 2, true);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 30), 2, "Expecting the inserted Rule to have its order.");
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 20), 3,
+        "Expecting an entry with the same order to have been moved down.");
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 1, "Expecting an earlier entry to be unchanged.");
+
+      ruleMembershipIndex.entryOrderUpdated(projectId, workflowId, 10, 5);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 5, "Expecting the updated order.");
+
+      ruleMembershipIndex.entryRemoved(projectId, workflowId, 20);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 20), null, "Expecting the removed Rule to not be on the Workflow.");
+      done();
+    });
+
+    it('Should not index a Workflow when an entry change was recorded after the read started.', function(done){
+      var readToken = ruleMembershipIndex.startRead(projectId, workflowId);
+      ruleMembershipIndex.entryInserted(projectId, workflowId, 30, 1, true);
+      ruleMembershipIndex.indexWorkflow(readToken, buildWorkflow([10]));
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+        "Expecting a Workflow read before the change not to be indexed.");
+      done();
+    });
+  });
+
+  describe('trackWrite', function(){
+    it('Should not index a Workflow read while a write to it is in progress.', function(done){
+      var writeDeferred = Q.defer();
+      var writePromise = ruleMembershipIndex.trackWrite(projectId, workflowId, writeDeferred.promise, true);
+      indexRules([10]);
+      assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+        "Expecting a Workflow read during a write not to be indexed.");
+
+      writeDeferred.resolve('written');
+      writePromise.then(function(result){
+        assert.equal(result, 'written', "Expecting the tracked write to resolve with the result of the write.");
+        indexRules([10]);
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 1,
+          "Expecting a Workflow read after the write completed to be indexed.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should not index a Workflow read before a write to it completed.', function(done){
+      var readToken = ruleMembershipIndex.startRead(projectId, workflowId);
+      ruleMembershipIndex.trackWrite(projectId, workflowId, Q('written'), true)
+      .then(function(){
+        ruleMembershipIndex.indexWorkflow(readToken, buildWorkflow([10]));
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+          "Expecting a Workflow read before the write completed not to be indexed.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should keep an indexed Workflow when a write maintaining its entries succeeds.', function(done){
+      indexRules([10]);
+      ruleMembershipIndex.trackWrite(projectId, workflowId, Q('written'), true)
+      .then(function(){
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 1, "Expecting the Workflow to still be indexed.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should remove an indexed Workflow when a write not maintaining its entries succeeds.', function(done){
+      indexRules([10]);
+      ruleMembershipIndex.trackWrite(projectId, workflowId, Q('written'))
+      .then(function(){
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+          "Expecting the Workflow to have been removed from the index.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should remove an indexed Workflow and reject with the error when a write to it fails.', function(done){
+      indexRules([10]);
+      ruleMembershipIndex.trackWrite(projectId, workflowId, Q.reject('write failed'), true)
+      .then(function(){
+        assert.fail("resolved", "rejected", "Expecting the tracked write to be rejected.");
+      }, function(errorResponse){
+        assert.equal(errorResponse, 'write failed', "Expecting the tracked write to reject with the error of the write.");
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+          "Expecting the Workflow to have been removed from the index.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+
+    it('Should not index a Workflow read before a write whose state has since been released.', function(done){
+      var readToken = ruleMembershipIndex.startRead(projectId, workflowId);
+      //the Workflow is not indexed so its write state is released once the write completes
+      ruleMembershipIndex.trackWrite(projectId, workflowId, Q('written'), true)
+      .then(function(){
+        ruleMembershipIndex.indexWorkflow(readToken, buildWorkflow([10]));
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), undefined,
+          "Expecting a Workflow read before the released write not to be indexed.");
+
+        indexRules([10]);
+        assert.equal(ruleMembershipIndex.getRulePriority(projectId, workflowId, 10), 1,
+          "Expecting a Workflow read after the write state was released to be indexed.");
+      })
+      .then(function(){
+        done();
+      }, done)
+      .done();
+    });
+  });
+});
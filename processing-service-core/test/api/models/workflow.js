@@ -32,11 +32,12 @@ describe('models - workflow', function(){
   describe('insertCollectionSequenceIntoWorkflowEntries', function(){
     describe('No priority passed', function(){
       it('Should add entry with no priority passed to workflow with existing entries as one more than existing highest priority on Workflow.', sinon.test(function(done){
+        var test_project_id = 'Default';
         var testColSeqID = 3435353;
         var test_workflow = JSON.parse(JSON.stringify(workflows[1].results[0]));
         var entriesLengthPreCall = test_workflow.additional.sequence_entries.length;
         
-        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_workflow, testColSeqID);
+        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_project_id, test_workflow, testColSeqID);
         
         //check that inserted entry has specified 
         assert(test_workflow.additional.sequence_entries.length === entriesLengthPreCall + 1, "Entries number should increase by 1" );
@@ -50,12 +51,13 @@ describe('models - workflow', function(){
     });
     describe('Priority passed.', function(){
       it('Should add entry with priority passed to workflow with existing entries, incrementing the priority of existing entries that are greater than or equal to the priority passed. Priority set to middle of existing entries', sinon.test(function(done){
+        var test_project_id = 'Default';
         var testColSeqID = 3435353;
         var testPriority = 3;
         var test_workflow = JSON.parse(JSON.stringify(workflows[1].results[0]));
         var entriesLengthPreCall = test_workflow.additional.sequence_entries.length;
         
-        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_workflow, testColSeqID,
+        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_project_id, test_workflow, testColSeqID,
           testPriority);
         
         //check that inserted entry has specified 
@@ -89,12 +91,13 @@ describe('models - workflow', function(){
         done();
       }));
       it('Should add entry with priority passed to workflow with existing entries, incrementing the priority of existing entries that are greater than or equal to the priority passed. Priority set to 0.', sinon.test(function(done){
+        var test_project_id = 'Default';
         var testColSeqID = 3435353;
         var testPriority = 0;
         var test_workflow = JSON.parse(JSON.stringify(workflows[1].results[0]));
         var entriesLengthPreCall = test_workflow.additional.sequence_entries.length;
         
-        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_workflow, testColSeqID,
+        var insertedEntry = workflowModel.insertCollectionSequenceIntoWorkflowEntries(test_project_id, test_workflow, testColSeqID,
           testPriority);
         
         //check that inserted entry has specified 